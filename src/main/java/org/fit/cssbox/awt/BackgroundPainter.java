@@ -0,0 +1,234 @@
+/*
+ * BackgroundPainter.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 23:05:12 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.awt.Graphics2D;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint.ColorSpaceType;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.fit.cssbox.layout.ElementBox;
+import org.fit.cssbox.layout.Rectangle;
+import org.fit.cssbox.render.BackgroundImageGradient;
+import org.fit.cssbox.render.BackgroundImageImage;
+import org.fit.cssbox.render.BackgroundRepeater;
+import org.fit.cssbox.render.ElementBackground;
+import org.fit.cssbox.render.Gradient;
+import org.fit.cssbox.render.LinearGradient;
+import org.fit.cssbox.render.RadialGradient;
+
+/**
+ * Paints the background images of an element directly to a graphics context. The repeated
+ * images and gradients are drawn copy by copy using the {@link BackgroundRepeater} and only the copies
+ * that intersect the current clipping region of the graphics context are drawn. Therefore, no
+ * intermediate image of the whole background is necessary.
+ *
+ * @author agent
+ */
+public class BackgroundPainter extends ElementBackground
+{
+    private final Graphics2D g;
+    private final int x0;
+    private final int y0;
+
+
+    /**
+     * Creates a painter for the element background.
+     * @param owner the element whose background is painted
+     * @param g the target graphics context
+     * @param x the x coordinate of the background area in the target graphics
+     * @param y the y coordinate of the background area in the target graphics
+     */
+    public BackgroundPainter(ElementBox owner, Graphics2D g, int x, int y)
+    {
+        super(owner);
+        this.g = g;
+        this.x0 = x;
+        this.y0 = y;
+    }
+
+    /**
+     * Paints a background image based on its CSS properties.
+     * @param img the image to paint
+     */
+    public void addBackgroundImage(BackgroundImageImage img)
+    {
+        if (!isZeroSize() && img.getImage() instanceof BitmapImage)
+        {
+            final BufferedImage image = ((BitmapImage) img.getImage()).getBufferedImage();
+            if (image != null)
+            {
+                final Rectangle pos = computeTargetImagePosition(img);
+                final float origw = img.getIntrinsicWidth();
+                final float origh = img.getIntrinsicHeight();
+                final Shape oldclip = clipToBackground();
+                new BackgroundRepeater().repeatImage(getBounds(), pos, getPaintedClip(), img.isRepeatX(), img.isRepeatY(),
+                        (x, y) -> drawScaledImage(image, x, y, pos.width, pos.height, origw, origh));
+                g.setClip(oldclip);
+            }
+        }
+    }
+
+    /**
+     * Paints a gradient based on its CSS properties.
+     * @param img the gradient to paint
+     */
+    public void addBackgroundImage(BackgroundImageGradient img)
+    {
+        if (!isZeroSize() && img.getGradient() != null)
+        {
+            final Paint p;
+            if (img.getGradient() instanceof LinearGradient)
+                p = createLinearGradientPaint((LinearGradient) img.getGradient());
+            else if (img.getGradient() instanceof RadialGradient)
+                p = createRadialGradientPaint((RadialGradient) img.getGradient());
+            else
+                p = null;
+
+            if (p != null)
+            {
+                final Rectangle pos = computeTargetImagePosition(img);
+                final Shape oldclip = clipToBackground();
+                final Paint oldpaint = g.getPaint();
+                g.setPaint(p);
+                new BackgroundRepeater().repeatImage(getBounds(), pos, getPaintedClip(), img.isRepeatX(), img.isRepeatY(),
+                        (x, y) -> fillGradient(x, y, pos.width, pos.height));
+                g.setPaint(oldpaint);
+                g.setClip(oldclip);
+            }
+        }
+    }
+
+    //=========================================================================
+
+    /**
+     * Restricts the clipping region of the target graphics to the background area.
+     * @return the original clipping region
+     */
+    private Shape clipToBackground()
+    {
+        final Shape ret = g.getClip();
+        g.clip(new java.awt.Rectangle(x0, y0, Math.round(getBounds().width), Math.round(getBounds().height)));
+        return ret;
+    }
+
+    /**
+     * Computes the part of the background that should be painted: the visible part of the element
+     * that is not clipped out by the target graphics.
+     * @return the clipping rectangle relative to the background bounds
+     */
+    private Rectangle getPaintedClip()
+    {
+        final java.awt.Rectangle gclip = g.getClipBounds();
+        if (gclip == null)
+            return getClipped();
+        else
+            return getClipped().intersection(new Rectangle(gclip.x - x0, gclip.y - y0, gclip.width, gclip.height));
+    }
+
+    private void drawScaledImage(BufferedImage image, float x, float y, float w, float h, float origw, float origh)
+    {
+        g.drawImage(image,
+                    x0 + Math.round(x), y0 + Math.round(y), x0 + Math.round(x + w), y0 + Math.round(y + h),
+                    0, 0, Math.round(origw), Math.round(origh),
+                    null);
+    }
+
+    private void fillGradient(float x, float y, float w, float h)
+    {
+        //the gradient coordinates are relative to the image position
+        final AffineTransform oldtr = g.getTransform();
+        g.translate(x0 + Math.round(x), y0 + Math.round(y));
+        g.fill(new Rectangle2D.Float(0, 0, Math.round(x + w) - Math.round(x), Math.round(y + h) - Math.round(y)));
+        g.setTransform(oldtr);
+    }
+
+    private LinearGradientPaint createLinearGradientPaint(LinearGradient grad)
+    {
+        Point2D start = new Point2D.Float(grad.getX1(), grad.getY1());
+        Point2D end = new Point2D.Float(grad.getEfficientX2(), grad.getEfficientY2());
+        float[] dists = new float[grad.getStops().size()];
+        java.awt.Color[] colors = new java.awt.Color[grad.getStops().size()];
+        stopsToPaintValues(grad, dists, colors);
+        return new LinearGradientPaint(start, end, dists, colors,
+                grad.isRepeating() ? CycleMethod.REPEAT : CycleMethod.NO_CYCLE,
+                ColorSpaceType.SRGB,
+                new AffineTransform());
+    }
+
+    private RadialGradientPaint createRadialGradientPaint(RadialGradient grad)
+    {
+        final float cx = grad.getCx();
+        final float cy = grad.getCy();
+
+        Point2D center = new Point2D.Float(cx, cy);
+
+        AffineTransform gradientTransform = new AffineTransform();
+        if (!grad.isCircle())
+        {
+            // scale Y to achieve desired radius ratio
+            float scaleY = 1.0f;
+            if (grad.getRx() > 0)
+                scaleY = grad.getRy() / grad.getRx();
+            gradientTransform.translate(cx, cy);
+            gradientTransform.scale(1.0f, scaleY);
+            gradientTransform.translate(-cx, -cy);
+        }
+
+        // convert stops
+        float[] dists = new float[grad.getStops().size()];
+        java.awt.Color[] colors = new java.awt.Color[grad.getStops().size()];
+        stopsToPaintValues(grad, dists, colors);
+
+        float rx = grad.getEfficientRx();
+        if (rx < 0.1f) rx = 0.1f; //avoid zero radius
+        RadialGradientPaint gp =
+                new RadialGradientPaint(center, rx, center,
+                                        dists, colors,
+                                        grad.isRepeating() ? CycleMethod.REPEAT : CycleMethod.NO_CYCLE,
+                                        ColorSpaceType.SRGB,
+                                        gradientTransform);
+        return gp;
+    }
+
+    private void stopsToPaintValues(Gradient grad, float[] dists, java.awt.Color[] colors)
+    {
+        for (int i = 0; i < grad.getStops().size(); i++)
+        {
+            dists[i] = grad.getStops().get(i).getPercentage() / 100.0f;
+            if (dists[i] < 0.0f) dists[i] = 0.0f;
+            if (dists[i] > 1.0f) dists[i] = 1.0f;
+            if (i > 0 && dists[i] <= dists[i - 1])
+            {
+                dists[i] = dists[i-1] + 0.001f; //awt does not like equal stops, increase a bit
+                if (dists[i] > 1.0f) { dists[i] = 1.0f; dists[i-1] -= 0.001; }
+            }
+            colors[i] = GraphicsRenderer.convertColor(grad.getStops().get(i).getColor());
+        }
+    }
+
+}
@@ -20,6 +20,7 @@
 package org.fit.cssbox.awt;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.net.URL;
 
 import org.fit.cssbox.layout.ContentImage;
@@ -28,18 +29,44 @@ import org.fit.cssbox.layout.ContentImage;
  * A ContentImage implementation that represents a bitmap image. It uses BufferedImage
  * for internal image representation.
  * 
+ * The image may be decoded lazily: only the image size is known initially and the pixel data
+ * is decoded when it is used for the first time. Moreover, a reduced version of the image may
+ * be decoded when the image is displayed in a smaller size (see {@link #getBufferedImage(float, float)}).
+ * 
  * @author burgetr
  */
 public class BitmapImage implements ContentImage
 {
     private URL url; //image url
-    private BufferedImage bufferedImage;
+    private int width; //original image width
+    private int height; //original image height
+    private BufferedImage bufferedImage; //full-size image (when decoded)
+    private Decoder decoder; //the decoder for lazy images or null
+    private BufferedImage reducedImage; //the last reduced image decoded
+    private int reducedSubsampling; //the subsampling used for the reduced image
     
     
     protected BitmapImage(URL url, BufferedImage bufferedImage)
     {
         this.url = url;
         this.bufferedImage = bufferedImage;
+        this.width = bufferedImage.getWidth();
+        this.height = bufferedImage.getHeight();
+    }
+    
+    /**
+     * Creates a lazily decoded image.
+     * @param url the image URL
+     * @param width the original image width
+     * @param height the original image height
+     * @param decoder the decoder used for obtaining the pixel data
+     */
+    protected BitmapImage(URL url, int width, int height, Decoder decoder)
+    {
+        this.url = url;
+        this.width = width;
+        this.height = height;
+        this.decoder = decoder;
     }
     
     @Override
@@ -48,22 +75,98 @@ public class BitmapImage implements ContentImage
         return url;
     }
 
-    public BufferedImage getBufferedImage()
+    /**
+     * Obtains the full-size image. For the lazily decoded images, the image is decoded upon the first call.
+     * @return the image or {@code null} when the image could not be decoded
+     */
+    public synchronized BufferedImage getBufferedImage()
     {
+        if (bufferedImage == null && decoder != null)
+        {
+            bufferedImage = decoder.decode(1);
+            decoder = null; //the full image is available now
+            reducedImage = null;
+        }
         return bufferedImage;
     }
 
+    /**
+     * Obtains an image suitable for displaying in the given target size. For the lazily decoded images,
+     * a reduced image is decoded using an integer subsampling when the target size is smaller than the
+     * original image size; the size of the resulting image may be therefore different from {@link #getWidth()}
+     * and {@link #getHeight()}. Otherwise, the full-size image is returned.
+     * @param targetWidth the target width in device pixels
+     * @param targetHeight the target height in device pixels
+     * @return the image or {@code null} when the image could not be decoded
+     */
+    public synchronized BufferedImage getBufferedImage(float targetWidth, float targetHeight)
+    {
+        if (bufferedImage == null && decoder != null && targetWidth > 0 && targetHeight > 0)
+        {
+            final int subsampling = (int) Math.max(1, Math.min(Math.floor(width / targetWidth), Math.floor(height / targetHeight)));
+            if (subsampling > 1)
+            {
+                if (reducedImage == null || reducedSubsampling != subsampling)
+                {
+                    reducedImage = decoder.decode(subsampling);
+                    reducedSubsampling = subsampling;
+                }
+                return reducedImage;
+            }
+        }
+        return getBufferedImage();
+    }
+    
+    /**
+     * Checks whether the image is decoded lazily and the full-size image has not been decoded yet.
+     * @return {@code true} when the full-size image has not been decoded yet
+     */
+    public synchronized boolean isLazy()
+    {
+        return decoder != null;
+    }
+
+    /**
+     * Obtains the size of the decoded pixel data of the image. For the lazily decoded images
+     * that have not been decoded yet, the size of the full-size image is estimated as 4 bytes per pixel.
+     * @return the data size in bytes
+     */
+    public synchronized long getDataSize()
+    {
+        if (bufferedImage != null)
+        {
+            final DataBuffer data = bufferedImage.getRaster().getDataBuffer();
+            return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+        }
+        else
+            return (long) width * height * 4;
+    }
+
     @Override
     public float getWidth()
     {
-        return getBufferedImage().getWidth();
+        return width;
     }
 
     @Override
     public float getHeight()
     {
-        return getBufferedImage().getHeight();
+        return height;
     }
 
+    //=========================================================================
+    
+    /**
+     * A decoder of the image pixel data used for the lazily decoded images.
+     */
+    public interface Decoder
+    {
+        /**
+         * Decodes the image.
+         * @param subsampling the subsampling factor for both axes (1 for the full-size image)
+         * @return the decoded image or {@code null} when the image could not be decoded
+         */
+        public BufferedImage decode(int subsampling);
+    }
     
 }
@@ -0,0 +1,271 @@
+/*
+ * BoundedImageCache.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 14:02:37 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.fit.cssbox.layout.ContentImage;
+import org.fit.cssbox.layout.ImageCache;
+
+/**
+ * An image cache with a limited size. The size of the cached images is computed from the size
+ * of their decoded pixel data; when the total size exceeds the given limit, the least recently used
+ * images are evicted. The lazily decoded bitmap images are counted with their full decoded size.
+ * The information about failed images is kept for a limited time only so that the transient
+ * failures do not block the images permanently.
+ *
+ * The cache is thread-safe. It may be shared by multiple engines using
+ * {@link org.fit.cssbox.layout.BrowserConfig#setImageCache(ImageCache)}.
+ *
+ * @author agent
+ */
+public class BoundedImageCache implements ImageCache
+{
+    /** Default maximal size of the cached images in bytes (64 MiB) */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+    /** Default time for remembering the failed images in milliseconds */
+    public static final long DEFAULT_FAILED_TTL = 60000;
+    /** Maximal number of the remembered failed images */
+    private static final int MAX_FAILED = 4096;
+
+    private final long maxSize;
+    private final long failedTtl;
+
+    /** Cached images in the LRU order (keyed by URL strings in order to avoid URL host resolution) */
+    private final LinkedHashMap<String, Entry> images;
+    /** Failed image URLs with their expiration times */
+    private final LinkedHashMap<String, Long> failed;
+    /** Current total size of the cached images */
+    private long size;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+
+    /**
+     * Creates a cache with the default size limit and failure expiration.
+     */
+    public BoundedImageCache()
+    {
+        this(DEFAULT_MAX_SIZE, DEFAULT_FAILED_TTL);
+    }
+
+    /**
+     * Creates a cache with the given size limit and the default failure expiration.
+     * @param maxSize maximal total size of the cached images in bytes
+     */
+    public BoundedImageCache(long maxSize)
+    {
+        this(maxSize, DEFAULT_FAILED_TTL);
+    }
+
+    /**
+     * Creates a cache with the given size limit and failure expiration.
+     * @param maxSize maximal total size of the cached images in bytes
+     * @param failedTtl the time in milliseconds for which the failed images are remembered
+     */
+    public BoundedImageCache(long maxSize, long failedTtl)
+    {
+        this.maxSize = maxSize;
+        this.failedTtl = failedTtl;
+        images = new LinkedHashMap<>(64, 0.75f, true);
+        failed = new LinkedHashMap<String, Long>() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+            {
+                return size() > MAX_FAILED;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void put(URL uri, ContentImage image)
+    {
+        final String key = uri.toExternalForm();
+        final long isize = getImageSize(image);
+        final Entry old = images.remove(key);
+        if (old != null)
+            size -= old.size;
+        failed.remove(key);
+        if (isize <= maxSize)
+        {
+            images.put(key, new Entry(image, isize));
+            size += isize;
+            evict();
+        }
+    }
+
+    @Override
+    public synchronized ContentImage get(URL uri)
+    {
+        final Entry entry = images.get(uri.toExternalForm());
+        if (entry != null)
+        {
+            hitCount++;
+            return entry.image;
+        }
+        else
+        {
+            missCount++;
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void putFailed(URL uri)
+    {
+        failed.put(uri.toExternalForm(), System.currentTimeMillis() + failedTtl);
+    }
+
+    @Override
+    public synchronized boolean hasFailed(URL uri)
+    {
+        final String key = uri.toExternalForm();
+        final Long expires = failed.get(key);
+        if (expires == null)
+            return false;
+        else if (expires < System.currentTimeMillis())
+        {
+            failed.remove(key);
+            return false;
+        }
+        else
+            return true;
+    }
+
+    /**
+     * Removes all the images and failure records from the cache. The counters are not reset.
+     */
+    public synchronized void clear()
+    {
+        images.clear();
+        failed.clear();
+        size = 0;
+    }
+
+    /**
+     * Obtains the maximal total size of the cached images.
+     * @return the size limit in bytes
+     */
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Obtains the current total size of the cached images.
+     * @return the size in bytes
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Obtains the number of images currently stored in the cache.
+     * @return the number of images
+     */
+    public synchronized int getImageCount()
+    {
+        return images.size();
+    }
+
+    /**
+     * Obtains the number of successful image lookups.
+     * @return the hit count
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Obtains the number of image lookups that did not find the image.
+     * @return the miss count
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Obtains the number of images evicted because of the size limit.
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BoundedImageCache [size=" + getSize() + "/" + maxSize + ", images=" + getImageCount()
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    /**
+     * Computes the memory size of an image. For the bitmap images, the size of the decoded pixel data is used.
+     * For the remaining images, the size is estimated as 4 bytes per pixel.
+     * @param image the image
+     * @return the image size in bytes
+     */
+    protected long getImageSize(ContentImage image)
+    {
+        if (image instanceof BitmapImage)
+            return ((BitmapImage) image).getDataSize();
+        else
+            return (long) Math.ceil(image.getWidth()) * (long) Math.ceil(image.getHeight()) * 4;
+    }
+
+    /**
+     * Removes the least recently used images until the total size fits the limit.
+     */
+    private void evict()
+    {
+        final Iterator<Entry> it = images.values().iterator();
+        while (size > maxSize && it.hasNext())
+        {
+            size -= it.next().size;
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    //=========================================================================
+
+    private static class Entry
+    {
+        public final ContentImage image;
+        public final long size;
+
+        public Entry(ContentImage image, long size)
+        {
+            this.image = image;
+            this.size = size;
+        }
+    }
+
+}
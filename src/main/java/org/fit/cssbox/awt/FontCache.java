@@ -0,0 +1,159 @@
+/*
+ * FontCache.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 16:48:21 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.awt.Font;
+import java.awt.font.TextAttribute;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import cz.vutbr.web.css.CSSProperty;
+
+/**
+ * A shared registry of the fonts used by the visual contexts. A page usually uses a few distinct
+ * fonts only so that the contexts may share the same font instances instead of creating a new font
+ * for each box. The fonts are identified by the family, size, weight, style, tracking and the
+ * additional font attributes. The shared font instances also allow reusing the font metrics
+ * cached in {@link FontMetricsCache}.
+ *
+ * The registry is thread-safe and it may be shared by multiple engines.
+ *
+ * @author agent
+ */
+public class FontCache
+{
+    /** Maximal number of fonts kept in the cache. */
+    private static final int MAX_ENTRIES = 1024;
+
+    private static final FontCache instance = new FontCache();
+
+    private ConcurrentHashMap<Key, Font> fonts;
+
+
+    /**
+     * Obtains the shared registry instance.
+     * @return the registry instance
+     */
+    public static FontCache getInstance()
+    {
+        return instance;
+    }
+
+    public FontCache()
+    {
+        fonts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Obtains a shared font instance for the given font specification. When no such font is registered,
+     * it is created using the given factory.
+     * @param family the font family name
+     * @param size the font size in pixels
+     * @param weight the font weight
+     * @param style the font style
+     * @param tracking the tracking value ({@link TextAttribute#TRACKING}) or zero for no tracking
+     * @param attributes additional font attributes used for creating the font
+     * @param factory the factory used for creating the font when not registered yet
+     * @return the font instance
+     */
+    public Font getFont(String family, int size, CSSProperty.FontWeight weight, CSSProperty.FontStyle style,
+            float tracking, Map<TextAttribute, Object> attributes, Supplier<Font> factory)
+    {
+        final Key key = new Key(family, size, weight, style, tracking, attributes);
+        Font ret = fonts.get(key);
+        if (ret == null)
+        {
+            if (fonts.size() >= MAX_ENTRIES)
+                fonts.clear(); //just start again
+            ret = factory.get();
+            //the attribute map may be modified by the caller, store a copy
+            final Key stored = new Key(family, size, weight, style, tracking, new HashMap<>(attributes));
+            final Font prev = fonts.putIfAbsent(stored, ret);
+            if (prev != null)
+                ret = prev;
+        }
+        return ret;
+    }
+
+    /**
+     * Obtains the number of the registered fonts.
+     * @return the number of fonts
+     */
+    public int size()
+    {
+        return fonts.size();
+    }
+
+    /**
+     * Removes all the registered fonts.
+     */
+    public void clear()
+    {
+        fonts.clear();
+    }
+
+    //=========================================================================
+
+    private static class Key
+    {
+        private final String family;
+        private final int size;
+        private final CSSProperty.FontWeight weight;
+        private final CSSProperty.FontStyle style;
+        private final float tracking;
+        private final Map<TextAttribute, Object> attributes;
+        private final int hash;
+
+        public Key(String family, int size, CSSProperty.FontWeight weight, CSSProperty.FontStyle style,
+                float tracking, Map<TextAttribute, Object> attributes)
+        {
+            this.family = family;
+            this.size = size;
+            this.weight = weight;
+            this.style = style;
+            this.tracking = tracking;
+            this.attributes = attributes;
+            this.hash = Objects.hash(family, size, weight, style, tracking, attributes);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            final Key other = (Key) obj;
+            return size == other.size
+                    && Float.floatToIntBits(tracking) == Float.floatToIntBits(other.tracking)
+                    && weight == other.weight && style == other.style
+                    && Objects.equals(family, other.family)
+                    && attributes.equals(other.attributes);
+        }
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * FontCatalog.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 16:12:05 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.awt.Font;
+import java.awt.GraphicsEnvironment;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A process-wide catalog of the font families available in the local graphics environment.
+ * The list of the families is obtained once and indexed by the lower-case family names so that
+ * the font lookups do not need to scan the whole list. The catalog must be refreshed using
+ * {@link #refresh()} when a new font is registered in the graphics environment; the fonts registered
+ * using {@link #registerFont(Font)} refresh the catalog automatically. Each refresh
+ * increases the catalog version that may be used for invalidating the results derived
+ * from the catalog contents.
+ *
+ * The catalog is thread-safe.
+ *
+ * @author agent
+ */
+public class FontCatalog
+{
+    private static final Logger log = LoggerFactory.getLogger(FontCatalog.class);
+
+    private static final FontCatalog instance = new FontCatalog();
+
+    /** Current catalog contents or {@code null} when not built yet */
+    private volatile Index index;
+    /** Current catalog version */
+    private volatile long version;
+    /** Names of the fonts registered using {@link #registerFont(Font)} */
+    private final Set<String> registeredFonts = new HashSet<>();
+
+
+    private FontCatalog()
+    {
+    }
+
+    /**
+     * Obtains the shared catalog instance.
+     * @return the font catalog
+     */
+    public static FontCatalog getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Finds an available font family with the given name. The names are compared case-insensitively.
+     * @param family the family name to find
+     * @return the exact name of the available font family or {@code null} when not available
+     */
+    public String findFamily(String family)
+    {
+        return getIndex().families.get(family.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Obtains the name of a font usable as the last fallback when no other font is available.
+     * @return the font family name
+     */
+    public String getFallbackFamily()
+    {
+        return getIndex().fallback;
+    }
+
+    /**
+     * Obtains the names of all the available font families.
+     * @return an array of font family names
+     */
+    public String[] getFamilyNames()
+    {
+        return getIndex().names.clone();
+    }
+
+    /**
+     * Obtains the current catalog version. The version is increased on every {@link #refresh()}.
+     * @return the catalog version
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Re-reads the available font families from the graphics environment. This should be called
+     * when a new font has been registered.
+     */
+    public synchronized void refresh()
+    {
+        index = new Index(GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
+        version++;
+    }
+
+    /**
+     * Registers a new font in the local graphics environment and refreshes the catalog. Each font
+     * is registered only once; repeated registrations of the font with the same name are ignored.
+     * @param font the font to be registered
+     * @return the registered font name
+     */
+    public synchronized String registerFont(Font font)
+    {
+        final String name = font.getFontName();
+        if (registeredFonts.add(name))
+        {
+            if (GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(font))
+            {
+                log.debug("Registered font: {}", name);
+                refresh(); //the set of available fonts has changed
+            }
+            else
+                log.debug("Failed to register font: {} (not fatal, probably already existing)", name);
+        }
+        return name;
+    }
+
+    private Index getIndex()
+    {
+        Index ret = index;
+        if (ret == null)
+        {
+            synchronized (this)
+            {
+                if (index == null)
+                    index = new Index(GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
+                ret = index;
+            }
+        }
+        return ret;
+    }
+
+    //=========================================================================
+
+    /**
+     * An immutable snapshot of the available font families.
+     */
+    private static class Index
+    {
+        public final String[] names;
+        public final Map<String, String> families;
+        public final String fallback;
+
+        public Index(String[] names)
+        {
+            this.names = names;
+            families = new HashMap<>(names.length * 2);
+            for (String name : names)
+                families.putIfAbsent(name.toLowerCase(Locale.ROOT), name); //the first one wins as with a linear scan
+            fallback = findFallback();
+        }
+
+        private String findFallback()
+        {
+            if (names.length == 0)
+                return "Serif"; //no physical fonts available, give up
+            //first try: helvetica
+            String ret = families.get("helvetica");
+            if (ret == null) //second try: anything containing "Serif" or "Sans" to avoid strange fonts
+            {
+                for (String name : names)
+                {
+                    final String lname = name.toLowerCase(Locale.ROOT);
+                    if (lname.contains("sans") || lname.contains("serif"))
+                    {
+                        ret = name;
+                        break;
+                    }
+                }
+            }
+            if (ret == null) //third try: use the first available font
+                ret = names[0];
+            return ret;
+        }
+    }
+
+}
@@ -0,0 +1,349 @@
+/*
+ * FontMetricsCache.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 10:12:40 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.fit.cssbox.css.CSSUnits;
+
+/**
+ * A shared cache of glyph advances used for measuring the text width. The cache is keyed by
+ * the font (family, size, style and the font attributes such as kerning or tracking) and the
+ * font render context (anti-aliasing and fractional metrics). For the fonts that do not require
+ * the text layout processing, the string width is computed as a plain sum of the cached character
+ * advances which gives exactly the same result as {@link Font#getStringBounds(String, FontRenderContext)}.
+ * When kerning, ligatures or tracking are used or when the text contains characters that require the layout
+ * processing (complex scripts), the full {@code TextLayout}-based measurement is used. Moreover, the cache
+ * keeps the font metrics and the derived font units used by the visual contexts.
+ *
+ * The cache is thread-safe and it may be shared among all the visual contexts.
+ *
+ * @author agent
+ */
+public class FontMetricsCache
+{
+    /** Maximal number of font tables kept in the cache. */
+    private static final int MAX_ENTRIES = 1024;
+
+    private static final FontMetricsCache instance = new FontMetricsCache();
+
+    private ConcurrentHashMap<Key, GlyphAdvances> tables;
+    private ConcurrentHashMap<Key, Metrics> metrics;
+
+
+    /**
+     * Obtains the shared cache instance.
+     * @return the cache instance
+     */
+    public static FontMetricsCache getInstance()
+    {
+        return instance;
+    }
+
+    public FontMetricsCache()
+    {
+        tables = new ConcurrentHashMap<>();
+        metrics = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Obtains the glyph advance table for the given font and font render context.
+     * @param font the font
+     * @param frc the font render context used for measuring
+     * @return the glyph advance table
+     */
+    public GlyphAdvances getGlyphAdvances(Font font, FontRenderContext frc)
+    {
+        final Key key = new Key(font, frc);
+        GlyphAdvances ret = tables.get(key);
+        if (ret == null)
+        {
+            if (tables.size() >= MAX_ENTRIES)
+                tables.clear(); //usually caused by many different transformations, just start again
+            ret = tables.computeIfAbsent(key, k -> new GlyphAdvances(k.font, k.frc));
+        }
+        return ret;
+    }
+
+    /**
+     * Obtains the metrics of the given font used in the given graphics context.
+     * @param font the font
+     * @param g the graphics context used for rendering the font
+     * @return the font metrics
+     */
+    public Metrics getMetrics(Font font, Graphics2D g)
+    {
+        final Key key = new Key(font, g.getFontRenderContext());
+        Metrics ret = metrics.get(key);
+        if (ret == null)
+        {
+            if (metrics.size() >= MAX_ENTRIES)
+                metrics.clear();
+            ret = metrics.computeIfAbsent(key, k -> new Metrics(g.getFontMetrics(k.font)));
+        }
+        return ret;
+    }
+
+    /**
+     * Removes all the cached tables and metrics.
+     */
+    public void clear()
+    {
+        tables.clear();
+        metrics.clear();
+    }
+
+    //=========================================================================
+
+    /**
+     * Glyph advances of a single font in a given font render context. The advances are computed
+     * lazily in pages of 256 characters.
+     *
+     * @author agent
+     */
+    public static class GlyphAdvances
+    {
+        private static final int PAGE_BITS = 8;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+        private final Font font;
+        private final FontRenderContext frc;
+        /** Is the font usable for simple (per-character) measuring? */
+        private final boolean simple;
+        /** Advance pages; NaN values represent the characters that require the layout processing. */
+        private final AtomicReferenceArray<float[]> pages;
+
+
+        protected GlyphAdvances(Font font, FontRenderContext frc)
+        {
+            this.font = font;
+            this.frc = frc;
+            this.simple = isSimpleFont(font);
+            this.pages = simple ? new AtomicReferenceArray<>(1 << (16 - PAGE_BITS)) : null;
+        }
+
+        public Font getFont()
+        {
+            return font;
+        }
+
+        public FontRenderContext getFontRenderContext()
+        {
+            return frc;
+        }
+
+        /**
+         * Checks whether the advances may be simply summed for this font.
+         * @return {@code false} when the full text layout must be used for measuring
+         */
+        public boolean isSimple()
+        {
+            return simple;
+        }
+
+        /**
+         * Computes the width of the given string.
+         * @param text the string to be measured
+         * @return the string width in pixels
+         */
+        public float stringWidth(String text)
+        {
+            return stringWidth(text, 0, text.length());
+        }
+
+        /**
+         * Computes the width of a part of the given character sequence.
+         * @param text the character sequence
+         * @param start the start index (inclusive)
+         * @param end the end index (exclusive)
+         * @return the width of the subsequence in pixels
+         */
+        public float stringWidth(CharSequence text, int start, int end)
+        {
+            if (simple)
+            {
+                float w = 0;
+                for (int i = start; i < end; i++)
+                {
+                    final float adv = charAdvance(text.charAt(i));
+                    if (Float.isNaN(adv)) //complex text
+                        return layoutWidth(text, start, end);
+                    w += adv;
+                }
+                return w;
+            }
+            else
+                return layoutWidth(text, start, end);
+        }
+
+        /**
+         * Obtains the advance of a single character. The width of a text is equal to the sum of its
+         * character advances when all the advances are available.
+         * @param ch the character
+         * @return the character advance or NaN when the font or the character requires the layout processing
+         */
+        public float charAdvance(char ch)
+        {
+            if (!simple)
+                return Float.NaN;
+            final int pi = ch >>> PAGE_BITS;
+            float[] page = pages.get(pi);
+            if (page == null)
+            {
+                page = createPage(pi);
+                pages.set(pi, page); //concurrently created pages are equal, no need to synchronize
+            }
+            return page[ch & (PAGE_SIZE - 1)];
+        }
+
+        private float[] createPage(int pi)
+        {
+            final float[] ret = new float[PAGE_SIZE];
+            final char[] buf = new char[1];
+            for (int i = 0; i < PAGE_SIZE; i++)
+            {
+                buf[0] = (char) ((pi << PAGE_BITS) | i);
+                if (Font.textRequiresLayout(buf, 0, 1))
+                    ret[i] = Float.NaN;
+                else
+                    ret[i] = (float) font.getStringBounds(buf, 0, 1, frc).getWidth();
+            }
+            return ret;
+        }
+
+        private float layoutWidth(CharSequence text, int start, int end)
+        {
+            if (text instanceof String)
+                return (float) font.getStringBounds((String) text, start, end, frc).getWidth();
+            else
+                return (float) font.getStringBounds(text.subSequence(start, end).toString(), frc).getWidth();
+        }
+
+        /**
+         * Checks whether the font may be measured by summing the individual character advances.
+         * This is not possible when kerning, ligatures, tracking or font transformations are used.
+         * @param font the font to check
+         * @return {@code true} when the advances may be summed
+         */
+        private static boolean isSimpleFont(Font font)
+        {
+            if (font.isTransformed())
+                return false;
+            if (!font.hasLayoutAttributes())
+                return true;
+            final Map<TextAttribute, ?> attrs = font.getAttributes();
+            return !TextAttribute.KERNING_ON.equals(attrs.get(TextAttribute.KERNING))
+                    && !TextAttribute.LIGATURES_ON.equals(attrs.get(TextAttribute.LIGATURES))
+                    && isZero(attrs.get(TextAttribute.TRACKING));
+        }
+
+        private static boolean isZero(Object value)
+        {
+            return value == null || (value instanceof Number && ((Number) value).floatValue() == 0.0f);
+        }
+    }
+
+    //=========================================================================
+
+    /**
+     * The metrics of a font used in a graphics context together with the derived font units.
+     *
+     * @author agent
+     */
+    public static class Metrics
+    {
+        private final FontMetrics fontMetrics;
+        private final float ex;
+        private final float ch;
+
+        protected Metrics(FontMetrics fm)
+        {
+            fontMetrics = fm;
+            final FontRenderContext frc = new FontRenderContext(null, false, false);
+            final TextLayout layout = new TextLayout("x", fm.getFont(), frc);
+            ex = CSSUnits.points((float) layout.getBounds().getHeight());
+            ch = CSSUnits.points(fm.charWidth('0'));
+        }
+
+        public FontMetrics getFontMetrics()
+        {
+            return fontMetrics;
+        }
+
+        /**
+         * Gets the 1ex length of the font.
+         * @return the ex size in points
+         */
+        public float getEx()
+        {
+            return ex;
+        }
+
+        /**
+         * Gets the 1ch length of the font.
+         * @return the ch size in points
+         */
+        public float getCh()
+        {
+            return ch;
+        }
+    }
+
+    //=========================================================================
+
+    private static class Key
+    {
+        private final Font font;
+        private final FontRenderContext frc;
+        private final int hash;
+
+        public Key(Font font, FontRenderContext frc)
+        {
+            this.font = font;
+            this.frc = frc;
+            this.hash = Objects.hash(font, frc);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            final Key other = (Key) obj;
+            return font.equals(other.font) && frc.equals(other.frc);
+        }
+    }
+
+}
@@ -19,17 +19,25 @@
  */
 package org.fit.cssbox.awt;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.font.TextAttribute;
 import java.awt.image.BufferedImage;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.fit.cssbox.css.DOMAnalyzer;
 import org.fit.cssbox.css.FontTable;
 import org.fit.cssbox.layout.BrowserConfig;
 import org.fit.cssbox.layout.Dimension;
 import org.fit.cssbox.layout.Engine;
+import org.fit.cssbox.layout.Rectangle;
 import org.fit.cssbox.layout.Viewport;
 import org.fit.cssbox.layout.VisualContext;
 import org.fit.cssbox.render.BoxRenderer;
@@ -38,6 +46,13 @@ import org.w3c.dom.Element;
 /**
  * An implementation of the rendering engine using a Graphics2D renderer and
  * visual context. 
+ * <p>
+ * Apart from rendering the whole page to a single image, the laid-out page may be rendered
+ * in rectangular tiles using {@link #renderTiles(int, int, int, TileConsumer)}. The tiles are painted
+ * in parallel, each of them using its own graphics context, so that large pages may be rendered
+ * using all the available processors. When the page image is not required at all, its creation may
+ * be switched off using {@link #setImageOutput(boolean)}; the memory used for rendering the tiles
+ * is then bounded by the tile size and the number of threads.
  *
  * @author burgetr
  */
@@ -46,6 +61,13 @@ public class GraphicsEngine extends Engine
     private boolean createImage;
     private BufferedImage img;
     private Graphics2D ig;
+    private BufferedImage recycledImg; //the image of the previous document that may be reused
+    private boolean imageOutput = true;
+    private int canvasWidth;
+    private int canvasHeight;
+    
+    /** The margin added to the painted area of the tiles for the content overflowing the box bounds */
+    private static final int TILE_MARGIN = 32;
     
     boolean useFractionalMetrics = false;
     boolean useKerning = true;
@@ -110,6 +132,28 @@ public class GraphicsEngine extends Engine
         createImage = false;
     }
 
+    /**
+     * Tests if the page image is created and rendered by this engine.
+     * @return {@code true} when yes
+     */
+    public boolean isImageOutput()
+    {
+        return imageOutput;
+    }
+
+    /**
+     * Switches creating and rendering the page image on or off. When switched off, the engine
+     * creates no page image during the layout and {@link #getImage()} returns {@code null}; the page
+     * may be rendered using {@link #renderTiles(int, int, int, TileConsumer)} only. This avoids
+     * allocating the image of the whole page for very large pages. Default is on. The setting
+     * has no effect when a custom image has been set using {@link #setImage(BufferedImage)}.
+     * @param imageOutput {@code true} for creating the page image
+     */
+    public void setImageOutput(boolean imageOutput)
+    {
+        this.imageOutput = imageOutput;
+    }
+
     /**
      * Tests if fractional metrics are used by this engine.
      * @return {@code true} when yes
@@ -150,6 +194,127 @@ public class GraphicsEngine extends Engine
 
     //==========================================================================================================
     
+    /**
+     * Renders the laid-out page in tiles of the given size. The canvas is split to a grid of tiles
+     * that are painted in parallel using the common fork-join pool; each tile is painted to a separate
+     * image and passed to the consumer as soon as it is finished. The tiles at the right and bottom
+     * edges of the canvas may be smaller than the requested size. The box tree is not modified
+     * during the rendering so that the layout must not be changed until this method returns.
+     * @param tileWidth the tile width in pixels
+     * @param tileHeight the tile height in pixels
+     * @param threads the maximal number of tiles painted concurrently; 1 means painting all the tiles
+     * in the calling thread
+     * @param consumer the consumer of the finished tiles. It may be called concurrently from multiple
+     * threads in an arbitrary tile order.
+     */
+    public void renderTiles(int tileWidth, int tileHeight, int threads, TileConsumer consumer)
+    {
+        final Viewport viewport = getViewport();
+        if (viewport == null)
+            throw new IllegalStateException("No layout has been created");
+        if (tileWidth <= 0 || tileHeight <= 0)
+            throw new IllegalArgumentException("Invalid tile size " + tileWidth + "x" + tileHeight);
+        
+        final List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; y < canvasHeight; y += tileHeight)
+            for (int x = 0; x < canvasWidth; x += tileWidth)
+                tiles.add(new Rectangle(x, y, Math.min(tileWidth, canvasWidth - x), Math.min(tileHeight, canvasHeight - y)));
+        
+        if (threads <= 1 || tiles.size() <= 1)
+        {
+            for (Rectangle tile : tiles)
+                consumer.tileRendered((int) tile.x, (int) tile.y, renderTile(viewport, tile));
+        }
+        else
+        {
+            //the tiles are taken from the shared list by at most n tasks of the common pool
+            final int n = Math.min(threads, tiles.size());
+            final AtomicInteger next = new AtomicInteger();
+            final List<Future<?>> workers = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+            {
+                workers.add(ForkJoinPool.commonPool().submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < tiles.size())
+                    {
+                        final Rectangle tile = tiles.get(index);
+                        consumer.tileRendered((int) tile.x, (int) tile.y, renderTile(viewport, tile));
+                    }
+                }));
+            }
+            try {
+                for (Future<?> worker : workers)
+                    worker.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                else if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                else
+                    throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while rendering the tiles", e);
+            } finally {
+                next.set(tiles.size()); //stop the remaining workers on failure
+            }
+        }
+    }
+    
+    /**
+     * Renders the laid-out page in parallel tiles and stitches the tiles to a single image
+     * of the canvas size. See {@link #renderTiles(int, int, int, TileConsumer)}. Normally, the
+     * layout should be created without rendering in this case (see
+     * {@link #createLayout(Dimension, org.fit.cssbox.layout.Rectangle, boolean)}).
+     * @param tileWidth the tile width in pixels
+     * @param tileHeight the tile height in pixels
+     * @param threads the number of threads used for painting the tiles
+     * @return the resulting image of the whole page
+     * @throws IllegalStateException when no layout has been created
+     */
+    public BufferedImage renderTiled(int tileWidth, int tileHeight, int threads)
+    {
+        if (getViewport() == null)
+            throw new IllegalStateException("No layout has been created");
+        final BufferedImage ret = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_RGB);
+        renderTiles(tileWidth, tileHeight, threads, (x, y, tile) -> {
+            synchronized (ret)
+            {
+                ret.getRaster().setRect(x, y, tile.getRaster());
+            }
+        });
+        return ret;
+    }
+    
+    /**
+     * Paints a single tile of the page.
+     * @param viewport the viewport to be painted
+     * @param tile the tile bounds on the canvas
+     * @return the tile image
+     */
+    protected BufferedImage renderTile(Viewport viewport, Rectangle tile)
+    {
+        final int x = (int) tile.x;
+        final int y = (int) tile.y;
+        final int w = (int) tile.width;
+        final int h = (int) tile.height;
+        final BufferedImage ret = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = ret.createGraphics();
+        try {
+            setupGraphics(g);
+            g.translate(-x, -y);
+            g.clipRect(x, y, w, h);
+            GraphicsRenderer r = new GraphicsRenderer(g);
+            r.init(viewport);
+            r.clearCanvas();
+            viewport.draw(r, new Rectangle(x - TILE_MARGIN, y - TILE_MARGIN, w + 2 * TILE_MARGIN, h + 2 * TILE_MARGIN));
+            r.close();
+        } finally {
+            g.dispose();
+        }
+        return ret;
+    }
+    
     /**
      * Sets the default Graphics2D parametres.
      * @param g The graphics to be configured.
@@ -166,14 +331,58 @@ public class GraphicsEngine extends Engine
     @Override
     protected void initOutputMedia(float width, float height)
     {
-        if (createImage)
+        canvasWidth = (int) width;
+        canvasHeight = (int) height;
+        if (createImage && !imageOutput)
+        {
+            //no page image, just a graphics context for the font metrics
+            if (ig == null)
+            {
+                ig = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+                setupGraphics(ig);
+            }
+            img = null;
+        }
+        else if (createImage)
         {
-            img = new BufferedImage((int) width, (int) height, BufferedImage.TYPE_INT_RGB);
-            ig = img.createGraphics();
+            final int w = (int) width;
+            final int h = (int) height;
+            if (recycledImg != null && recycledImg.getWidth() == w && recycledImg.getHeight() == h)
+            {
+                //reuse the image of the previous document; clear it as a new image would be
+                img = recycledImg;
+                ig = img.createGraphics();
+                ig.setColor(Color.BLACK);
+                ig.fillRect(0, 0, w, h);
+            }
+            else
+            {
+                img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+                ig = img.createGraphics();
+            }
+            recycledImg = null;
             setupGraphics(ig);
         }
     }
 
+    /**
+     * {@inheritDoc} When the page image has been created by the engine, it is reused for
+     * the next document of the same page size.
+     */
+    @Override
+    public void reset(Element root, DOMAnalyzer decoder, URL baseurl)
+    {
+        super.reset(root, decoder, baseurl);
+        if (createImage && ig != null)
+        {
+            if (img != null)
+                recycledImg = img;
+            ig.dispose();
+            img = null;
+            ig = null;
+        }
+    }
+
     @Override
     protected VisualContext createVisualContext(BrowserConfig config, FontTable fontTable)
     {
@@ -192,12 +401,32 @@ public class GraphicsEngine extends Engine
     @Override
     protected void renderViewport(Viewport viewport)
     {
+        if (img == null)
+            return; //no page image to render to
         // adds clearCanvas before rendering
         GraphicsRenderer r = (GraphicsRenderer) getRenderer();
         r.init(viewport);
         r.clearCanvas();
-        viewport.draw(r);
+        viewport.setRenderer(r);
+        viewport.draw(r, getConfig().getRenderVisibleAreaOnly() ? viewport.getVisibleRect() : null);
         r.close();
     }
     
+    //==========================================================================================================
+    
+    /**
+     * A consumer of the tiles rendered by {@link GraphicsEngine#renderTiles(int, int, int, TileConsumer)}.
+     */
+    public interface TileConsumer
+    {
+        /**
+         * Called when a tile has been rendered. The method may be called concurrently from
+         * multiple threads.
+         * @param x the x coordinate of the tile on the canvas
+         * @param y the y coordinate of the tile on the canvas
+         * @param tile the tile image. The engine does not use the image after this call.
+         */
+        public void tileRendered(int x, int y, BufferedImage tile);
+    }
+    
 }
@@ -0,0 +1,210 @@
+/*
+ * GraphicsEnginePool.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 17:35:52 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.fit.cssbox.css.CSSNorm;
+import org.fit.cssbox.css.DOMAnalyzer;
+import org.fit.cssbox.layout.BrowserConfig;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.StyleSheet;
+
+/**
+ * A pool of graphics engines for rendering many documents in sequence or in multiple threads.
+ * The pool reduces the per-document setup cost:
+ * <ul>
+ * <li>The shared pre-parsed agent style sheets (see {@link CSSNorm#getStdStyleSheet()}) are added to all
+ * the analyzers created by {@link #createAnalyzer(Document, URL, MediaSpec)}.</li>
+ * <li>The released engines are reset and reused for the next documents. Their page images are
+ * reused when the next document has the same page size.</li>
+ * </ul>
+ * A typical use:
+ * <pre>
+ * DOMAnalyzer da = pool.createAnalyzer(doc, url, media);
+ * da.getStyleSheets();
+ * GraphicsEngine engine = pool.acquire(da.getRoot(), da, url);
+ * engine.createLayout(dim);
+ * ... use engine.getImage() ...
+ * pool.release(engine);
+ * </pre>
+ * The results of an engine (the page image and the box tree) must not be used after the engine
+ * has been released. All the engines share the browser configuration of the pool.
+ * 
+ * The pool is thread-safe; a single engine must not be used by multiple threads at the same time.
+ * 
+ * @author agent
+ */
+public class GraphicsEnginePool
+{
+    /** Default maximal number of idle engines kept in the pool */
+    public static final int DEFAULT_MAX_IDLE = 4;
+    
+    private final BrowserConfig config;
+    private final int maxIdle;
+    private final Deque<GraphicsEngine> idle;
+    private final List<StyleSheet> agentSheets;
+    
+    
+    /**
+     * Creates a pool with a default browser configuration.
+     */
+    public GraphicsEnginePool()
+    {
+        this(new BrowserConfig(), DEFAULT_MAX_IDLE);
+    }
+    
+    /**
+     * Creates a pool with the given browser configuration.
+     * @param config the browser configuration shared by all the engines
+     * @param maxIdle the maximal number of idle engines kept in the pool
+     */
+    public GraphicsEnginePool(BrowserConfig config, int maxIdle)
+    {
+        this.config = config;
+        this.maxIdle = maxIdle;
+        idle = new ArrayDeque<>(maxIdle);
+        agentSheets = Collections.unmodifiableList(createAgentStyleSheets());
+    }
+    
+    /**
+     * Obtains the browser configuration shared by all the engines.
+     * @return the browser configuration
+     */
+    public BrowserConfig getConfig()
+    {
+        return config;
+    }
+    
+    /**
+     * Obtains the parsed agent style sheets added to the created analyzers.
+     * @return an unmodifiable list of style sheets
+     */
+    public List<StyleSheet> getAgentStyleSheets()
+    {
+        return agentSheets;
+    }
+    
+    /**
+     * Creates a new style analyzer for a document. The HTML presentation attributes are converted
+     * to the inline styles and the shared agent style sheets are added. The author style sheets
+     * must be loaded by the caller (e.g. using {@link DOMAnalyzer#getStyleSheets()}).
+     * @param doc the document
+     * @param baseUrl the document base URL
+     * @param media the media specification or {@code null} for the default media
+     * @return the new analyzer
+     */
+    public DOMAnalyzer createAnalyzer(Document doc, URL baseUrl, MediaSpec media)
+    {
+        DOMAnalyzer da = new DOMAnalyzer(doc, baseUrl);
+        if (media != null)
+            da.setMediaSpec(media);
+        da.attributesToStyles(); //convert the HTML presentation attributes to inline styles
+        for (StyleSheet sheet : agentSheets)
+            da.addStyleSheet(sheet);
+        return da;
+    }
+    
+    /**
+     * Obtains an engine for rendering a document. An idle engine is reused when available,
+     * a new engine is created otherwise.
+     * @param root the &lt;body&gt; element of the document to be rendered
+     * @param decoder the CSS decoder used to compute the style
+     * @param baseurl the document base URL
+     * @return the engine
+     */
+    public GraphicsEngine acquire(Element root, DOMAnalyzer decoder, URL baseurl)
+    {
+        GraphicsEngine engine;
+        synchronized (idle)
+        {
+            engine = idle.pollFirst();
+        }
+        if (engine != null)
+            engine.reset(root, decoder, baseurl);
+        else
+        {
+            engine = createEngine(root, decoder, baseurl);
+            engine.setConfig(config);
+        }
+        return engine;
+    }
+    
+    /**
+     * Returns an engine to the pool. The engine releases the rendered document and it may be
+     * reused for another document.
+     * @param engine the engine obtained using {@link #acquire(Element, DOMAnalyzer, URL)}
+     */
+    public void release(GraphicsEngine engine)
+    {
+        engine.reset(null, null, null);
+        synchronized (idle)
+        {
+            if (idle.size() < maxIdle)
+                idle.addFirst(engine); //the most recently used engine is reused first
+        }
+    }
+    
+    /**
+     * Removes all the idle engines from the pool.
+     */
+    public void clear()
+    {
+        synchronized (idle)
+        {
+            idle.clear();
+        }
+    }
+    
+    /**
+     * Creates a new engine. This may be overriden in order to use a customized engine.
+     * @param root the &lt;body&gt; element of the document to be rendered
+     * @param decoder the CSS decoder used to compute the style
+     * @param baseurl the document base URL
+     * @return the new engine
+     */
+    protected GraphicsEngine createEngine(Element root, DOMAnalyzer decoder, URL baseurl)
+    {
+        return new GraphicsEngine(root, decoder, baseurl);
+    }
+    
+    /**
+     * Creates the list of the agent style sheets used for all the documents. By default, the shared
+     * standard, additional and forms style sheets provided by {@link CSSNorm} are used.
+     * @return the list of parsed style sheets
+     */
+    protected List<StyleSheet> createAgentStyleSheets()
+    {
+        List<StyleSheet> ret = new ArrayList<>(3);
+        ret.add(CSSNorm.getStdStyleSheet()); //the standard style sheet
+        ret.add(CSSNorm.getUserStyleSheet()); //the additional style sheet
+        ret.add(CSSNorm.getFormsStyleSheet()); //render form fields using css
+        return ret;
+    }
+    
+}
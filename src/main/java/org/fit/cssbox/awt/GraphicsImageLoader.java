@@ -20,12 +20,18 @@
 package org.fit.cssbox.awt;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 
@@ -43,12 +49,21 @@ import org.slf4j.LoggerFactory;
  * in GraphicsRenderer. It is based on ImageIO toolkit and produces
  * the BitmapImage instances for bitmap images.
  * 
+ * When the lazy image decoding is enabled in the configuration, only the image size is read
+ * from the image header and the pixel data is decoded when the image is rendered for the first time.
+ * 
+ * Concurrent requests for the same image (and the same image cache, if any) are merged: only
+ * the first request loads the image and the remaining ones wait for its result.
+ * 
  * @author burgetr
  */
 public class GraphicsImageLoader implements ImageLoader
 {
     protected static final Logger log = LoggerFactory.getLogger(GraphicsImageLoader.class);
     
+    /** The images currently being loaded (shared by all the loaders) */
+    private static final ConcurrentHashMap<LoadKey, CompletableFuture<ContentImage>> loading = new ConcurrentHashMap<>();
+    
     private VisualContext ctx;
     
     
@@ -69,18 +84,12 @@ public class GraphicsImageLoader implements ImageLoader
                 // get image and cache
                 img = imageCache.get(url);
                 if (img == null && !imageCache.hasFailed(url))
-                {
-                    img = loadImageFromSource(url);
-                    if (img != null)
-                        imageCache.put(url, img);
-                    else
-                        imageCache.putFailed(url);
-                }
+                    img = loadAndCache(url, imageCache);
             }
             else
             {
                 // do not cache, just get image
-                img = loadImageFromSource(url);
+                img = loadShared(url, null);
             }
             // observer need to know that resource with this url will be absent.
             // Even if we only check that url has failed earlier.
@@ -92,7 +101,82 @@ public class GraphicsImageLoader implements ImageLoader
     }
     
     /**
-     * Loads the image from the given source URL.
+     * Loads the image and stores the result to the cache. When the same image is already
+     * being loaded for the same cache by another thread, waits for the result instead.
+     * 
+     * @param url the source URL
+     * @param imageCache the image cache to be used
+     * @return the content image or {@code null} when the image could not be loaded or decoded
+     */
+    protected ContentImage loadAndCache(URL url, ImageCache imageCache)
+    {
+        return loadShared(url, imageCache);
+    }
+    
+    /**
+     * Loads the image and stores the result to the cache if provided. When the same image is already
+     * being loaded for the same cache by another thread, waits for the result instead.
+     * 
+     * @param url the source URL
+     * @param imageCache the image cache to be used or {@code null} for no caching
+     * @return the content image or {@code null} when the image could not be loaded or decoded
+     */
+    private ContentImage loadShared(URL url, ImageCache imageCache)
+    {
+        final LoadKey key = new LoadKey(imageCache, url);
+        final CompletableFuture<ContentImage> future = new CompletableFuture<>();
+        final CompletableFuture<ContentImage> running = loading.putIfAbsent(key, future);
+        if (running != null)
+            return awaitLoad(url, running); //already being loaded by another thread
+        
+        ContentImage img = null;
+        try {
+            if (imageCache != null)
+            {
+                //another thread may have finished loading the image just before we registered
+                img = imageCache.get(url);
+                if (img == null && !imageCache.hasFailed(url))
+                {
+                    img = loadImageFromSource(url);
+                    if (img != null)
+                        imageCache.put(url, img);
+                    else
+                        imageCache.putFailed(url);
+                }
+            }
+            else
+                img = loadImageFromSource(url);
+        } finally {
+            loading.remove(key, future);
+            future.complete(img);
+        }
+        return img;
+    }
+    
+    /**
+     * Waits for an image being loaded by another thread. The wait is not limited: the loading
+     * thread always completes the load, successfully or not, and the load itself is limited
+     * by the document source timeouts.
+     * 
+     * @param url the source URL
+     * @param running the running load
+     * @return the content image or {@code null} when the image could not be loaded
+     */
+    private ContentImage awaitLoad(URL url, CompletableFuture<ContentImage> running)
+    {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Unable to get image from: " + url);
+        }
+        return null;
+    }
+    
+    /**
+     * Loads the image from the given source URL. When the lazy image decoding is enabled
+     * in the configuration, only the image header is decoded.
      * 
      * @param url the source URL
      * @return the content image or {@code null} when the image could not be loaded or decoded
@@ -102,44 +186,117 @@ public class GraphicsImageLoader implements ImageLoader
         ContentImage ret = null;
         try (DocumentSource imgsrc = ctx.getConfig().createDocumentSource(url))
         {
-            InputStream urlStream = imgsrc.getInputStream();
-            ImageInputStream imageInputStream = ImageIO.createImageInputStream(urlStream);
-            try
+            if (ctx.getConfig().getLazyImageDecoding())
+            {
+                final byte[] data = readAll(imgsrc.getInputStream());
+                ret = createLazyImage(url, data);
+            }
+            else
             {
-                Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
-                if (!imageReaders.hasNext())
+                BufferedImage image = decodeImage(url, imgsrc.getInputStream(), 1);
+                if (image != null)
+                    ret = new BitmapImage(url, image);
+            }
+        } catch (IOException e) {
+            log.error("Unable to get image from: " + url);
+            log.error(e.getMessage());
+        }
+        return ret;
+    }
+    
+    /**
+     * Creates a lazily decoded image. Reads the image size from the image header.
+     * 
+     * @param url the source URL
+     * @param data the encoded image data
+     * @return the content image or {@code null} when the image size could not be decoded
+     */
+    protected ContentImage createLazyImage(URL url, byte[] data)
+    {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(data)))
+        {
+            Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
+            if (!imageReaders.hasNext())
+                log.warn("No image readers for URL: " + url);
+            while (imageReaders.hasNext())
+            {
+                ImageReader currentImageReader = imageReaders.next();
+                currentImageReader.setInput(imageInputStream);
+                try
                 {
-                    log.warn("No image readers for URL: " + url);
+                    final int width = currentImageReader.getWidth(0);
+                    final int height = currentImageReader.getHeight(0);
+                    return new BitmapImage(url, width, height,
+                            subsampling -> decodeImage(url, new ByteArrayInputStream(data), subsampling));
+                } catch (Exception e) {
+                    log.error("Image decoding error: " + e.getMessage() + " with reader " + currentImageReader);
+                } finally {
+                    currentImageReader.dispose();
                 }
-                else
+            }
+        } catch (Exception e) {
+            log.error("Image decoding error: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Decodes an image from the input stream.
+     * 
+     * @param url the source URL (used for logging)
+     * @param urlStream the input stream
+     * @param subsampling the subsampling factor for both axes (1 for the full-size image)
+     * @return the decoded image or {@code null} when the image could not be decoded
+     */
+    protected BufferedImage decodeImage(URL url, InputStream urlStream, int subsampling)
+    {
+        BufferedImage image = null;
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(urlStream))
+        {
+            Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
+            if (!imageReaders.hasNext())
+            {
+                log.warn("No image readers for URL: " + url);
+            }
+            else
+            {
+                do
                 {
-                    BufferedImage image = null;
-                    do
-                    {
-                        ImageReader currentImageReader = imageReaders.next();
-                        currentImageReader.setInput(imageInputStream);
+                    ImageReader currentImageReader = imageReaders.next();
+                    currentImageReader.setInput(imageInputStream);
 
-                        try
+                    try
+                    {
+                        if (subsampling > 1)
                         {
-                            image = currentImageReader.read(0);
-                        } catch (Exception e) {
-                            log.error("Image decoding error: " + e.getMessage() + " with reader " + currentImageReader);
-                        } finally {
-                            currentImageReader.dispose();
+                            ImageReadParam param = currentImageReader.getDefaultReadParam();
+                            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                            image = currentImageReader.read(0, param);
                         }
+                        else
+                            image = currentImageReader.read(0);
+                    } catch (Exception e) {
+                        log.error("Image decoding error: " + e.getMessage() + " with reader " + currentImageReader);
+                    } finally {
+                        currentImageReader.dispose();
                     }
-                    while (image == null && imageReaders.hasNext());
-                    if (image != null)
-                        ret = new BitmapImage(url, image);
                 }
-            } catch (Exception e) {
-                log.error("Image decoding error: " + e.getMessage());
+                while (image == null && imageReaders.hasNext());
             }
-        } catch (IOException e) {
-            log.error("Unable to get image from: " + url);
-            log.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("Image decoding error: " + e.getMessage());
         }
-        return ret;
+        return image;
+    }
+    
+    private byte[] readAll(InputStream is) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        int len;
+        while ((len = is.read(buf)) != -1)
+            out.write(buf, 0, len);
+        return out.toByteArray();
     }
     
     private void observeLoadFailed(URL url)
@@ -149,4 +306,36 @@ public class GraphicsImageLoader implements ImageLoader
             observer.contentLoadFailed(url);
     }
 
+    //=========================================================================
+    
+    /**
+     * The key of an image being loaded: the image URL and the target cache ({@code null} for no cache).
+     */
+    private static class LoadKey
+    {
+        private final ImageCache cache;
+        private final String url;
+        
+        public LoadKey(ImageCache cache, URL url)
+        {
+            this.cache = cache;
+            this.url = url.toExternalForm(); //avoid host resolution in URL.equals()
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(cache) * 31 + url.hashCode(); //the cache may be null
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (!(obj instanceof LoadKey)) return false;
+            final LoadKey other = (LoadKey) obj;
+            return cache == other.cache && url.equals(other.url);
+        }
+    }
+
 }
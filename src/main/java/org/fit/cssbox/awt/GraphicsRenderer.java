@@ -30,6 +30,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.text.AttributedString;
 import java.util.HashMap;
 import java.util.Map;
@@ -107,20 +108,24 @@ public class GraphicsRenderer extends StructuredRenderer
     public void startElementContents(ElementBox elem)
     {
         //setup transformations for the contents
-        AffineTransform at = Transform.createTransform(elem);
-        if (at != null)
+        if (Transform.isTransformed(elem))
         {
             savedTransforms.put(elem, g.getTransform());
-            g.transform(at);
+            AffineTransform at = Transform.createTransform(elem);
+            if (at != null)
+                g.transform(at);
         }
     }
 
     public void finishElementContents(ElementBox elem)
     {
         //restore the stransformations
-        AffineTransform origAt = savedTransforms.get(elem);
-        if (origAt != null)
-            g.setTransform(origAt);
+        if (Transform.isTransformed(elem))
+        {
+            AffineTransform origAt = savedTransforms.remove(elem);
+            if (origAt != null)
+                g.setTransform(origAt);
+        }
     }
     
     public void renderElementBackground(ElementBox elem)
@@ -215,26 +220,22 @@ public class GraphicsRenderer extends StructuredRenderer
                 g.fill(abrd);
             }
             
-            //draw the background images
+            //draw the background images directly to the canvas
             if (bg.getBackgroundImages() != null)
             {
-                final BackgroundBitmap bitmap = new BackgroundBitmap(elem);
+                final BackgroundPainter painter = new BackgroundPainter(elem, g, Math.round(brd.x), Math.round(brd.y));
                 for (int i = bg.getBackgroundImages().size() - 1; i >= 0; i--)
                 {
                     BackgroundImage img = bg.getBackgroundImages().get(i);
                     if (img instanceof BackgroundImageImage)
                     {
-                        bitmap.addBackgroundImage((BackgroundImageImage) img);
+                        painter.addBackgroundImage((BackgroundImageImage) img);
                     }
                     else if (img instanceof BackgroundImageGradient)
                     {
-                        bitmap.addBackgroundImage((BackgroundImageGradient) img);
+                        painter.addBackgroundImage((BackgroundImageGradient) img);
                     }
                 }
-                if (bitmap.getBufferedImage() != null)
-                {
-                    g.drawImage(bitmap.getBufferedImage(), Math.round(brd.x), Math.round(brd.y), null);
-                }
             }
         }
         
@@ -475,11 +476,22 @@ public class GraphicsRenderer extends StructuredRenderer
             // update our configuration
             setupGraphics(g, (GraphicsVisualContext) img.getVisualContext());
 
+            // obtain the image for the target size in device pixels
+            final BitmapImage bitmap = (BitmapImage) img.getImage();
+            final AffineTransform gtr = g.getTransform();
+            final BufferedImage bimg = bitmap.getBufferedImage(
+                    (float) (bounds.width * Math.hypot(gtr.getScaleX(), gtr.getShearY())),
+                    (float) (bounds.height * Math.hypot(gtr.getScaleY(), gtr.getShearX())));
+            
             // draw image of the given size and position
-            final AffineTransform tr = new AffineTransform();
-            tr.translate(bounds.x, bounds.y);
-            tr.scale(bounds.width / img.getIntrinsicWidth(), bounds.height / img.getIntrinsicHeight());
-            g.drawImage(((BitmapImage) img.getImage()).getBufferedImage(), tr, null);
+            if (bimg != null)
+            {
+                final AffineTransform tr = new AffineTransform();
+                tr.translate(bounds.x, bounds.y);
+                tr.scale(bounds.width / img.getIntrinsicWidth() * (bitmap.getWidth() / bimg.getWidth()),
+                        bounds.height / img.getIntrinsicHeight() * (bitmap.getHeight() / bimg.getHeight()));
+                g.drawImage(bimg, tr, null);
+            }
         }
         else
         {
@@ -20,26 +20,21 @@
 package org.fit.cssbox.awt;
 
 import java.awt.Font;
-import java.awt.FontFormatException;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
-import java.awt.GraphicsEnvironment;
 import java.awt.font.FontRenderContext;
 import java.awt.font.LineMetrics;
 import java.awt.font.TextAttribute;
-import java.awt.font.TextLayout;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
-import java.util.Locale;
 import java.util.Map;
 
 import org.fit.cssbox.css.CSSUnits;
 import org.fit.cssbox.css.FontDecoder;
 import org.fit.cssbox.css.FontSpec;
 import org.fit.cssbox.css.FontTable;
-import org.fit.cssbox.io.DocumentSource;
 import org.fit.cssbox.layout.BrowserConfig;
 import org.fit.cssbox.layout.FontInfo;
 import org.fit.cssbox.layout.ImageLoader;
@@ -60,6 +55,7 @@ public class GraphicsVisualContext extends VisualContext
     private Graphics2D g;
     private Font font; //current font
     private FontMetrics fm; //current font metrics
+    private FontMetricsCache.GlyphAdvances advances; //glyph advances of the current font
     private float ex; // 1ex length in points
     private float ch; // 1ch length in points
     
@@ -82,8 +78,8 @@ public class GraphicsVisualContext extends VisualContext
     {
         super(parent, config, fontTable);
         this.g = g;
-        font = new Font(Font.SERIF, Font.PLAIN, (int) CSSUnits.medium_font);
         defaultFontAttributes = new HashMap<>();
+        font = createFont(Font.SERIF, (int) CSSUnits.medium_font, CSSProperty.FontWeight.NORMAL, CSSProperty.FontStyle.NORMAL, 0);
         updateMetrics(g);
     }
 
@@ -156,19 +152,15 @@ public class GraphicsVisualContext extends VisualContext
      */
     private void updateMetrics(Graphics2D g)
     {
-        // create a working copy of the graphic context
-        final Graphics2D cg = (Graphics2D) g.create(); 
-        // set the graphics font to the current font
-        updateGraphics(cg);
-        // get the font metrics
-        fm = cg.getFontMetrics();
+        // get the font metrics for the current font
+        final FontMetricsCache.Metrics metrics = FontMetricsCache.getInstance().getMetrics(font, g);
+        fm = metrics.getFontMetrics();
+        advances = null; //will be obtained on demand
         
         //update the width units
         //em and rem are maintained by the parent class (VisualContext)
-        FontRenderContext frc = new FontRenderContext(null, false, false);
-        TextLayout layout = new TextLayout("x", font, frc);
-        ex = CSSUnits.points((float) layout.getBounds().getHeight());
-        ch = CSSUnits.points(fm.charWidth('0'));
+        ex = metrics.getEx();
+        ch = metrics.getCh();
     }
     
     @Override
@@ -177,11 +169,40 @@ public class GraphicsVisualContext extends VisualContext
         if (text.isEmpty())
             return 0;
         else
+            return getGlyphAdvances().stringWidth(text);
+    }
+    
+    @Override
+    public float stringWidth(CharSequence text, int start, int end)
+    {
+        if (start >= end)
+            return 0;
+        else
+            return getGlyphAdvances().stringWidth(text, start, end);
+    }
+    
+    @Override
+    public float charAdvance(char ch)
+    {
+        return getGlyphAdvances().charAdvance(ch);
+    }
+    
+    /**
+     * Obtains the glyph advance table for the current font and the current font render context
+     * of the graphics.
+     * @return the glyph advance table
+     */
+    protected FontMetricsCache.GlyphAdvances getGlyphAdvances()
+    {
+        final FontRenderContext frc = g.getFontRenderContext();
+        FontMetricsCache.GlyphAdvances ret = advances;
+        if (ret == null || ret.getFont() != font
+                || (ret.getFontRenderContext() != frc && !ret.getFontRenderContext().equals(frc)))
         {
-            final Graphics2D cg = (Graphics2D) g.create(); 
-            updateGraphics(cg);
-            return (float) fm.getStringBounds(text, cg).getWidth();
+            ret = FontMetricsCache.getInstance().getGlyphAdvances(font, frc);
+            advances = ret;
         }
+        return ret;
     }
     
     //=========================================================================
@@ -237,20 +258,43 @@ public class GraphicsVisualContext extends VisualContext
         return new Font(family, fs, size);
     }
     
+    /**
+     * Obtains a font instance for the given font properties. The font instances are shared
+     * among the visual contexts using the {@link FontCache}.
+     * @param family the font family
+     * @param size the font size in pixels
+     * @param weight the font weight
+     * @param style the font style
+     * @param spacing the letter spacing in pixels
+     * @return the font
+     */
     protected Font createFont(String family, int size, CSSProperty.FontWeight weight,
             CSSProperty.FontStyle style, float spacing)
+    {
+        // TRACKING value is multiplied by font size in AWT. 
+        // (0.75 has been empiricaly determined by comparing with other browsers) 
+        final float tracking = (spacing >= 0.0001) ? spacing / getFontSize() * 0.75f : 0.0f;
+        return FontCache.getInstance().getFont(family, size, weight, style, tracking, defaultFontAttributes,
+                () -> createNewFont(family, size, weight, style, tracking));
+    }
+    
+    /**
+     * Creates a new font instance for the given font properties.
+     * @param family the font family
+     * @param size the font size in pixels
+     * @param weight the font weight
+     * @param style the font style
+     * @param tracking the tracking value or zero for no tracking
+     * @return the new font
+     */
+    protected Font createNewFont(String family, int size, CSSProperty.FontWeight weight,
+            CSSProperty.FontStyle style, float tracking)
     {
         Font base = createBaseFont(family, size, weight, style);
         Map<TextAttribute, Object> attributes = new HashMap<>(defaultFontAttributes);
         // add tracking when needed
-        if (spacing >= 0.0001)
-        {
-            // TRACKING value is multiplied by font size in AWT. 
-            // (0.75 has been empiricaly determined by comparing with other browsers) 
-            final float tracking = spacing / getFontSize() * 0.75f;
-            
+        if (tracking != 0.0f)
             attributes.put(TextAttribute.TRACKING, tracking);
-        }
         // derive the font when some attributes have been set
         if (attributes.isEmpty())
             return base;
@@ -261,39 +305,19 @@ public class GraphicsVisualContext extends VisualContext
     @Override
     protected String fontAvailable(String family, boolean isBold, boolean isItalic)
     {
-        final String avail[] = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
-        for (int i = 0; i < avail.length; i++)
-        {
-            if (avail[i].equalsIgnoreCase(family))
-                return avail[i];
-        }
-        return null;
+        return FontCatalog.getInstance().findFamily(family);
     }
     
     @Override
     protected String getFallbackFont()
     {
-        final String avail[] = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
-        if (avail.length == 0)
-            return "Serif"; //no physical fonts available, give up
-        //first try: helvetica
-        String ret = fontAvailable("Helvetica", false, false);
-        if (ret == null) //second try: anything containing "Serif" or "Sans" to avoid strange fonts
-        {
-            for (int i = 0; i < avail.length; i++)
-            {
-                if (avail[i].toLowerCase(Locale.ROOT).contains("sans") || avail[i].toLowerCase(Locale.ROOT).contains("serif"))
-                {
-                    ret = avail[i];
-                    break;
-                }
-            }
-        }
-        if (ret == null) //third try: use the first available font
-        {
-            ret = avail[0];
-        }
-        return ret;
+        return FontCatalog.getInstance().getFallbackFamily();
+    }
+    
+    @Override
+    protected long getFontVersion()
+    {
+        return FontCatalog.getInstance().getVersion();
     }
     
     @Override
@@ -307,18 +331,8 @@ public class GraphicsVisualContext extends VisualContext
             String regName = FontDecoder.findRegisteredFont(url);
             if (regName == null)
             {
-                DocumentSource imgsrc = getViewport().getConfig().createDocumentSource(url);
-                Font newFont;
-                try {
-                    newFont = FontDecoder.decodeFont(imgsrc, format);
-                } catch (FontFormatException e) {
-                    throw new IOException(e);
-                }
-                if (GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(newFont))
-                    log.debug("Registered font: {}", newFont.getFontName());
-                else
-                    log.debug("Failed to register font: {} (not fatal, probably already existing)", newFont.getFontName());
-                regName = newFont.getFontName();
+                final Font newFont = FontDecoder.loadFont(url, format, getViewport().getConfig());
+                regName = FontCatalog.getInstance().registerFont(newFont);
                 FontDecoder.registerFont(url, regName);
             }
             nameFound = regName;
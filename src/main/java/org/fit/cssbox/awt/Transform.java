@@ -24,6 +24,7 @@ import java.awt.geom.AffineTransform;
 import org.fit.cssbox.layout.CSSDecoder;
 import org.fit.cssbox.layout.ElementBox;
 import org.fit.cssbox.layout.Rectangle;
+import org.fit.cssbox.layout.TransformMatrix;
 
 import cz.vutbr.web.css.CSSProperty;
 import cz.vutbr.web.css.Term;
@@ -39,112 +40,146 @@ import cz.vutbr.web.css.TermList;
 public class Transform
 {
 
+    /**
+     * Checks whether any CSS transformations should be applied on the given element.
+     * @param elem The source element box.
+     * @return {@code true} when the element is transformed
+     */
+    public static boolean isTransformed(ElementBox elem)
+    {
+        return elem.getTransform() == CSSProperty.Transform.list_values;
+    }
+    
     /**
      * Creates an AffineTransform that corresponds to the CSS transformations delared
-     * for a given element.
+     * for a given element. The resolved transformation is stored in the element box
+     * and it is reused until the box bounds change.
      * @param elem The source element box.
      * @return an AffineTransform object describing the transformation or {@code null} when
      * no transformation should be applied on the given element.
      */
     public static AffineTransform createTransform(ElementBox elem)
     {
-        if (elem.isBlock() || elem.isReplaced())
+        if (isTransformed(elem))
         {
-            CSSDecoder dec = new CSSDecoder(elem.getVisualContext());
-            Rectangle bounds = elem.getAbsoluteBorderBounds();
-            //decode the origin
-            float ox, oy;
-            CSSProperty.TransformOrigin origin = elem.getStyle().getProperty("transform-origin");
-            if (origin == CSSProperty.TransformOrigin.list_values)
+            final Rectangle bounds = elem.getAbsoluteBorderBounds();
+            TransformMatrix matrix = elem.getTransformMatrix();
+            if (matrix == null || !matrix.isValidFor(bounds))
             {
-                TermList values = elem.getStyle().getValue(TermList.class, "transform-origin");
-                ox = dec.getLength((TermLengthOrPercent) values.get(0), false, bounds.width / 2, 0, bounds.width);
-                oy = dec.getLength((TermLengthOrPercent) values.get(1), false, bounds.height / 2, 0, bounds.height);
+                final AffineTransform at = computeTransform(elem, bounds);
+                if (at == null)
+                    return null;
+                final double[] values = new double[6];
+                at.getMatrix(values);
+                matrix = new TransformMatrix(bounds, values);
+                elem.setTransformMatrix(matrix);
             }
-            else
-            {
-                ox = bounds.width / 2;
-                oy = bounds.height / 2;
-            }
-            ox += bounds.x;
-            oy += bounds.y;
-            //compute the transformation matrix
-            AffineTransform ret = null;
-            CSSProperty.Transform trans = elem.getStyle().getProperty("transform");
-            if (trans == CSSProperty.Transform.list_values)
+            return new AffineTransform(matrix.getMatrix());
+        }
+        else
+            return null;
+    }
+    
+    /**
+     * Decodes the CSS transformations declared for a given element.
+     * @param elem The source element box.
+     * @param bounds The absolute border bounds of the element.
+     * @return an AffineTransform object describing the transformation or {@code null} when
+     * no transformation is declared.
+     */
+    protected static AffineTransform computeTransform(ElementBox elem, Rectangle bounds)
+    {
+        CSSDecoder dec = new CSSDecoder(elem.getVisualContext());
+        //decode the origin
+        float ox, oy;
+        CSSProperty.TransformOrigin origin = elem.getStyle().getProperty("transform-origin");
+        if (origin == CSSProperty.TransformOrigin.list_values)
+        {
+            TermList values = elem.getStyle().getValue(TermList.class, "transform-origin");
+            ox = dec.getLength((TermLengthOrPercent) values.get(0), false, bounds.width / 2, 0, bounds.width);
+            oy = dec.getLength((TermLengthOrPercent) values.get(1), false, bounds.height / 2, 0, bounds.height);
+        }
+        else
+        {
+            ox = bounds.width / 2;
+            oy = bounds.height / 2;
+        }
+        ox += bounds.x;
+        oy += bounds.y;
+        //compute the transformation matrix
+        AffineTransform ret = null;
+        CSSProperty.Transform trans = elem.getStyle().getProperty("transform");
+        if (trans == CSSProperty.Transform.list_values)
+        {
+            ret = new AffineTransform();
+            ret.translate(ox, oy);
+            TermList values = elem.getStyle().getValue(TermList.class, "transform");
+            for (Term<?> term : values)
             {
-                ret = new AffineTransform();
-                ret.translate(ox, oy);
-                TermList values = elem.getStyle().getValue(TermList.class, "transform");
-                for (Term<?> term : values)
+                if (term instanceof TermFunction.Rotate)
+                {
+                    double theta = dec.getAngle(((TermFunction.Rotate) term).getAngle());
+                    ret.rotate(theta);
+                }
+                else if (term instanceof TermFunction.Translate)
+                {
+                    float tx = dec.getLength(((TermFunction.Translate) term).getTranslateX(), false, 0, 0, bounds.width);
+                    float ty = dec.getLength(((TermFunction.Translate) term).getTranslateY(), false, 0, 0, bounds.height);
+                    ret.translate(tx, ty);
+                }
+                else if (term instanceof TermFunction.TranslateX)
+                {
+                    float tx = dec.getLength(((TermFunction.TranslateX) term).getTranslate(), false, 0, 0, bounds.width);
+                    ret.translate(tx, 0.0);
+                }
+                else if (term instanceof TermFunction.TranslateY)
+                {
+                    float ty = dec.getLength(((TermFunction.TranslateY) term).getTranslate(), false, 0, 0, bounds.height);
+                    ret.translate(0.0, ty);
+                }
+                else if (term instanceof TermFunction.Scale)
                 {
-                    if (term instanceof TermFunction.Rotate)
-                    {
-                        double theta = dec.getAngle(((TermFunction.Rotate) term).getAngle());
-                        ret.rotate(theta);
-                    }
-                    else if (term instanceof TermFunction.Translate)
-                    {
-                        float tx = dec.getLength(((TermFunction.Translate) term).getTranslateX(), false, 0, 0, bounds.width);
-                        float ty = dec.getLength(((TermFunction.Translate) term).getTranslateY(), false, 0, 0, bounds.height);
-                        ret.translate(tx, ty);
-                    }
-                    else if (term instanceof TermFunction.TranslateX)
-                    {
-                        float tx = dec.getLength(((TermFunction.TranslateX) term).getTranslate(), false, 0, 0, bounds.width);
-                        ret.translate(tx, 0.0);
-                    }
-                    else if (term instanceof TermFunction.TranslateY)
-                    {
-                        float ty = dec.getLength(((TermFunction.TranslateY) term).getTranslate(), false, 0, 0, bounds.height);
-                        ret.translate(0.0, ty);
-                    }
-                    else if (term instanceof TermFunction.Scale)
-                    {
-                        float sx = ((TermFunction.Scale) term).getScaleX();
-                        float sy = ((TermFunction.Scale) term).getScaleY();
-                        ret.scale(sx, sy);
-                    }
-                    else if (term instanceof TermFunction.ScaleX)
-                    {
-                        float sx = ((TermFunction.ScaleX) term).getScale();
-                        ret.scale(sx, 1.0);
-                    }
-                    else if (term instanceof TermFunction.ScaleY)
-                    {
-                        float sy = ((TermFunction.ScaleY) term).getScale();
-                        ret.scale(1.0, sy);
-                    }
-                    else if (term instanceof TermFunction.Skew)
-                    {
-                        double ax = dec.getAngle(((TermFunction.Skew) term).getSkewX());
-                        double ay = dec.getAngle(((TermFunction.Skew) term).getSkewY());
-                        ret.shear(Math.tan(ax), Math.tan(ay));
-                    }
-                    else if (term instanceof TermFunction.SkewX)
-                    {
-                        double ax = dec.getAngle(((TermFunction.SkewX) term).getSkew());
-                        ret.shear(Math.tan(ax), 0.0);
-                    }
-                    else if (term instanceof TermFunction.SkewY)
-                    {
-                        double ay = dec.getAngle(((TermFunction.SkewY) term).getSkew());
-                        ret.shear(0.0, Math.tan(ay));
-                    }
-                    
-                    else if (term instanceof TermFunction.Matrix)
-                    {
-                        float[] vals = ((TermFunction.Matrix) term).getValues();
-                        ret.concatenate(new AffineTransform(vals));
-                    }
+                    float sx = ((TermFunction.Scale) term).getScaleX();
+                    float sy = ((TermFunction.Scale) term).getScaleY();
+                    ret.scale(sx, sy);
+                }
+                else if (term instanceof TermFunction.ScaleX)
+                {
+                    float sx = ((TermFunction.ScaleX) term).getScale();
+                    ret.scale(sx, 1.0);
+                }
+                else if (term instanceof TermFunction.ScaleY)
+                {
+                    float sy = ((TermFunction.ScaleY) term).getScale();
+                    ret.scale(1.0, sy);
+                }
+                else if (term instanceof TermFunction.Skew)
+                {
+                    double ax = dec.getAngle(((TermFunction.Skew) term).getSkewX());
+                    double ay = dec.getAngle(((TermFunction.Skew) term).getSkewY());
+                    ret.shear(Math.tan(ax), Math.tan(ay));
+                }
+                else if (term instanceof TermFunction.SkewX)
+                {
+                    double ax = dec.getAngle(((TermFunction.SkewX) term).getSkew());
+                    ret.shear(Math.tan(ax), 0.0);
+                }
+                else if (term instanceof TermFunction.SkewY)
+                {
+                    double ay = dec.getAngle(((TermFunction.SkewY) term).getSkew());
+                    ret.shear(0.0, Math.tan(ay));
+                }
+                
+                else if (term instanceof TermFunction.Matrix)
+                {
+                    float[] vals = ((TermFunction.Matrix) term).getValues();
+                    ret.concatenate(new AffineTransform(vals));
                 }
-                ret.translate(-ox, -oy);
             }
-            
-            return ret;
+            ret.translate(-ox, -oy);
         }
-        else
-            return null;
+        
+        return ret;
     }
     
 }
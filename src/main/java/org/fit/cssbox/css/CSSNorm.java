@@ -24,6 +24,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Scanner;
 
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.StyleSheet;
+
 /**
  * This class provides standard style sheets for the browser.
  *
@@ -75,6 +78,36 @@ public class CSSNorm
         }
     }
     
+    /**
+     * Obtains the parsed standard HTML style sheet (see {@link #stdStyleSheet()}). The style sheet is parsed
+     * once and the same immutable instance is shared by all the analyzers that use it.
+     * @return the parsed agent style sheet
+     */
+    public static StyleSheet getStdStyleSheet()
+    {
+        return ParsedSheets.STD;
+    }
+    
+    /**
+     * Obtains the parsed additional style sheet (see {@link #userStyleSheet()}). The style sheet is parsed
+     * once and the same immutable instance is shared by all the analyzers that use it.
+     * @return the parsed agent style sheet
+     */
+    public static StyleSheet getUserStyleSheet()
+    {
+        return ParsedSheets.USER;
+    }
+    
+    /**
+     * Obtains the parsed style sheet for the form fields (see {@link #formsStyleSheet()}). The style sheet
+     * is parsed once and the same immutable instance is shared by all the analyzers that use it.
+     * @return the parsed agent style sheet
+     */
+    public static StyleSheet getFormsStyleSheet()
+    {
+        return ParsedSheets.FORMS;
+    }
+    
     /**
      * Loads an internal style sheet from resource. 
      * @param name
@@ -98,4 +131,25 @@ public class CSSNorm
         }
     }
     
+    /**
+     * The parsed style sheets created upon the first use.
+     */
+    private static class ParsedSheets
+    {
+        public static final StyleSheet STD = parse(stdStyleSheet());
+        public static final StyleSheet USER = parse(userStyleSheet());
+        public static final StyleSheet FORMS = parse(formsStyleSheet());
+        
+        private static StyleSheet parse(String cssdata)
+        {
+            StyleSheet sheet = DOMAnalyzer.parseStyleSheet(null, cssdata, DOMAnalyzer.Origin.AGENT);
+            if (sheet == null) //parsing failed, use an empty style sheet
+            {
+                sheet = CSSFactory.getRuleFactory().createStyleSheet();
+                sheet.setOrigin(StyleSheet.Origin.AGENT);
+            }
+            return new ImmutableStyleSheet(sheet);
+        }
+    }
+    
 }
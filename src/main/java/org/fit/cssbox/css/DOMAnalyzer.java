@@ -39,7 +39,6 @@ import cz.vutbr.web.css.RuleSet;
 import cz.vutbr.web.css.Selector;
 import cz.vutbr.web.css.Selector.PseudoElementType;
 import cz.vutbr.web.css.StyleSheet;
-import cz.vutbr.web.domassign.Analyzer;
 import cz.vutbr.web.domassign.StyleMap;
 
 
@@ -57,12 +56,15 @@ public class DOMAnalyzer
     private URL baseUrl;    //base URL
     private MediaSpec media;   //media type
     private String encoding; //default character encoding for style sheet parsing
+    private NetworkProcessor network; //network processor used for obtaining the style sheets
     
     private Vector<StyleSheet> styles;  //vector of StyleSheet sheets
-    private Analyzer analyzer; //style sheet analyzer
+    private IncrementalAnalyzer analyzer; //style sheet analyzer
     private StyleMap stylemap; //style map for DOM nodes
     private StyleMap istylemap; //style map with inheritance
+    private StyleMap ustylemap; //explicitly assigned styles (see useStyle())
     private FontTable fontTable; //local font table
+    private boolean parallelEvaluation; //evaluate the styles in parallel
     
     /** The origin of a style sheet */
     public enum Origin 
@@ -154,6 +156,56 @@ public class DOMAnalyzer
         this.encoding = encoding;
     }
 
+    /**
+     * Obtains the base URL used for loading the style sheets.
+     * @return the base URL or {@code null} when not specified
+     */
+    public URL getBaseURL()
+    {
+        return baseUrl;
+    }
+
+    /**
+     * Obtains the network processor used for obtaining the style sheets referenced from the document.
+     * @return the network processor or {@code null} when the default one is used
+     */
+    public NetworkProcessor getNetworkProcessor()
+    {
+        return network;
+    }
+
+    /**
+     * Sets the network processor used for obtaining the style sheets referenced from the document
+     * by {@link #getStyleSheets()}.
+     * @param network the network processor or {@code null} for using the default one
+     */
+    public void setNetworkProcessor(NetworkProcessor network)
+    {
+        this.network = network;
+    }
+
+    /**
+     * Checks whether the parallel style evaluation is enabled.
+     * @return {@code true} when the styles are evaluated in parallel
+     */
+    public boolean isParallelEvaluation()
+    {
+        return parallelEvaluation;
+    }
+
+    /**
+     * Enables or disables the parallel evaluation of the element styles. When enabled, the styles
+     * of larger documents are computed by multiple threads of the common fork-join pool. The resulting
+     * styles are the same as for the sequential evaluation. The default is {@code false}.
+     * @param parallelEvaluation {@code true} for evaluating the styles in parallel
+     */
+    public void setParallelEvaluation(boolean parallelEvaluation)
+    {
+        this.parallelEvaluation = parallelEvaluation;
+        if (analyzer != null)
+            analyzer.setParallel(parallelEvaluation);
+    }
+
     /**
      * Returns the type of the current medium used.
 	 * @return the media type according to CSS
@@ -369,7 +421,8 @@ public class DOMAnalyzer
     public void getStyleSheets(String media)
     {
     	this.media = new MediaSpec(media);
-        StyleSheet newsheet = CSSFactory.getUsedStyles(doc, encoding, baseUrl, this.media);
+        StyleSheet newsheet = CSSFactory.getUsedStyles(doc, encoding, baseUrl, this.media,
+                (network != null) ? network : CSSFactory.getNetworkProcessor());
         styles.add(newsheet);
     }
 
@@ -382,7 +435,8 @@ public class DOMAnalyzer
     public void getStyleSheets(MediaSpec media)
     {
         this.media = media;
-        StyleSheet newsheet = CSSFactory.getUsedStyles(doc, encoding, baseUrl, this.media);
+        StyleSheet newsheet = CSSFactory.getUsedStyles(doc, encoding, baseUrl, this.media,
+                (network != null) ? network : CSSFactory.getNetworkProcessor());
         styles.add(newsheet);
     }
 
@@ -527,9 +581,45 @@ public class DOMAnalyzer
         }
     }
 	
+    /**
+     * Adds an already parsed style sheet to the end of the used style sheet list. The origin
+     * of the style sheet is not changed. The style sheet is not modified by the analyzer so that
+     * the same instance may be shared by multiple analyzers (e.g. the pre-parsed agent style sheets
+     * obtained using {@link #parseStyleSheet(URL, String, Origin)}).
+     * @param sheet the style sheet to be added
+     */
+    public void addStyleSheet(StyleSheet sheet)
+    {
+        styles.add(sheet);
+        fontTable = null; //force recomputing the font table the next time
+    }
+    
+    /**
+     * Parses a style sheet represented as a string without adding it to any analyzer. The resulting
+     * style sheet may be later added to the analyzers using {@link #addStyleSheet(StyleSheet)}.
+     * @param base the base URL used for the relative URLs in the style sheet
+     * @param cssdata the style string
+     * @param origin the style sheet origin (AUTHOR, AGENT or USER)
+     * @return the parsed style sheet or {@code null} when the style sheet could not be parsed
+     */
+    public static StyleSheet parseStyleSheet(URL base, String cssdata, Origin origin)
+    {
+        try {
+            StyleSheet newsheet = CSSFactory.parseString(cssdata, base);
+            newsheet.setOrigin(translateOrigin(origin));
+            return newsheet;
+        } catch (IOException e) {
+            log.error("I/O Error: "+e.getMessage());
+        } catch (CSSException e) {
+            log.error("DOMAnalyzer: CSS Error: "+e.getMessage());
+        }
+        return null;
+    }
+    
 	/**
-	 * Forces recomputing the element styles. This method should be called when a new style sheet
-	 * has been added or a DOM has changed after some styles have been read from the analyzer.
+	 * Forces recomputing the element styles. This method should be called when the DOM has changed
+	 * after some styles have been read from the analyzer. When only new style sheets have been added
+	 * or the media specification has changed, {@link #updateStyles()} may be used instead.
 	 */
 	public void recomputeStyles()
 	{
@@ -537,8 +627,45 @@ public class DOMAnalyzer
 	    analyzer = null;
 	    stylemap = null;
 	    istylemap = null;
+	    ustylemap = null;
+	}
+	
+	/**
+	 * Updates the element styles after some new style sheets have been added or the media specification
+	 * has been modified (e.g. the display area size has changed). Unlike {@link #recomputeStyles()},
+	 * only the styles of the elements affected by the media rules that changed their applicability
+	 * or by the rules of the new style sheets are recomputed. The DOM tree is supposed to remain unchanged.
+	 * @return {@code true} when the style of some element has changed or the styles have not been computed yet
+	 */
+	public boolean updateStyles()
+	{
+	    ustylemap = null;
+	    if (analyzer == null)
+	        return true; //all the styles will be computed upon next read
+	    if (analyzer.update(media))
+	    {
+	        //obtain the updated maps upon next read
+	        stylemap = null;
+	        istylemap = null;
+	        return true;
+	    }
+	    else
+	        return false;
 	}
 	
+    /**
+     * Updates the display area size in the current media specification and updates the element styles
+     * that are affected by the change. See {@link #updateStyles()}.
+     * @param width the new display area width
+     * @param height the new display area height
+     * @return {@code true} when the style of some element has changed
+     */
+    public boolean updateMediaDimensions(float width, float height)
+    {
+        media.setDimensions(width, height);
+        return updateStyles();
+    }
+    
     /**
      * Gets all the style declarations for a particular element and computes 
      * the resulting element style.
@@ -547,11 +674,8 @@ public class DOMAnalyzer
      */
     public NodeData getElementStyle(Element el)
     {
-    	if (analyzer == null)
-    		analyzer = new Analyzer(styles);
-    	
     	if (stylemap == null)
-    		stylemap = analyzer.evaluateDOM(doc, media, false);
+    		stylemap = getAnalyzer().getStyleMap(media, false);
     	
     	return stylemap.get(el);
     }
@@ -561,11 +685,21 @@ public class DOMAnalyzer
      */
     private void checkStylesInherited()
     {
-    	if (analyzer == null)
-    		analyzer = new Analyzer(styles);
-        
         if (istylemap == null)
-            istylemap = analyzer.evaluateDOM(doc, media, true);
+            istylemap = getAnalyzer().getStyleMap(media, true);
+    }
+    
+    /**
+     * Obtains the style analyzer. Creates a new one when necessary.
+     */
+    private IncrementalAnalyzer getAnalyzer()
+    {
+        if (analyzer == null)
+        {
+            analyzer = new IncrementalAnalyzer(styles, doc);
+            analyzer.setParallel(parallelEvaluation);
+        }
+        return analyzer;
     }
     
     /**
@@ -576,8 +710,7 @@ public class DOMAnalyzer
      */
     public NodeData getElementStyleInherited(Element el)
     {
-        checkStylesInherited();
-    	return istylemap.get(el);
+        return getElementStyleInherited(el, null);
     }
     
     /**
@@ -590,6 +723,12 @@ public class DOMAnalyzer
     public NodeData getElementStyleInherited(Element el, PseudoElementType pseudo)
     {
         checkStylesInherited();
+        if (ustylemap != null)
+        {
+            final NodeData used = ustylemap.get(el, pseudo);
+            if (used != null)
+                return used;
+        }
         return istylemap.get(el, pseudo);
     }
     
@@ -602,19 +741,21 @@ public class DOMAnalyzer
     public boolean hasPseudoDef(Element el, PseudoElementType pseudo)
     {
         checkStylesInherited();
-        return istylemap.hasPseudo(el, pseudo);
+        return istylemap.hasPseudo(el, pseudo) || (ustylemap != null && ustylemap.hasPseudo(el, pseudo));
     }
     
     /**
-     * Assigns the given style for the specified pseudo-element.
+     * Assigns the given style for the specified pseudo-element. The assigned styles are
+     * discarded when the styles are recomputed or updated.
      * @param el the element to be assigned the style
      * @param pseudo The pseudo-element or <code>null</code> if none is required
      * @param style the assigned style
      */
     public void useStyle(Element el, PseudoElementType pseudo, NodeData style)
     {
-        checkStylesInherited();
-        istylemap.put(el, pseudo, style);
+        if (ustylemap == null)
+            ustylemap = new StyleMap(16);
+        ustylemap.put(el, pseudo, style);
     }
     
     public FontTable getFontTable()
@@ -744,7 +885,7 @@ public class DOMAnalyzer
      * Translates the origin from the CSSBox API to jStyleParser API
      * (in order not to expose the jStyleParser API in CSSBox)
      */
-    private StyleSheet.Origin translateOrigin(Origin origin)
+    private static StyleSheet.Origin translateOrigin(Origin origin)
     {
     	if (origin == Origin.AUTHOR)
     		return StyleSheet.Origin.AUTHOR;
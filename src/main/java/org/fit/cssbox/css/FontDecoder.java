@@ -21,17 +21,32 @@ package org.fit.cssbox.css;
 
 import java.awt.Font;
 import java.awt.FontFormatException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.fit.cssbox.io.DocumentSource;
+import org.fit.cssbox.layout.BrowserConfig;
 
 
 /**
+ * Loading and decoding of the web fonts. The font URLs that have already been registered are remembered
+ * together with the registered font names. The decoded fonts are kept in a bounded cache indexed by
+ * the hash of the font file contents so that the same font file obtained from different URLs is decoded
+ * only once. Concurrent requests for the same URL share a single download.
+ * 
+ * All the methods are thread-safe.
  *
  * @author burgetr
  */
@@ -43,16 +58,33 @@ public class FontDecoder
         supportedFormats.add("truetype");
     }
     
-    private static Map<URL, String> registeredFonts = new HashMap<>();
+    /** Maximal number of the decoded fonts kept in the cache */
+    private static final int MAX_DECODED_FONTS = 64;
+    
+    /** Registered font names for the font URLs (keyed by URL strings in order to avoid URL host resolution) */
+    private static final ConcurrentHashMap<String, String> registeredFonts = new ConcurrentHashMap<>();
+    
+    /** Fonts that are being currently loaded */
+    private static final ConcurrentHashMap<String, CompletableFuture<Font>> loading = new ConcurrentHashMap<>();
+    
+    /** Decoded fonts indexed by the content hash in the LRU order */
+    private static final Map<String, Font> decodedFonts = new LinkedHashMap<String, Font>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Font> eldest)
+        {
+            return size() > MAX_DECODED_FONTS;
+        }
+    };
 
     public static void registerFont(URL url, String family)
     {
-        registeredFonts.put(url, family);
+        registeredFonts.put(url.toExternalForm(), family);
     }
     
     public static String findRegisteredFont(URL url)
     {
-        return registeredFonts.get(url);
+        return registeredFonts.get(url.toExternalForm());
     }
     
     public static Font decodeFont(DocumentSource fontSource, String format) throws FontFormatException, IOException
@@ -61,5 +93,93 @@ public class FontDecoder
         return Font.createFont(Font.TRUETYPE_FONT, fontSource.getInputStream());
     }
     
+    /**
+     * Loads and decodes a font from the given URL. When the same font file has already been decoded,
+     * the existing font instance is returned. When the font is already being loaded by another thread,
+     * the method waits for the result.
+     * @param url the font URL
+     * @param format the font format according to CSS spec (e.g. 'truetype') or {@code null}
+     * @param config the browser configuration used for creating the document source
+     * @return the decoded font
+     * @throws IOException when the font could not be loaded or decoded
+     */
+    public static Font loadFont(URL url, String format, BrowserConfig config) throws IOException
+    {
+        final String key = url.toExternalForm();
+        final CompletableFuture<Font> future = new CompletableFuture<>();
+        final CompletableFuture<Font> running = loading.putIfAbsent(key, future);
+        if (running != null)
+        {
+            try {
+                return running.join(); //already being loaded by another thread
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                else
+                    throw new IOException(e.getCause());
+            }
+        }
+        
+        try {
+            final Font font = loadFontData(url, format, config);
+            future.complete(font);
+            return font;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+    
+    private static Font loadFontData(URL url, String format, BrowserConfig config) throws IOException
+    {
+        final byte[] data;
+        try (DocumentSource src = config.createDocumentSource(url)) {
+            data = readAll(src.getInputStream());
+        }
+        final String hash = contentHash(data);
+        synchronized (decodedFonts)
+        {
+            final Font font = decodedFonts.get(hash);
+            if (font != null)
+                return font; //the same font has been obtained from another URL
+        }
+        final Font font;
+        try {
+            //TODO decode other formats than TTF
+            font = Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(data));
+        } catch (FontFormatException e) {
+            throw new IOException(e);
+        }
+        synchronized (decodedFonts)
+        {
+            final Font prev = decodedFonts.putIfAbsent(hash, font);
+            return (prev == null) ? font : prev;
+        }
+    }
+    
+    private static String contentHash(byte[] data)
+    {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            final StringBuilder ret = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                ret.append(String.format("%02x", b));
+            return ret.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //SHA-256 is always available
+        }
+    }
+    
+    private static byte[] readAll(InputStream is) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        int len;
+        while ((len = is.read(buf)) != -1)
+            out.write(buf, 0, len);
+        return out.toByteArray();
+    }
     
 }
@@ -0,0 +1,118 @@
+/*
+ * ImmutableStyleSheet.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 18:20:14 by agent
+ */
+package org.fit.cssbox.css;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cz.vutbr.web.css.Rule;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.css.Term;
+import cz.vutbr.web.csskit.AbstractRule;
+
+/**
+ * A style sheet that cannot be modified. The rules of the source style sheet are taken over
+ * and the rule lists (the style sheet itself, the rule blocks and the declarations) are made
+ * unmodifiable; any attempt to add, remove or replace a rule or a declaration results in
+ * an {@link UnsupportedOperationException}. The origin of the style sheet cannot be changed either.
+ * 
+ * An immutable style sheet may be safely shared by multiple analyzers and threads. Moreover, the selectors
+ * of the rules are classified only once when the style sheet is created and the resulting index
+ * is reused by {@link IncrementalAnalyzer} for every analyzed document.
+ * 
+ * @author agent
+ */
+public class ImmutableStyleSheet extends AbstractRule<RuleBlock<?>> implements StyleSheet
+{
+    private final Origin origin;
+    private final IncrementalAnalyzer.SelectorIndex selectorIndex;
+    
+    
+    /**
+     * Creates an immutable style sheet from a parsed style sheet. The rules are moved to the new
+     * style sheet; the source style sheet should not be used anymore.
+     * @param src the source style sheet
+     */
+    public ImmutableStyleSheet(StyleSheet src)
+    {
+        origin = src.getOrigin();
+        final List<RuleBlock<?>> blocks = new ArrayList<>(src.asList());
+        for (RuleBlock<?> block : blocks)
+        {
+            block.setStyleSheet(this);
+            freeze(block);
+        }
+        list = Collections.unmodifiableList(blocks);
+        selectorIndex = new IncrementalAnalyzer.SelectorIndex(this);
+    }
+    
+    @Override
+    public Origin getOrigin()
+    {
+        return origin;
+    }
+
+    @Override
+    public void setOrigin(Origin o)
+    {
+        throw new UnsupportedOperationException("The style sheet cannot be modified");
+    }
+    
+    @Override
+    public Rule<RuleBlock<?>> replaceAll(List<RuleBlock<?>> replacement)
+    {
+        throw new UnsupportedOperationException("The style sheet cannot be modified");
+    }
+
+    @Override
+    public Rule<RuleBlock<?>> unlock()
+    {
+        throw new UnsupportedOperationException("The style sheet cannot be modified");
+    }
+
+    /**
+     * Obtains the precomputed classification of the rule selectors.
+     * @return the selector index
+     */
+    IncrementalAnalyzer.SelectorIndex getSelectorIndex()
+    {
+        return selectorIndex;
+    }
+    
+    /**
+     * Makes the item lists of a rule and its nested rules unmodifiable. The terms of the declarations
+     * are not processed.
+     * @param rule the rule to be frozen
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void freeze(Rule rule)
+    {
+        final List items = rule.asList();
+        for (Object item : items)
+        {
+            if (item instanceof Rule && !(item instanceof Term))
+                freeze((Rule) item);
+        }
+        rule.replaceAll(Collections.unmodifiableList(items));
+    }
+    
+}
@@ -0,0 +1,669 @@
+/*
+ * IncrementalAnalyzer.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 11:05:12 by agent
+ */
+package org.fit.cssbox.css;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.traversal.DocumentTraversal;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CombinedSelector;
+import cz.vutbr.web.css.Declaration;
+import cz.vutbr.web.css.MediaQuery;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.RuleBlock;
+import cz.vutbr.web.css.RuleMedia;
+import cz.vutbr.web.css.RuleSet;
+import cz.vutbr.web.css.Selector;
+import cz.vutbr.web.css.Selector.PseudoElementType;
+import cz.vutbr.web.css.StyleSheet;
+import cz.vutbr.web.domassign.Analyzer;
+import cz.vutbr.web.domassign.DeclarationMap;
+import cz.vutbr.web.domassign.GenericTreeWalker;
+import cz.vutbr.web.domassign.MultiMap;
+import cz.vutbr.web.domassign.StyleMap;
+import cz.vutbr.web.domassign.Traversal;
+
+/**
+ * A style analyzer that keeps the declarations assigned to the individual DOM elements and allows
+ * updating the computed styles selectively. When the media specification changes or new style sheets
+ * are added, only the rules of the media blocks whose media queries changed their result and the rules
+ * of the new style sheets are considered. Only the elements matched by some of these rules (and their
+ * descendants when the inheritance is applied) are re-evaluated; the styles of the remaining elements
+ * are reused. The resulting styles are the same as the ones obtained by {@link Analyzer#evaluateDOM(Document, MediaSpec, boolean)}.
+ *
+ * The DOM tree and the style sheets already analyzed are supposed to remain unchanged; a new analyzer
+ * must be created otherwise.
+ *
+ * Optionally, the complete evaluation may run in parallel (see {@link #setParallel(boolean)}). The elements
+ * are assigned the declarations in independent chunks and the styles are computed by fork-join tasks
+ * over the DOM subtrees; each subtree is processed once the style of its parent is known.
+ *
+ * @author agent
+ */
+public class IncrementalAnalyzer extends Analyzer
+{
+    private static Logger log = LoggerFactory.getLogger(IncrementalAnalyzer.class);
+
+    /** The number of elements processed by a single task in the parallel mode */
+    private static final int TASK_SIZE = 512;
+
+    private Document doc;
+    /** Declarations assigned to the elements in the last evaluation */
+    private DeclarationMap declarations;
+    /** The media rules that matched the media in the last evaluation */
+    private Set<RuleMedia> matchingMedia;
+    /** The number of style sheets processed in the last evaluation */
+    private int sheetCount;
+    /** Computed styles without inheritance (created on demand) */
+    private StyleMap stylemap;
+    /** Computed styles with inheritance (created on demand) */
+    private StyleMap istylemap;
+    /** Use the parallel evaluation? */
+    private boolean parallel;
+    /** The DOM elements in document order used for the parallel evaluation */
+    private ElementIndex index;
+
+
+    /**
+     * Creates a new analyzer.
+     * @param sheets the list of style sheets. The list is not copied; the style sheets added to the list
+     * later are taken into account by {@link #update(MediaSpec)}.
+     * @param doc the analyzed document
+     */
+    public IncrementalAnalyzer(List<StyleSheet> sheets, Document doc)
+    {
+        super(sheets);
+        this.doc = doc;
+    }
+
+    /**
+     * Checks whether the parallel evaluation is enabled.
+     * @return {@code true} when the styles are evaluated in parallel
+     */
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
+    /**
+     * Enables or disables the parallel evaluation of the styles. The parallel evaluation uses the common
+     * fork-join pool and it is applied to the complete evaluation of larger documents only. The resulting
+     * styles are the same as in the sequential evaluation. The DOM implementation must allow
+     * concurrent read access to the document.
+     * @param parallel {@code true} when the styles should be evaluated in parallel
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Obtains the computed styles of all the elements. The styles are evaluated upon the first call.
+     * @param media the media specification used for the evaluation
+     * @param inherit when set to {@code true}, the inheritance is applied
+     * @return the resulting style map
+     */
+    public StyleMap getStyleMap(MediaSpec media, boolean inherit)
+    {
+        if (declarations == null)
+            evaluateDeclarations(media);
+        if (inherit)
+        {
+            if (istylemap == null)
+                istylemap = (index != null) ? computeStylesParallel(true) : computeStyles(null, true, null);
+            return istylemap;
+        }
+        else
+        {
+            if (stylemap == null)
+                stylemap = (index != null) ? computeStylesParallel(false) : computeStyles(null, false, null);
+            return stylemap;
+        }
+    }
+
+    /**
+     * Updates the computed styles after the media specification has changed or new style sheets
+     * have been added. The style maps obtained previously are not modified; new style maps must be
+     * obtained using {@link #getStyleMap(MediaSpec, boolean)} when the styles have changed.
+     * @param media the new media specification
+     * @return {@code true} when the style of some element has changed
+     */
+    public boolean update(MediaSpec media)
+    {
+        if (declarations == null)
+            return false; //nothing evaluated yet
+
+        final List<CombinedSelector> changed = findChangedSelectors(media);
+        if (changed.isEmpty())
+            return false;
+
+        final boolean wasEmpty = (rules == null || rules.isEmpty());
+        classifyAllSheets(media);
+        if (wasEmpty || rules.isEmpty())
+        {
+            //the elements are not assigned any declarations for an empty set of rules; start again
+            declarations = null;
+            index = null;
+            stylemap = null;
+            istylemap = null;
+            return true;
+        }
+
+        //re-assign the declarations to the elements matched by the changed rules
+        final Set<Element> affected = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+        final DeclarationMap olddecl = declarations;
+        final DeclarationMap newdecl = new DeclarationMap();
+        Traversal<DeclarationMap> traversal = new Traversal<DeclarationMap>(doc, changed, NodeFilter.SHOW_ELEMENT) {
+            @Override
+            protected void processNode(DeclarationMap result, Node current, Object source)
+            {
+                final Element e = (Element) current;
+                if (isMatched(e, walker, changed))
+                {
+                    affected.add(e);
+                    assignDeclarationsToElement(result, walker, e, rules);
+                }
+                else
+                    copyEntries(olddecl, result, e);
+            }
+        };
+        traversal.levelTraversal(newdecl);
+        declarations = newdecl;
+        log.debug("Style update: {} elements affected by {} changed selectors", affected.size(), changed.size());
+
+        if (affected.isEmpty())
+            return false;
+        if (stylemap != null)
+            stylemap = computeStyles(stylemap, false, affected);
+        if (istylemap != null)
+            istylemap = computeStyles(istylemap, true, affected);
+        return true;
+    }
+
+    //========================================================================================
+
+    /**
+     * Assigns the declarations to all the elements and remembers the state of the style sheets.
+     */
+    private void evaluateDeclarations(MediaSpec media)
+    {
+        index = null;
+        if (parallel)
+        {
+            final ElementIndex all = new ElementIndex(createWalker());
+            if (all.size() > TASK_SIZE)
+                index = all;
+        }
+        if (index != null)
+            declarations = assignDeclarationsParallel(media);
+        else
+            declarations = assingDeclarationsToDOM(doc, media, true); //level traversal includes the root element
+        matchingMedia = Collections.newSetFromMap(new IdentityHashMap<RuleMedia, Boolean>());
+        for (StyleSheet sheet : sheets)
+        {
+            for (RuleBlock<?> block : sheet.asList())
+            {
+                if (block instanceof RuleMedia && matches((RuleMedia) block, media))
+                    matchingMedia.add((RuleMedia) block);
+            }
+        }
+        sheetCount = sheets.size();
+    }
+
+    /**
+     * Finds the selectors of the rules whose applicability has changed since the last evaluation:
+     * the rules of the media blocks that changed their matching and the applicable rules of the newly
+     * added style sheets. Updates the remembered state of the style sheets.
+     * @param media the current media specification
+     * @return the list of the selectors of the changed rules
+     */
+    private List<CombinedSelector> findChangedSelectors(MediaSpec media)
+    {
+        final List<CombinedSelector> ret = new ArrayList<>();
+        for (int i = 0; i < sheets.size(); i++)
+        {
+            final boolean added = (i >= sheetCount);
+            for (RuleBlock<?> block : sheets.get(i).asList())
+            {
+                if (block instanceof RuleMedia)
+                {
+                    final RuleMedia rmedia = (RuleMedia) block;
+                    final boolean match = matches(rmedia, media);
+                    final boolean matched = matchingMedia.contains(rmedia);
+                    if (match != matched || (added && match))
+                    {
+                        for (RuleSet rule : rmedia)
+                            Collections.addAll(ret, rule.getSelectors());
+                        if (match)
+                            matchingMedia.add(rmedia);
+                        else
+                            matchingMedia.remove(rmedia);
+                    }
+                }
+                else if (added && block instanceof RuleSet)
+                    Collections.addAll(ret, ((RuleSet) block).getSelectors());
+            }
+        }
+        sheetCount = sheets.size();
+        return ret;
+    }
+
+    /**
+     * Classifies the rules of all the style sheets. For the {@link ImmutableStyleSheet}s, the precomputed
+     * selector index is used instead of analyzing the selectors again. The resulting classification
+     * including the rule order is the same as the one created by {@link Analyzer}.
+     * @param mediaspec the media specification used for evaluating the media queries
+     */
+    @Override
+    protected void classifyAllSheets(MediaSpec mediaspec)
+    {
+        rules = new Holder();
+        int order = 0;
+        for (StyleSheet sheet : sheets)
+        {
+            final SelectorIndex sindex = (sheet instanceof ImmutableStyleSheet) ?
+                    ((ImmutableStyleSheet) sheet).getSelectorIndex() : new SelectorIndex(sheet);
+            order = sindex.classify(rules, mediaspec, order);
+        }
+    }
+    
+    /**
+     * Checks whether the given element is matched by some of the selectors.
+     */
+    private boolean isMatched(Element e, TreeWalker walker, List<CombinedSelector> selectors)
+    {
+        for (CombinedSelector sel : selectors)
+        {
+            if (matchSelector(sel, e, walker))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the element styles from the assigned declarations.
+     * @param old the previous style map or {@code null} when all the styles should be computed
+     * @param inherit use the inheritance?
+     * @param affected the elements whose declarations have changed; the styles of the remaining elements
+     * (and their descendants when the inheritance is used) are copied from the {@code old} map.
+     * @return the new style map
+     */
+    private StyleMap computeStyles(final StyleMap old, final boolean inherit, final Set<Element> affected)
+    {
+        final StyleMap ret = new StyleMap(declarations.size());
+        final Set<Element> recomputed = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+        Traversal<StyleMap> traversal = new Traversal<StyleMap>(doc, declarations, NodeFilter.SHOW_ELEMENT) {
+            @Override
+            protected void processNode(StyleMap result, Node current, Object source)
+            {
+                final Element e = (Element) current;
+                final Element parent = (Element) walker.parentNode();
+                if (old == null || affected.contains(e) || (inherit && recomputed.contains(parent)))
+                {
+                    computeNodeData(result, e, result.get(parent, null), inherit);
+                    if (old != null)
+                        recomputed.add(e);
+                }
+                else
+                    copyEntries(old, result, e);
+            }
+        };
+        traversal.levelTraversal(ret);
+        return ret;
+    }
+
+    /**
+     * Assigns the declarations to all the elements in parallel. Each task processes a continuous
+     * chunk of the elements using its own tree walker.
+     */
+    private DeclarationMap assignDeclarationsParallel(MediaSpec media)
+    {
+        classifyAllSheets(media);
+        final DeclarationMap ret = new DeclarationMap();
+        if (rules != null && !rules.isEmpty())
+        {
+            final int chunks = (index.size() + TASK_SIZE - 1) / TASK_SIZE;
+            final DeclarationMap[] partial = new DeclarationMap[chunks];
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                final TreeWalker walker = createWalker();
+                final DeclarationMap decl = new DeclarationMap();
+                final int last = Math.min((c + 1) * TASK_SIZE, index.size());
+                for (int i = c * TASK_SIZE; i < last; i++)
+                {
+                    walker.setCurrentNode(index.elems[i]);
+                    assignDeclarationsToElement(decl, walker, index.elems[i], rules);
+                }
+                partial[c] = decl;
+            });
+            for (int i = 0; i < index.size(); i++)
+                copyEntries(partial[i / TASK_SIZE], ret, index.elems[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * Computes the styles of all the elements in parallel.
+     * @param inherit use the inheritance?
+     * @return the new style map
+     */
+    private StyleMap computeStylesParallel(boolean inherit)
+    {
+        final NodeData[] main = new NodeData[index.size()];
+        final ConcurrentLinkedQueue<StyleMap> results = new ConcurrentLinkedQueue<>();
+        ForkJoinPool.commonPool().invoke(new StyleTask(0, inherit, main, results));
+
+        final StyleMap ret = new StyleMap(declarations.size());
+        for (StyleMap partial : results)
+        {
+            for (Element e : partial.keySet())
+                copyEntries(partial, ret, e);
+        }
+        return ret;
+    }
+
+    /**
+     * Computes the style of a single element and its pseudo-elements the same way
+     * as {@link Analyzer#evaluateDOM(Document, MediaSpec, boolean)} does.
+     * @param result the style map to store the results to
+     * @param e the element
+     * @param parentStyle the computed style of the parent element or {@code null} for the root element
+     * @param inherit use the inheritance?
+     * @return the computed style of the element
+     */
+    private NodeData computeNodeData(StyleMap result, Element e, NodeData parentStyle, boolean inherit)
+    {
+        NodeData main = CSSFactory.createNodeData();
+        List<Declaration> decls = declarations.get(e, null);
+        if (decls != null)
+        {
+            for (Declaration d : decls)
+                main.push(d);
+            if (inherit)
+                main.inheritFrom(parentStyle);
+        }
+        final NodeData ret = main.concretize();
+        result.put(e, null, ret);
+
+        for (PseudoElementType pseudo : declarations.pseudoSet(e))
+        {
+            NodeData pdata = CSSFactory.createNodeData();
+            decls = declarations.get(e, pseudo);
+            if (decls != null)
+            {
+                for (Declaration d : decls)
+                    pdata.push(d);
+                pdata.inheritFrom(main); //always inherit from the main element style
+            }
+            result.put(e, pseudo, pdata.concretize());
+        }
+        return ret;
+    }
+
+    private TreeWalker createWalker()
+    {
+        if (doc instanceof DocumentTraversal)
+            return ((DocumentTraversal) doc).createTreeWalker(doc.getDocumentElement(), NodeFilter.SHOW_ELEMENT, null, false);
+        else
+            return new GenericTreeWalker(doc.getDocumentElement(), NodeFilter.SHOW_ELEMENT);
+    }
+
+    private static <D> void copyEntries(MultiMap<Element, PseudoElementType, D> src, MultiMap<Element, PseudoElementType, D> dest, Element e)
+    {
+        final D data = src.get(e, null);
+        if (data != null)
+            dest.put(e, null, data);
+        for (PseudoElementType pseudo : src.pseudoSet(e))
+            dest.put(e, pseudo, src.get(e, pseudo));
+    }
+
+    private static boolean matches(RuleMedia rule, MediaSpec media)
+    {
+        final List<MediaQuery> queries = rule.getMediaQueries();
+        if (queries == null || queries.isEmpty())
+            return media.matchesEmpty();
+        else
+            return media.matchesOneOf(queries);
+    }
+
+    //========================================================================================
+
+    /**
+     * The rules of a style sheet classified according to the last simple selectors of their selectors
+     * (element name, class, ID or other). The index may be used for filling the rule holder of
+     * an analyzer repeatedly; only the media queries are evaluated again.
+     */
+    static class SelectorIndex
+    {
+        /** The media rule of each group or {@code null} for the rules that apply to all media */
+        private final RuleMedia[] media;
+        /** The classified rules in groups corresponding to the top-level rule blocks */
+        private final Entry[][] groups;
+
+        public SelectorIndex(StyleSheet sheet)
+        {
+            final List<RuleMedia> mlist = new ArrayList<>();
+            final List<Entry[]> glist = new ArrayList<>();
+            for (RuleBlock<?> block : sheet)
+            {
+                final List<Entry> entries = new ArrayList<>();
+                if (block instanceof RuleSet)
+                {
+                    for (CombinedSelector s : ((RuleSet) block).getSelectors())
+                        classifySelector(s, (RuleSet) block, entries);
+                    mlist.add(null);
+                    glist.add(entries.toArray(new Entry[entries.size()]));
+                }
+                else if (block instanceof RuleMedia)
+                {
+                    for (RuleSet rule : (RuleMedia) block)
+                    {
+                        for (CombinedSelector s : rule.getSelectors())
+                            classifySelector(s, rule, entries);
+                    }
+                    mlist.add((RuleMedia) block);
+                    glist.add(entries.toArray(new Entry[entries.size()]));
+                }
+            }
+            media = mlist.toArray(new RuleMedia[mlist.size()]);
+            groups = glist.toArray(new Entry[glist.size()][]);
+        }
+
+        /**
+         * Inserts the rules applicable to the given media to a rule holder.
+         * @param holder the destination holder
+         * @param mediaspec the media specification
+         * @param order the order assigned to the first inserted rule
+         * @return the order to be assigned to the next rule
+         */
+        public int classify(Holder holder, MediaSpec mediaspec, int order)
+        {
+            for (int i = 0; i < groups.length; i++)
+            {
+                if (media[i] == null || matches(media[i], mediaspec))
+                {
+                    for (Entry entry : groups[i])
+                        holder.insert(entry.item, entry.key, new OrderedRule(entry.rule, order++));
+                }
+            }
+            return order;
+        }
+
+        private static void classifySelector(CombinedSelector selector, RuleSet rule, List<Entry> dest)
+        {
+            final Selector last;
+            try {
+                last = selector.getLastSelector();
+            } catch (UnsupportedOperationException e) {
+                log.error("CombinedSelector does not include any selector, this should not happen!");
+                return;
+            }
+            final int start = dest.size();
+            // is element or other (wildcard)
+            final String element = last.getElementName();
+            if (element != null)
+            {
+                if (Selector.ElementName.WILDCARD.equals(element))
+                    dest.add(new Entry(HolderItem.OTHER, null, rule));
+                else
+                    dest.add(new Entry(HolderItem.ELEMENT, element.toLowerCase(), rule));
+            }
+            // is class name
+            final String className = last.getClassName();
+            if (className != null)
+                dest.add(new Entry(HolderItem.CLASS, className.toLowerCase(), rule));
+            // is id
+            final String id = last.getIDName();
+            if (id != null)
+                dest.add(new Entry(HolderItem.ID, id.toLowerCase(), rule));
+            // is in others
+            if (dest.size() == start)
+                dest.add(new Entry(HolderItem.OTHER, null, rule));
+        }
+
+        private static class Entry
+        {
+            public final HolderItem item;
+            public final String key;
+            public final RuleSet rule;
+
+            public Entry(HolderItem item, String key, RuleSet rule)
+            {
+                this.item = item;
+                this.key = key;
+                this.rule = rule;
+            }
+        }
+    }
+
+    //========================================================================================
+
+    /**
+     * The DOM elements in document order together with the tree structure.
+     */
+    private static class ElementIndex
+    {
+        public Element[] elems;
+        /** Parent element indices (-1 for the root) */
+        public int[] parent;
+        /** The index following the last descendant of each element */
+        public int[] end;
+        private int size;
+
+        public ElementIndex(TreeWalker walker)
+        {
+            elems = new Element[1024];
+            parent = new int[1024];
+            end = new int[1024];
+            add(walker, -1);
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        private void add(TreeWalker walker, int parentIndex)
+        {
+            final Node current = walker.getCurrentNode();
+            if (size == elems.length)
+            {
+                elems = Arrays.copyOf(elems, size * 2);
+                parent = Arrays.copyOf(parent, size * 2);
+                end = Arrays.copyOf(end, size * 2);
+            }
+            final int i = size++;
+            elems[i] = (Element) current;
+            parent[i] = parentIndex;
+            for (Node n = walker.firstChild(); n != null; n = walker.nextSibling())
+                add(walker, i);
+            walker.setCurrentNode(current);
+            end[i] = size;
+        }
+    }
+
+    /**
+     * Computes the styles of a DOM subtree. Larger subtrees of the descendants are processed
+     * by separate tasks once the style of their parent is known.
+     */
+    private class StyleTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int root;
+        private final boolean inherit;
+        private final NodeData[] main;
+        private final ConcurrentLinkedQueue<StyleMap> results;
+
+        public StyleTask(int root, boolean inherit, NodeData[] main, ConcurrentLinkedQueue<StyleMap> results)
+        {
+            this.root = root;
+            this.inherit = inherit;
+            this.main = main;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute()
+        {
+            final StyleMap result = new StyleMap(TASK_SIZE);
+            final List<StyleTask> forked = new ArrayList<>();
+            int i = root;
+            while (i < index.end[root])
+            {
+                if (i != root && index.end[i] - i > TASK_SIZE)
+                {
+                    //a large subtree; the parent style has been already computed
+                    StyleTask task = new StyleTask(i, inherit, main, results);
+                    task.fork();
+                    forked.add(task);
+                    i = index.end[i];
+                }
+                else
+                {
+                    final int p = index.parent[i];
+                    main[i] = computeNodeData(result, index.elems[i], (p == -1) ? null : main[p], inherit);
+                    i++;
+                }
+            }
+            results.add(result);
+            for (StyleTask task : forked)
+                task.join();
+        }
+    }
+
+}
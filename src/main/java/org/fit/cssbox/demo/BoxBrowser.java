@@ -172,9 +172,9 @@ public class BoxBrowser
             da.setDefaultEncoding(encoding);
             da.setMediaSpec(media);
             da.attributesToStyles();
-            da.addStyleSheet(null, CSSNorm.stdStyleSheet(), DOMAnalyzer.Origin.AGENT);
-            da.addStyleSheet(null, CSSNorm.userStyleSheet(), DOMAnalyzer.Origin.AGENT);
-            da.addStyleSheet(null, CSSNorm.formsStyleSheet(), DOMAnalyzer.Origin.AGENT);
+            da.addStyleSheet(CSSNorm.getStdStyleSheet());
+            da.addStyleSheet(CSSNorm.getUserStyleSheet());
+            da.addStyleSheet(CSSNorm.getFormsStyleSheet());
             da.getStyleSheets();
             
             contentCanvas = new BrowserCanvas(da.getRoot(), da, docSource.getURL());
@@ -108,9 +108,9 @@ public class ImageRenderer
         DOMAnalyzer da = new DOMAnalyzer(doc, docSource.getURL());
         da.setMediaSpec(media);
         da.attributesToStyles(); //convert the HTML presentation attributes to inline styles
-        da.addStyleSheet(null, CSSNorm.stdStyleSheet(), DOMAnalyzer.Origin.AGENT); //use the standard style sheet
-        da.addStyleSheet(null, CSSNorm.userStyleSheet(), DOMAnalyzer.Origin.AGENT); //use the additional style sheet
-        da.addStyleSheet(null, CSSNorm.formsStyleSheet(), DOMAnalyzer.Origin.AGENT); //render form fields using css
+        da.addStyleSheet(CSSNorm.getStdStyleSheet()); //use the standard style sheet
+        da.addStyleSheet(CSSNorm.getUserStyleSheet()); //use the additional style sheet
+        da.addStyleSheet(CSSNorm.getFormsStyleSheet()); //render form fields using css
         da.getStyleSheets(); //load the author style sheets
         
         GraphicsEngine contentCanvas = new GraphicsEngine(da.getRoot(), da, docSource.getURL());
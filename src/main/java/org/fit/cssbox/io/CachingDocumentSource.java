@@ -0,0 +1,346 @@
+/*
+ * CachingDocumentSource.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 19:31:10 by agent
+ */
+package org.fit.cssbox.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A document source that keeps the downloaded HTTP documents in a shared {@link DocumentCache}.
+ * The cached documents are returned without accessing the network as long as they are fresh
+ * according to the {@code Cache-Control}, {@code Expires} and {@code Last-Modified} response headers.
+ * The stale documents are revalidated using conditional requests based on their {@code ETag} and
+ * {@code Last-Modified} values. The response body is always read completely and the stream is closed
+ * so that the underlying HTTP connection may be reused for subsequent requests (HTTP keep-alive).
+ * The remaining URL schemes are processed by the {@link DefaultDocumentSource} implementation.
+ *
+ * The source may be used by registering it in the browser configuration using
+ * {@code config.registerDocumentSource(CachingDocumentSource.class)}. All the instances share the cache
+ * that may be configured using {@link #setCache(DocumentCache)}.
+ *
+ * @author agent
+ */
+public class CachingDocumentSource extends DefaultDocumentSource
+{
+    private static Logger log = LoggerFactory.getLogger(CachingDocumentSource.class);
+
+    /** Maximal heuristic freshness lifetime in milliseconds (24 hours) */
+    private static final long MAX_HEURISTIC_LIFETIME = 24L * 3600 * 1000;
+
+    /** The cache shared by all the instances */
+    private static volatile DocumentCache cache = new DocumentCache();
+
+    private boolean resolved;
+    private DocumentCache.Entry entry;
+    private URL location;
+    private InputStream is;
+
+
+    /**
+     * Creates a network data source based on the target document URL.
+     * @param url the document URL
+     * @throws IOException
+     */
+    public CachingDocumentSource(URL url) throws IOException
+    {
+        super(url);
+    }
+
+    /**
+     * Creates a data source based on the URL string. The data: urls are automatically
+     * recognized and  processed.
+     * @param urlstring The URL string
+     * @throws IOException
+     */
+    public CachingDocumentSource(String urlstring) throws IOException
+    {
+        super(urlstring);
+    }
+
+    /**
+     * Creates a data source based on the URL string. The data: urls are automatically
+     * recognized and  processed.
+     * @param base The base URL to be used for the relative URLs in the urlstring
+     * @param urlstring The URL string
+     * @throws IOException
+     */
+    public CachingDocumentSource(URL base, String urlstring) throws IOException
+    {
+        super(base, urlstring);
+    }
+
+    /**
+     * Obtains the cache shared by all the caching document sources.
+     * @return the document cache
+     */
+    public static DocumentCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Configures the cache shared by all the caching document sources. The new cache is used
+     * by the sources created after this call.
+     * @param cache the new document cache
+     */
+    public static void setCache(DocumentCache cache)
+    {
+        CachingDocumentSource.cache = cache;
+    }
+
+    @Override
+    public URL getURL()
+    {
+        if (location != null)
+            return location;
+        else
+            return super.getURL();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException
+    {
+        if (is == null)
+        {
+            resolve();
+            if (entry != null)
+                is = new ByteArrayInputStream(entry.getData());
+            else
+                is = super.getInputStream();
+        }
+        return is;
+    }
+
+    @Override
+    public String getContentType()
+    {
+        try {
+            resolve();
+        } catch (IOException e) {
+            log.debug("Couldn't obtain {}: {}", super.getURL(), e.getMessage());
+        }
+        if (entry != null)
+            return entry.getContentType();
+        else
+            return super.getContentType();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (entry != null)
+        {
+            if (is != null)
+                is.close();
+        }
+        else
+            super.close();
+    }
+
+    //=========================================================================
+
+    /**
+     * Obtains the document either from the cache or from the network. When the document
+     * is obtained from the network, the cache is updated as well.
+     * @throws IOException
+     */
+    private void resolve() throws IOException
+    {
+        if (!resolved)
+        {
+            resolved = true;
+            final URLConnection con = getConnection();
+            if (con instanceof HttpURLConnection)
+            {
+                final DocumentCache dcache = cache;
+                final String key = con.getURL().toExternalForm();
+                final long now = System.currentTimeMillis();
+                final DocumentCache.Entry cached = dcache.get(key);
+                if (cached != null && cached.isFresh(now))
+                {
+                    log.trace("Fresh cached document {}", key);
+                    setEntry(cached);
+                }
+                else
+                    setEntry(fetch((HttpURLConnection) con, dcache, key, cached, now));
+            }
+        }
+    }
+
+    private void setEntry(DocumentCache.Entry entry) throws MalformedURLException
+    {
+        this.entry = entry;
+        if (entry != null)
+            location = new URL(entry.getLocation());
+    }
+
+    /**
+     * Obtains the document from the network and updates the cache.
+     * @param con the connection to be used
+     * @param dcache the cache to be updated
+     * @param key the cache key
+     * @param cached the stale cache entry to be revalidated or {@code null}
+     * @param now the current time
+     * @return the obtained entry or {@code null} when the response should be processed in the
+     * default way (e.g. an error status)
+     * @throws IOException
+     */
+    private DocumentCache.Entry fetch(HttpURLConnection con, DocumentCache dcache, String key,
+            DocumentCache.Entry cached, long now) throws IOException
+    {
+        if (cached != null)
+        {
+            if (cached.getETag() != null)
+                con.setRequestProperty("If-None-Match", cached.getETag());
+            if (cached.getLastModified() != null)
+                con.setRequestProperty("If-Modified-Since", cached.getLastModified());
+        }
+
+        final int status = con.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null)
+        {
+            discard(con);
+            log.trace("Revalidated cached document {}", key);
+            final long expires = computeExpiration(con, now);
+            final DocumentCache.Entry ret = cached.revalidated(con.getHeaderField("ETag"),
+                    con.getHeaderField("Last-Modified"), expires);
+            if (expires >= 0)
+                dcache.put(ret);
+            else
+                dcache.remove(key); //the response must not be stored anymore
+            return ret;
+        }
+        else if (status == HttpURLConnection.HTTP_OK)
+        {
+            final byte[] data;
+            try (InputStream in = con.getInputStream())
+            {
+                data = in.readAllBytes(); //read it whole in order to allow reusing the connection
+            }
+            final long expires = computeExpiration(con, now);
+            final DocumentCache.Entry ret = new DocumentCache.Entry(key, con.getURL().toExternalForm(),
+                    con.getHeaderField("Content-Type"), con.getHeaderField("ETag"),
+                    con.getHeaderField("Last-Modified"), Math.max(expires, now), data);
+            if (expires >= 0 && (ret.isFresh(now) || ret.hasValidators()))
+                dcache.put(ret);
+            else
+                dcache.remove(key);
+            return ret;
+        }
+        else
+        {
+            if (status >= HttpURLConnection.HTTP_BAD_REQUEST)
+                discard(con);
+            return null;
+        }
+    }
+
+    /**
+     * Reads and closes the remaining response body so that the connection may be reused.
+     */
+    private void discard(HttpURLConnection con)
+    {
+        try {
+            InputStream in = con.getErrorStream();
+            if (in == null && con.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST)
+                in = con.getInputStream();
+            if (in != null)
+            {
+                in.readAllBytes();
+                in.close();
+            }
+        } catch (IOException e) {
+            //the connection will not be reused
+        }
+    }
+
+    /**
+     * Computes the expiration time of the response according to RFC 7234.
+     * @param con the connection with the response headers available
+     * @param now the time of the request
+     * @return the expiration time in milliseconds or -1 when the response must not be stored.
+     */
+    protected long computeExpiration(HttpURLConnection con, long now)
+    {
+        final String cc = con.getHeaderField("Cache-Control");
+        if (cc != null)
+        {
+            long maxAge = -1;
+            for (String directive : cc.split(","))
+            {
+                final String d = directive.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-store"))
+                    return -1;
+                else if (d.equals("no-cache"))
+                    return now; //store but always revalidate
+                else if (d.startsWith("max-age="))
+                {
+                    try {
+                        maxAge = Long.parseLong(d.substring(8).replace("\"", "").trim());
+                    } catch (NumberFormatException e) {
+                        return now; //invalid value, consider stale
+                    }
+                }
+            }
+            if (maxAge >= 0)
+            {
+                long age = 0;
+                final String ageh = con.getHeaderField("Age");
+                if (ageh != null)
+                {
+                    try {
+                        age = Long.parseLong(ageh.trim());
+                    } catch (NumberFormatException e) {
+                        //ignore the invalid age
+                    }
+                }
+                return now + Math.max(0, maxAge - age) * 1000;
+            }
+        }
+
+        final String pragma = con.getHeaderField("Pragma");
+        if (pragma != null && pragma.toLowerCase(Locale.ROOT).contains("no-cache"))
+            return now;
+
+        final long date = con.getHeaderFieldDate("Date", now);
+        if (con.getHeaderField("Expires") != null)
+        {
+            final long expires = con.getHeaderFieldDate("Expires", 0); //invalid values mean the past
+            return now + Math.max(0, expires - date);
+        }
+
+        //heuristic freshness: 10% of the time since the last modification
+        final long modified = con.getHeaderFieldDate("Last-Modified", 0);
+        if (modified > 0 && modified < date)
+            return now + Math.min((date - modified) / 10, MAX_HEURISTIC_LIFETIME);
+
+        return now;
+    }
+
+}
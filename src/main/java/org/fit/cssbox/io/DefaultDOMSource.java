@@ -40,13 +40,23 @@ public class DefaultDOMSource extends DOMSource
 
     @Override
     public Document parse() throws SAXException, IOException
+    {
+        DOMParser parser = createParser();
+        parser.parse(new org.xml.sax.InputSource(getDocumentSource().getInputStream()));
+        return parser.getDocument();
+    }
+
+    /**
+     * Creates and configures the parser used for parsing the document.
+     * @return the configured parser
+     */
+    protected DOMParser createParser() throws SAXException
     {
         DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
         parser.setProperty("http://cyberneko.org/html/properties/names/elems", "lower");
         if (charset != null)
             parser.setProperty("http://cyberneko.org/html/properties/default-encoding", charset);
-        parser.parse(new org.xml.sax.InputSource(getDocumentSource().getInputStream()));
-        return parser.getDocument();
+        return parser;
     }
 
 }
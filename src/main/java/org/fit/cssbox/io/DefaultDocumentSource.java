@@ -94,6 +94,15 @@ public class DefaultDocumentSource extends DocumentSource
         return con;
     }
     
+    /**
+     * Obtains the URL connection used for obtaining the document.
+     * @return the connection instance
+     */
+    protected URLConnection getConnection()
+    {
+        return con;
+    }
+    
     @Override
     public URL getURL()
     {
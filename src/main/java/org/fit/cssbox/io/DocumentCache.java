@@ -0,0 +1,483 @@
+/*
+ * DocumentCache.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 19:05:42 by agent
+ */
+package org.fit.cssbox.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the downloaded documents used by {@link CachingDocumentSource}. The documents are kept
+ * in memory up to a given total size; the least recently used documents are evicted first. Optionally,
+ * the documents are also stored in a directory so that they survive the eviction and may be shared
+ * by multiple processes.
+ *
+ * The cache is thread-safe.
+ *
+ * @author agent
+ */
+public class DocumentCache
+{
+    private static Logger log = LoggerFactory.getLogger(DocumentCache.class);
+
+    /** Default maximal size of the documents kept in memory in bytes (32 MiB) */
+    public static final long DEFAULT_MAX_MEMORY = 32L * 1024 * 1024;
+
+    /** The file format identifier */
+    private static final int FILE_MAGIC = 0x43424432; //CBD2
+    private static final String FILE_SUFFIX = ".entry";
+
+    private final long maxMemory;
+    private final File directory;
+
+    /** The documents kept in memory in the LRU order (keyed by URL strings) */
+    private final LinkedHashMap<String, Entry> entries;
+    /** Current total size of the documents in memory */
+    private long size;
+
+    private long hitCount;
+    private long missCount;
+
+
+    /**
+     * Creates a memory-only cache with the default size.
+     */
+    public DocumentCache()
+    {
+        this(DEFAULT_MAX_MEMORY, null);
+    }
+
+    /**
+     * Creates a cache.
+     * @param maxMemory the maximal total size of the documents kept in memory in bytes
+     * @param directory the directory used for storing the documents or {@code null} for a memory-only cache.
+     * The directory is created when it does not exist.
+     */
+    public DocumentCache(long maxMemory, File directory)
+    {
+        this.maxMemory = maxMemory;
+        this.directory = directory;
+        entries = new LinkedHashMap<>(64, 0.75f, true);
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+            log.warn("Couldn't create the cache directory {}", directory);
+    }
+
+    /**
+     * Obtains the maximal size of the documents kept in memory.
+     * @return the size in bytes
+     */
+    public long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    /**
+     * Obtains the directory used for storing the documents.
+     * @return the directory or {@code null} for a memory-only cache
+     */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Finds a cached document.
+     * @param url the requested document URL
+     * @return the cache entry or {@code null} when the document is not cached
+     */
+    public Entry get(String url)
+    {
+        synchronized (this)
+        {
+            final Entry ret = entries.get(url);
+            if (ret != null || directory == null)
+            {
+                if (ret != null)
+                    hitCount++;
+                else
+                    missCount++;
+                return ret;
+            }
+        }
+        //the file is read outside of the lock; the index is only updated when it has not changed meanwhile
+        final Entry read = readEntry(url);
+        synchronized (this)
+        {
+            if (read == null)
+            {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            final Entry current = entries.get(url);
+            if (current != null)
+                return current; //stored by a concurrent put()
+            store(read);
+            return read;
+        }
+    }
+
+    /**
+     * Stores a document in the cache. An existing entry for the same URL is replaced.
+     * @param entry the cache entry
+     */
+    public void put(Entry entry)
+    {
+        synchronized (this)
+        {
+            store(entry);
+        }
+        if (directory != null)
+            writeEntry(entry);
+    }
+
+    /**
+     * Removes a document from the cache.
+     * @param url the document URL
+     */
+    public void remove(String url)
+    {
+        synchronized (this)
+        {
+            final Entry old = entries.remove(url);
+            if (old != null)
+                size -= old.getSize();
+        }
+        if (directory != null)
+            getFile(url).delete();
+    }
+
+    /**
+     * Removes all the documents from the memory. The documents stored in the directory are preserved.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Obtains the total size of the documents kept in memory.
+     * @return the size in bytes
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Obtains the number of successful lookups.
+     * @return the hit count
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Obtains the number of lookups that did not find the document.
+     * @return the miss count
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DocumentCache [size=" + getSize() + "/" + maxMemory + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + (directory == null ? "" : ", dir=" + directory) + "]";
+    }
+
+    //=========================================================================
+
+    private void store(Entry entry)
+    {
+        final Entry old = entries.remove(entry.getUrl());
+        if (old != null)
+            size -= old.getSize();
+        if (entry.getSize() <= maxMemory)
+        {
+            entries.put(entry.getUrl(), entry);
+            size += entry.getSize();
+            final Iterator<Entry> it = entries.values().iterator();
+            while (size > maxMemory && it.hasNext())
+            {
+                size -= it.next().getSize();
+                it.remove();
+            }
+        }
+    }
+
+    private File getFile(String url)
+    {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder(digest.length * 2 + FILE_SUFFIX.length());
+            for (byte b : digest)
+                name.append(String.format("%02x", b));
+            name.append(FILE_SUFFIX);
+            return new File(directory, name.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //SHA-256 is always available
+        }
+    }
+
+    private Entry readEntry(String url)
+    {
+        final File file = getFile(url);
+        if (!file.isFile())
+            return null;
+        final long fileSize = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != FILE_MAGIC)
+                throw new IOException("Invalid cache file format");
+            final String eurl = readString(in, fileSize);
+            final String location = readString(in, fileSize);
+            final String contentType = readString(in, fileSize);
+            final String etag = readString(in, fileSize);
+            final String lastModified = readString(in, fileSize);
+            final long expires = in.readLong();
+            final byte[] data = readBytes(in, fileSize);
+            if (eurl == null || location == null || data == null)
+                throw new IOException("Invalid cache file format");
+            if (!eurl.equals(url))
+                return null; //hash collision
+            return new Entry(eurl, location, contentType, etag, lastModified, expires, data);
+        } catch (IOException e) {
+            log.warn("Couldn't read the cache file {}: {}", file, e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeEntry(Entry entry)
+    {
+        final File file = getFile(entry.getUrl());
+        File tmp = null;
+        boolean moved = false;
+        try
+        {
+            tmp = File.createTempFile("doc", ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))
+            {
+                out.writeInt(FILE_MAGIC);
+                writeString(out, entry.getUrl());
+                writeString(out, entry.getLocation());
+                writeString(out, entry.getContentType());
+                writeString(out, entry.getETag());
+                writeString(out, entry.getLastModified());
+                out.writeLong(entry.getExpires());
+                writeBytes(out, entry.data);
+            }
+            //replace the file atomically so that the concurrent readers never see a partial file
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } catch (IOException e) {
+            log.warn("Couldn't write the cache file {}: {}", file, e.getMessage());
+        } finally {
+            if (tmp != null && !moved)
+                tmp.delete();
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}. Unlike
+     * {@link DataInputStream#readUTF()}, the string length is not limited to 64 KiB.
+     */
+    private static String readString(DataInputStream in, long limit) throws IOException
+    {
+        final byte[] bytes = readBytes(in, limit);
+        return (bytes == null) ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        writeBytes(out, (s == null) ? null : s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a length-prefixed byte array. The length is checked against the file size before
+     * the array is allocated so that a corrupted file cannot cause an excessive allocation.
+     */
+    private static byte[] readBytes(DataInputStream in, long limit) throws IOException
+    {
+        final int len = in.readInt();
+        if (len == -1)
+            return null;
+        if (len < 0 || len > limit)
+            throw new IOException("Invalid data length " + len);
+        final byte[] ret = new byte[len];
+        in.readFully(ret);
+        return ret;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] data) throws IOException
+    {
+        if (data == null)
+            out.writeInt(-1);
+        else
+        {
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    //=========================================================================
+
+    /**
+     * A cached document together with the HTTP metadata needed for deciding about its freshness
+     * and for its revalidation.
+     *
+     * @author agent
+     */
+    public static class Entry
+    {
+        private final String url;
+        private final String location;
+        private final String contentType;
+        private final String etag;
+        private final String lastModified;
+        private final long expires;
+        private final byte[] data;
+
+        /**
+         * Creates a cache entry.
+         * @param url the requested document URL
+         * @param location the final document URL (after following the redirects)
+         * @param contentType the value of the Content-Type header or {@code null}
+         * @param etag the value of the ETag header or {@code null}
+         * @param lastModified the value of the Last-Modified header or {@code null}
+         * @param expires the time when the document becomes stale (in milliseconds since the epoch)
+         * @param data the document contents
+         */
+        public Entry(String url, String location, String contentType, String etag, String lastModified,
+                long expires, byte[] data)
+        {
+            this.url = url;
+            this.location = location;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+            this.data = data;
+        }
+
+        public String getUrl()
+        {
+            return url;
+        }
+
+        public String getLocation()
+        {
+            return location;
+        }
+
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        public String getETag()
+        {
+            return etag;
+        }
+
+        public String getLastModified()
+        {
+            return lastModified;
+        }
+
+        public long getExpires()
+        {
+            return expires;
+        }
+
+        /**
+         * Obtains the document contents. The returned array must not be modified.
+         * @return the document data
+         */
+        public byte[] getData()
+        {
+            return data;
+        }
+
+        /**
+         * Obtains the size of the document contents.
+         * @return the size in bytes
+         */
+        public int getSize()
+        {
+            return data.length;
+        }
+
+        /**
+         * Checks whether the document may be used without revalidation.
+         * @param now the current time in milliseconds
+         * @return {@code true} when the document is still fresh
+         */
+        public boolean isFresh(long now)
+        {
+            return now < expires;
+        }
+
+        /**
+         * Checks whether the document may be revalidated using a conditional request.
+         * @return {@code true} when there is an entity tag or the last modification date available
+         */
+        public boolean hasValidators()
+        {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Creates a copy of the entry with updated metadata obtained during a successful revalidation.
+         * @param etag the new entity tag or {@code null} to keep the current one
+         * @param lastModified the new modification date or {@code null} to keep the current one
+         * @param expires the new expiration time
+         * @return the updated entry
+         */
+        public Entry revalidated(String etag, String lastModified, long expires)
+        {
+            return new Entry(url, location, contentType,
+                    (etag != null) ? etag : this.etag,
+                    (lastModified != null) ? lastModified : this.lastModified,
+                    expires, data);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * DocumentSourceNetworkProcessor.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 20:02:48 by agent
+ */
+package org.fit.cssbox.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import org.fit.cssbox.layout.BrowserConfig;
+
+import cz.vutbr.web.css.NetworkProcessor;
+
+/**
+ * A network processor for the CSS parser that obtains the style sheets using the document source
+ * registered in the browser configuration. This allows the style sheets to use the same
+ * document source (e.g. {@link CachingDocumentSource}) as the documents, images and fonts.
+ * It may be used via {@link org.fit.cssbox.css.DOMAnalyzer#setNetworkProcessor(NetworkProcessor)}.
+ *
+ * @author agent
+ */
+public class DocumentSourceNetworkProcessor implements NetworkProcessor
+{
+    private final BrowserConfig config;
+
+
+    /**
+     * Creates a network processor.
+     * @param config the browser configuration used for creating the document sources
+     */
+    public DocumentSourceNetworkProcessor(BrowserConfig config)
+    {
+        this.config = config;
+    }
+
+    @Override
+    public InputStream fetch(URL url) throws IOException
+    {
+        final DocumentSource src = config.createDocumentSource(url);
+        if (src == null)
+            throw new IOException("Couldn't create the document source for " + url);
+        try (DocumentSource s = src)
+        {
+            //read the whole style sheet so that the source may be closed immediately
+            return new ByteArrayInputStream(s.getInputStream().readAllBytes());
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * StreamingDOMSource.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 20:41:16 by agent
+ */
+package org.fit.cssbox.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.fit.cssbox.layout.ImageLoader;
+import org.fit.cssbox.layout.ResourcePrefetcher;
+import org.fit.net.DataURLHandler;
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import cz.vutbr.web.css.MediaSpec;
+
+/**
+ * A DOM parser implementation that starts fetching the external resources while the document
+ * is still being parsed. The <code>&lt;link rel="stylesheet"&gt;</code>, <code>&lt;style&gt;</code>,
+ * <code>&lt;img&gt;</code> and <code>&lt;base&gt;</code> elements are recognized as soon as the parser
+ * reaches them and the corresponding fetches are passed to a {@link ResourcePrefetcher} so that
+ * the network latency of the resources overlaps with the download of the rest of the document.
+ * <p>
+ * Only the style sheets that are going to be used for the media specification of the source are
+ * fetched; the links are recognized by {@link ResourcePrefetcher#isUsedStyleSheetLink(String, String, String, MediaSpec)}
+ * using the same rules as when the style sheets are loaded. The style sheets are obtained using the document
+ * source registered in the browser configuration of the prefetcher and they are provided to the DOM
+ * analyzer by calling {@link ResourcePrefetcher#prefetchStyleSheets(org.fit.cssbox.css.DOMAnalyzer)}
+ * after the parsing.
+ * The images are loaded only when an image loader is provided; they are stored in the image cache
+ * configured in the browser configuration. Without a prefetcher, the source behaves as
+ * {@link DefaultDOMSource}.
+ *
+ * @author agent
+ */
+public class StreamingDOMSource extends DefaultDOMSource
+{
+    private static Logger log = LoggerFactory.getLogger(StreamingDOMSource.class);
+
+    private ResourcePrefetcher prefetcher;
+    private ImageLoader imageLoader;
+    private MediaSpec media;
+
+    public StreamingDOMSource(DocumentSource src)
+    {
+        super(src);
+        media = new MediaSpec("screen");
+    }
+
+    /**
+     * Creates a parser that passes the discovered resources to the given prefetcher.
+     * @param src the document source
+     * @param prefetcher the prefetcher used for fetching the resources
+     * @param imageLoader the image loader used for loading the images or {@code null} when the images
+     * should not be prefetched
+     */
+    public StreamingDOMSource(DocumentSource src, ResourcePrefetcher prefetcher, ImageLoader imageLoader)
+    {
+        super(src);
+        this.prefetcher = prefetcher;
+        this.imageLoader = imageLoader;
+        media = new MediaSpec("screen");
+    }
+
+    public ResourcePrefetcher getPrefetcher()
+    {
+        return prefetcher;
+    }
+
+    /**
+     * Sets the prefetcher used for fetching the resources discovered during parsing.
+     * @param prefetcher the prefetcher or {@code null} for no prefetching
+     */
+    public void setPrefetcher(ResourcePrefetcher prefetcher)
+    {
+        this.prefetcher = prefetcher;
+    }
+
+    public ImageLoader getImageLoader()
+    {
+        return imageLoader;
+    }
+
+    /**
+     * Sets the image loader used for prefetching the images.
+     * @param imageLoader the image loader or {@code null} when the images should not be prefetched
+     */
+    public void setImageLoader(ImageLoader imageLoader)
+    {
+        this.imageLoader = imageLoader;
+    }
+
+    public MediaSpec getMediaSpec()
+    {
+        return media;
+    }
+
+    /**
+     * Sets the media specification used for deciding which linked style sheets are going to be used.
+     * It should correspond to the media specification of the DOM analyzer that processes the document.
+     * @param media the media specification
+     */
+    public void setMediaSpec(MediaSpec media)
+    {
+        this.media = media;
+    }
+
+    @Override
+    public Document parse() throws SAXException, IOException
+    {
+        if (prefetcher == null)
+            return super.parse();
+
+        DOMParser parser = createParser();
+        final InputStream is = getDocumentSource().getInputStream();
+        //the document URL is final after the stream has been obtained (redirects)
+        final ResourceFilter filter = new ResourceFilter(getDocumentSource().getURL());
+        parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] { filter });
+        parser.parse(new org.xml.sax.InputSource(is));
+        return parser.getDocument();
+    }
+
+    //=========================================================================
+
+    /**
+     * A parser filter that recognizes the resources and passes them to the prefetcher.
+     */
+    private class ResourceFilter extends DefaultFilter
+    {
+        private URL base;
+        /** The contents of the current style element or {@code null} when not in a style element */
+        private StringBuilder style;
+
+        public ResourceFilter(URL base)
+        {
+            this.base = base;
+        }
+
+        @Override
+        public void startElement(QName element, XMLAttributes attributes, Augmentations augs) throws XNIException
+        {
+            processElement(element, attributes);
+            if ("style".equalsIgnoreCase(element.getLocalpart()))
+                style = new StringBuilder();
+            super.startElement(element, attributes, augs);
+        }
+
+        @Override
+        public void emptyElement(QName element, XMLAttributes attributes, Augmentations augs) throws XNIException
+        {
+            processElement(element, attributes);
+            super.emptyElement(element, attributes, augs);
+        }
+
+        @Override
+        public void characters(XMLString text, Augmentations augs) throws XNIException
+        {
+            if (style != null)
+                style.append(text.toString());
+            super.characters(text, augs);
+        }
+
+        @Override
+        public void endElement(QName element, Augmentations augs) throws XNIException
+        {
+            if (style != null && "style".equalsIgnoreCase(element.getLocalpart()))
+            {
+                prefetcher.prefetchStyleImports(style.toString(), base);
+                style = null;
+            }
+            super.endElement(element, augs);
+        }
+
+        private void processElement(QName element, XMLAttributes attributes)
+        {
+            final String name = element.getLocalpart();
+            if ("base".equalsIgnoreCase(name))
+            {
+                final String href = getAttribute(attributes, "href");
+                if (href != null)
+                {
+                    try {
+                        base = DataURLHandler.createURL(base, href);
+                    } catch (MalformedURLException e) {
+                        log.warn("Malformed base URL: " + e.getMessage());
+                    }
+                }
+            }
+            else if ("link".equalsIgnoreCase(name))
+            {
+                final String href = getAttribute(attributes, "href");
+                //the raw values are used so that the link is recognized exactly as when loading the style sheets
+                if (href != null && ResourcePrefetcher.isUsedStyleSheetLink(getRawAttribute(attributes, "rel"),
+                        getRawAttribute(attributes, "type"), getRawAttribute(attributes, "media"), media))
+                {
+                    final URL url = createURL(href);
+                    if (url != null)
+                        prefetcher.prefetchStyleSheet(url);
+                }
+            }
+            else if ("img".equalsIgnoreCase(name) && imageLoader != null)
+            {
+                final String src = getAttribute(attributes, "src");
+                if (src != null)
+                {
+                    final URL url = createURL(src);
+                    if (url != null)
+                        prefetcher.prefetchImage(url, imageLoader);
+                }
+            }
+        }
+
+        private URL createURL(String href)
+        {
+            try {
+                return DataURLHandler.createURL(base, href);
+            } catch (MalformedURLException e) {
+                return null; //the error will be reported when processing the document
+            }
+        }
+
+        private String getAttribute(XMLAttributes attributes, String name)
+        {
+            final String value = getRawAttribute(attributes, name);
+            if (value != null && !value.trim().isEmpty())
+                return value.trim();
+            else
+                return null;
+        }
+
+        private String getRawAttribute(XMLAttributes attributes, String name)
+        {
+            for (int i = 0; i < attributes.getLength(); i++)
+            {
+                if (name.equalsIgnoreCase(attributes.getQName(i)))
+                    return attributes.getValue(i);
+            }
+            return null;
+        }
+    }
+
+}
@@ -583,6 +583,7 @@ public class BlockBox extends ElementBox
         if (min_size.width != -1 && w < min_size.width)
             w = min_size.width;
         content.width = w;
+        checkWidthProperties();
     }
     
     /**
@@ -1037,6 +1038,7 @@ public class BlockBox extends ElementBox
                 //the total height is the last Y coordinate
                 setContentHeight(y);
                 updateSizes();
+                checkWidthProperties();
                 updateChildSizes();
         }
         setSize(totalWidth(), totalHeight());
@@ -1180,6 +1182,7 @@ public class BlockBox extends ElementBox
             //the total height is the last Y coordinate
             setContentHeight(stat.y);
             updateSizes();
+            checkWidthProperties();
             updateChildSizes();
         }
         setSize(totalWidth(), totalHeight());
@@ -1293,6 +1296,7 @@ public class BlockBox extends ElementBox
         subbox.doLayout(wlimit, true, true);
         FloatList f = (subbox.getFloating() == FLOAT_LEFT) ? fleft : fright;    //float list at my side
         FloatList of = (subbox.getFloating() == FLOAT_LEFT) ? fright : fleft;   //float list at the opposite side
+        f.update(subbox); //the box may have been placed to the list by a previous layout
         float floatX = (subbox.getFloating() == FLOAT_LEFT) ? floatXl : floatXr;  //float offset at this side
         float oFloatX = (subbox.getFloating() == FLOAT_LEFT) ? floatXr : floatXl; //float offset at the opposite side
         
@@ -1543,10 +1547,22 @@ public class BlockBox extends ElementBox
     }
 
     /**
-     * Computes the minimal width of the box content from the contained sub-boxes.
+     * Obtains the minimal width of the box content. The width is computed from the contained
+     * sub-boxes when necessary and it is cached until the content of the box changes.
      * @return the minimal content width
      */
     protected float getMinimalContentWidth()
+    {
+        if (minContentWidth < 0)
+            minContentWidth = computeMinimalContentWidth();
+        return minContentWidth;
+    }
+    
+    /**
+     * Computes the minimal width of the box content from the contained sub-boxes.
+     * @return the minimal content width
+     */
+    protected float computeMinimalContentWidth()
     {
         float ret = 0;
         float max = 0; //block children
@@ -1623,10 +1639,22 @@ public class BlockBox extends ElementBox
     }
 
     /**
-     * Computes the maximal width of the box content from the contained sub-boxes.
+     * Obtains the maximal width of the box content. The width is computed from the contained
+     * sub-boxes when necessary and it is cached until the content of the box changes.
      * @return the maximal content width
      */
     protected float getMaximalContentWidth()
+    {
+        if (maxContentWidth < 0)
+            maxContentWidth = computeMaximalContentWidth();
+        return maxContentWidth;
+    }
+    
+    /**
+     * Computes the maximal width of the box content from the contained sub-boxes.
+     * @return the maximal content width
+     */
+    protected float computeMaximalContentWidth()
     {
         float sum = 0;
         float max = 0;
@@ -1669,6 +1697,14 @@ public class BlockBox extends ElementBox
         return Math.max(sum, max);
     }
     
+    @Override
+    protected float[] getWidthProperties()
+    {
+        final LengthSet dm = (declMargin != null) ? declMargin : margin;
+        return new float[] { dm.left, dm.right, border.left, border.right, padding.left, padding.right,
+                             min_size.width, max_size.width, wrelative ? 1 : 0, wset ? 1 : 0, wset ? content.width : 0 };
+    }
+    
     /**
      * Determines the minimal width as it is limited by the ancestors (for in-flow boxes)
      * or by the explicit setting of <code>width</code> or <code>min-width</code> properties.
@@ -2526,6 +2562,14 @@ public class BlockBox extends ElementBox
             return m1 + m2;
     }
     
+    @Override
+    public void resetLayout()
+    {
+        setFloats(new FloatList(this), new FloatList(this), 0, 0, 0);
+        widthComputed = false;
+        super.resetLayout();
+    }
+    
     /**
      * Remove the previously splitted child boxes
      */
@@ -2538,6 +2582,7 @@ public class BlockBox extends ElementBox
             {
                 it.remove();
                 endChild--;
+                invalidateIntrinsicWidths();
             }
         }
     }
@@ -124,6 +124,7 @@ public class BlockTableBox extends BlockBox
         BlockLayoutStatus stat = new BlockLayoutStatus();
         table.setAvailableWidth(wlimit);
         table.updateSizes();
+        table.checkWidthProperties();
         layoutBlockInFlow(table, wlimit, stat);
         tabwidth = stat.maxw;
         tabheight = stat.y;
@@ -134,6 +135,7 @@ public class BlockTableBox extends BlockBox
             stat.y = 0;
             caption.setAvailableWidth(stat.maxw);
             caption.updateSizes();
+            caption.checkWidthProperties();
             layoutBlockInFlow(caption, stat.maxw, stat);
             capwidth = stat.maxw;
             capheight = stat.y;
@@ -155,6 +157,7 @@ public class BlockTableBox extends BlockBox
         setContentHeight(tabheight + capheight);
         widthComputed = true;
         updateSizes();
+        checkWidthProperties();
         setSize(totalWidth(), totalHeight());
         
         //layout positioned boxes
@@ -163,6 +166,7 @@ public class BlockTableBox extends BlockBox
             if (box instanceof BlockBox && ((BlockBox) box).isPositioned())
             {
                 ((BlockBox) box).updateSizes();
+                ((BlockBox) box).checkWidthProperties();
                 layoutBlockPositioned((BlockBox) box, stat);
             }
         }
@@ -189,7 +193,7 @@ public class BlockTableBox extends BlockBox
     }
 
     @Override
-    protected float getMaximalContentWidth()
+    protected float computeMaximalContentWidth()
     {
         if (caption == null)
             return table.getMaximalContentWidth();
@@ -198,7 +202,7 @@ public class BlockTableBox extends BlockBox
     }
 
     @Override
-    protected float getMinimalContentWidth()
+    protected float computeMinimalContentWidth()
     {
         if (caption == null)
             return table.getMinimalContentWidth();
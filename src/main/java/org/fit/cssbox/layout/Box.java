@@ -169,6 +169,16 @@ abstract public class Box
         initBox(); //default implementation - just initialize this box
     }
     
+    /**
+     * Restores the state of the box and the corresponding subtree (if any) before the layout so that
+     * the layout may be computed again for the same box tree. The boxes created by splitting during
+     * the previous layout are discarded.
+     */
+    public void resetLayout()
+    {
+        rest = null;
+    }
+    
     /**
      * Initializes a box in order to be a proper child box of the specified parent. Copies
      * all the necessary information from the parent.
@@ -460,6 +470,28 @@ abstract public class Box
     }
     
 
+    /**
+     * Checks whether this box or some of its descendants may paint anything in the given area.
+     * The result is conservative: {@code true} may be returned even if nothing is actually painted
+     * in the area.
+     * @param area The area in absolute coordinates.
+     * @return {@code false} when it is sure that nothing is painted in the given area.
+     */
+    public boolean mayPaintIn(Rectangle area)
+    {
+        return touches(getAbsoluteBounds(), area);
+    }
+    
+    /**
+     * Checks whether two rectangles touch or overlap. Unlike {@link Rectangle#intersects(Rectangle)},
+     * the empty rectangles are considered as well.
+     */
+    protected static boolean touches(Rectangle r, Rectangle area)
+    {
+        return r.x <= area.x + area.width && area.x <= r.x + r.width
+                && r.y <= area.y + area.height && area.y <= r.y + r.height;
+    }
+    
     /**
      * Adjusts the absolute bounds width and height in order to fit into the clip.
      * If the box doesn't fit at all, it is marked as invisible.
@@ -0,0 +1,366 @@
+/*
+ * BoxIndex.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 22:14:37 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.cssbox.render.BoxRenderer;
+import org.w3c.dom.Element;
+
+/**
+ * A spatial index of the boxes of a laid-out viewport used for the hit-testing and for the element lookup.
+ * The index is created by {@link Viewport#getBoxIndex()} from the absolute positions of the boxes; it records
+ * the boxes in the order in which they are painted and it distributes their bounds to a uniform grid
+ * so that the point and rectangle queries only consider the boxes in the affected grid cells.
+ * <p>
+ * The box bounds used by the index are the absolute border bounds of the element boxes and the absolute
+ * bounds of the text boxes clipped by their clipping blocks. The CSS transformations are not considered.
+ * The index is not updated automatically; the viewport creates a new one when the absolute positions
+ * change.
+ *
+ * @author agent
+ */
+public class BoxIndex
+{
+    /** The preferred grid cell size in pixels */
+    private static final float CELL_SIZE = 256;
+    /** Maximal number of grid cells */
+    private static final int MAX_CELLS = 1 << 16;
+
+    /** The painted boxes in the painting order (a box may be present multiple times) */
+    private final Box[] boxes;
+    /** The bounds of the painted boxes */
+    private final Rectangle[] bounds;
+
+    /** The grid origin and size */
+    private float x0, y0, cellw, cellh;
+    private int cols, rows;
+    /** Indices of the boxes intersecting the individual grid cells in the painting order */
+    private int[][] cells;
+
+    /** Element boxes for the DOM elements */
+    private final Map<Element, List<ElementBox>> elements;
+    /** Element boxes for the element IDs */
+    private final Map<String, ElementBox> ids;
+
+
+    /**
+     * Creates the index for the given viewport.
+     * @param viewport the viewport with the absolute positions computed
+     * @param recorder the recorder used for obtaining the painting order of the viewport boxes
+     */
+    BoxIndex(Viewport viewport, Recorder recorder)
+    {
+        final int n = recorder.boxes.size();
+        boxes = recorder.boxes.toArray(new Box[n]);
+        bounds = new Rectangle[n];
+        for (int i = 0; i < n; i++)
+            bounds[i] = getHitBounds(boxes[i]);
+        createGrid();
+
+        elements = new HashMap<>();
+        ids = new HashMap<>();
+        indexElements(viewport);
+    }
+
+    /**
+     * Finds the topmost box at the given position, i.e. the box painted last at the position.
+     * @param x the absolute x coordinate
+     * @param y the absolute y coordinate
+     * @return the topmost box or {@code null} when there is no box at the given position
+     */
+    public Box getBoxAt(float x, float y)
+    {
+        final int[] cell = getCell(x, y);
+        if (cell != null)
+        {
+            for (int i = cell.length - 1; i >= 0; i--)
+            {
+                if (bounds[cell[i]].contains(x, y))
+                    return boxes[cell[i]];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds all the boxes whose bounds intersect the given rectangle.
+     * @param rect the rectangle in absolute coordinates
+     * @return the list of boxes in the painting order (each box is present once)
+     */
+    public List<Box> getBoxesIn(Rectangle rect)
+    {
+        final BitSet found = new BitSet(boxes.length);
+        if (cells != null)
+        {
+            final int c1 = Math.max(0, col(rect.x));
+            final int c2 = Math.min(cols - 1, col(rect.x + rect.width));
+            final int r1 = Math.max(0, row(rect.y));
+            final int r2 = Math.min(rows - 1, row(rect.y + rect.height));
+            for (int r = r1; r <= r2; r++)
+            {
+                for (int c = c1; c <= c2; c++)
+                {
+                    for (int i : cells[r * cols + c])
+                    {
+                        if (!found.get(i) && bounds[i].intersects(rect))
+                            found.set(i);
+                    }
+                }
+            }
+        }
+        final List<Box> ret = new ArrayList<>(found.cardinality());
+        final Map<Box, Boolean> used = new IdentityHashMap<>();
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1))
+        {
+            if (used.put(boxes[i], Boolean.TRUE) == null)
+                ret.add(boxes[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * Obtains the element boxes created for the given DOM element. An element may be represented
+     * by multiple boxes, e.g. an inline element split to several lines.
+     * @param e the DOM element
+     * @return the list of boxes in the tree order (empty when no boxes have been created for the element)
+     */
+    public List<ElementBox> getElementBoxes(Element e)
+    {
+        final List<ElementBox> ret = elements.get(e);
+        return ret == null ? Collections.emptyList() : Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * Obtains the first element box created for the given DOM element.
+     * @param e the DOM element
+     * @return the element box or {@code null} when no box has been created for the element
+     */
+    public ElementBox getElementBox(Element e)
+    {
+        final List<ElementBox> ret = elements.get(e);
+        return ret == null ? null : ret.get(0);
+    }
+
+    /**
+     * Obtains the first element box created for the element with the given ID.
+     * @param id the element ID
+     * @return the element box or {@code null} when no such box exists
+     */
+    public ElementBox getElementBoxById(String id)
+    {
+        return ids.get(id);
+    }
+
+    //=========================================================================
+
+    private Rectangle getHitBounds(Box box)
+    {
+        if (box instanceof Viewport)
+        {
+            final Viewport vp = (Viewport) box;
+            return new Rectangle(0, 0, vp.getCanvasWidth(), vp.getCanvasHeight());
+        }
+        final Rectangle ret = (box instanceof ElementBox) ?
+                ((ElementBox) box).getAbsoluteBorderBounds() : box.getAbsoluteBounds();
+        final ElementBox clip = box.getClipBlock();
+        if (clip != null && !(clip instanceof Viewport)) //the viewport clipping is not considered
+            return clip.getClippedContentBounds().intersection(ret);
+        else
+            return new Rectangle(ret);
+    }
+
+    private void createGrid()
+    {
+        float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE, x2 = -Float.MAX_VALUE, y2 = -Float.MAX_VALUE;
+        for (Rectangle b : bounds)
+        {
+            if (b.width > 0 && b.height > 0)
+            {
+                x1 = Math.min(x1, b.x);
+                y1 = Math.min(y1, b.y);
+                x2 = Math.max(x2, b.x + b.width);
+                y2 = Math.max(y2, b.y + b.height);
+            }
+        }
+        if (x1 > x2)
+            return; //nothing to index
+
+        x0 = x1;
+        y0 = y1;
+        cols = Math.max(1, (int) Math.ceil((x2 - x1) / CELL_SIZE));
+        rows = Math.max(1, (int) Math.ceil((y2 - y1) / CELL_SIZE));
+        while ((long) cols * rows > MAX_CELLS)
+        {
+            cols = (cols + 1) / 2;
+            rows = (rows + 1) / 2;
+        }
+        cellw = (x2 - x1) / cols;
+        cellh = (y2 - y1) / rows;
+
+        //count the boxes in the cells first, then fill the cells
+        final int[] counts = new int[cols * rows];
+        for (int pass = 0; pass < 2; pass++)
+        {
+            if (pass == 1)
+            {
+                cells = new int[counts.length][];
+                for (int i = 0; i < counts.length; i++)
+                {
+                    cells[i] = new int[counts[i]];
+                    counts[i] = 0;
+                }
+            }
+            for (int i = 0; i < bounds.length; i++)
+            {
+                final Rectangle b = bounds[i];
+                if (b.width > 0 && b.height > 0)
+                {
+                    final int c2 = Math.min(cols - 1, col(b.x + b.width));
+                    final int r2 = Math.min(rows - 1, row(b.y + b.height));
+                    final int c1 = Math.min(c2, col(b.x));
+                    for (int r = Math.min(r2, row(b.y)); r <= r2; r++)
+                    {
+                        for (int c = c1; c <= c2; c++)
+                        {
+                            final int ci = r * cols + c;
+                            if (pass == 1)
+                                cells[ci][counts[ci]] = i;
+                            counts[ci]++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int col(float x)
+    {
+        return (cellw > 0) ? (int) Math.floor((x - x0) / cellw) : 0;
+    }
+
+    private int row(float y)
+    {
+        return (cellh > 0) ? (int) Math.floor((y - y0) / cellh) : 0;
+    }
+
+    private int[] getCell(float x, float y)
+    {
+        if (cells == null)
+            return null;
+        final int c = col(x);
+        final int r = row(y);
+        if (c < 0 || c >= cols || r < 0 || r >= rows)
+            return null;
+        return cells[r * cols + c];
+    }
+
+    private void indexElements(ElementBox box)
+    {
+        final Element e = box.getElement();
+        if (e != null)
+        {
+            elements.computeIfAbsent(e, k -> new ArrayList<>(1)).add(box);
+            final String id = e.getAttribute("id");
+            if (!id.isEmpty())
+                ids.putIfAbsent(id, box);
+        }
+        for (int i = 0; i < box.getSubBoxNumber(); i++)
+        {
+            final Box sub = box.getSubBox(i);
+            if (sub instanceof ElementBox)
+                indexElements((ElementBox) sub);
+        }
+    }
+
+    //=========================================================================
+
+    /**
+     * A renderer that records the painting order of the boxes instead of painting them.
+     */
+    static class Recorder implements BoxRenderer
+    {
+        private final List<Box> boxes = new ArrayList<>();
+        private final Map<Box, Boolean> started = new IdentityHashMap<>();
+
+        /**
+         * Obtains the recorded boxes.
+         * @return the boxes in the painting order
+         */
+        List<Box> getBoxes()
+        {
+            return boxes;
+        }
+
+        @Override
+        public void init(Viewport vp)
+        {
+        }
+
+        @Override
+        public void startElementContents(ElementBox elem)
+        {
+            if (started.put(elem, Boolean.TRUE) == null) //unless the background has been rendered already
+                boxes.add(elem);
+        }
+
+        @Override
+        public void finishElementContents(ElementBox elem)
+        {
+        }
+
+        @Override
+        public void renderElementBackground(ElementBox elem)
+        {
+            started.put(elem, Boolean.TRUE);
+            boxes.add(elem);
+        }
+
+        @Override
+        public void renderMarker(ListItemBox elem)
+        {
+        }
+
+        @Override
+        public void renderTextContent(TextBox text)
+        {
+            boxes.add(text);
+        }
+
+        @Override
+        public void renderReplacedContent(ReplacedBox box)
+        {
+            if (box instanceof Box)
+                boxes.add((Box) box);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+}
@@ -69,6 +69,12 @@ public class BrowserConfig
     /** Image loading timeout [ms] */
     private int imageLoadTimeout;
     
+    /** Should we prefetch the images before creating the boxes? */
+    private boolean prefetchImages;
+    
+    /** Should we decode the images lazily? */
+    private boolean lazyImageDecoding;
+    
     /** Should we interpret HTML tags? */
     private boolean useHTML;
     
@@ -78,6 +84,9 @@ public class BrowserConfig
     /** Should the viewport clip its contents? */
     private boolean clipViewport;
     
+    /** Should the rendering be limited to the visible area of the viewport? */
+    private boolean renderVisibleAreaOnly;
+    
     /** Registered DocumentSource implementation */
     private Class<? extends DocumentSource> documentSourceClass;
     
@@ -105,6 +114,7 @@ public class BrowserConfig
         useHTML = true;
         replaceImagesWithAlt = false;
         clipViewport = false;
+        renderVisibleAreaOnly = false;
         documentSourceClass = DefaultDocumentSource.class;
         domSourceClass = DefaultDOMSource.class;
         contentObserver = null;
@@ -183,6 +193,42 @@ public class BrowserConfig
         this.imageLoadTimeout = imageLoadTimeout;
     }
 
+    public boolean getPrefetchImages()
+    {
+        return prefetchImages;
+    }
+
+    /**
+     * Configures whether the images used in the document should be loaded concurrently before
+     * the boxes are created. The loaded images are stored in the image cache so this option
+     * has no effect when no image cache is configured. The image loading timeout is used as
+     * the deadline for the whole prefetch. The default value is {@code false}.
+     * @param prefetchImages {@code true} for enabling the image prefetch
+     * @see ResourcePrefetcher
+     */
+    public void setPrefetchImages(boolean prefetchImages)
+    {
+        this.prefetchImages = prefetchImages;
+    }
+
+    public boolean getLazyImageDecoding()
+    {
+        return lazyImageDecoding;
+    }
+
+    /**
+     * Configures whether the images should be decoded lazily. When enabled, only the image size
+     * is decoded when the image is loaded, which is sufficient for the layout. The pixel data is
+     * decoded when the image is rendered; when the image is displayed in a size smaller than
+     * its original size, a reduced version of the image may be decoded only. The encoded image
+     * data is kept in memory until the image is decoded. The default value is {@code false}.
+     * @param lazyImageDecoding {@code true} for enabling the lazy decoding
+     */
+    public void setLazyImageDecoding(boolean lazyImageDecoding)
+    {
+        this.lazyImageDecoding = lazyImageDecoding;
+    }
+
     /**
      * Registers the content observer that tracks the image loading.
      * @param contentObserver the content observer to be used or {@code null} for none.
@@ -197,11 +243,21 @@ public class BrowserConfig
         return contentObserver;
     }
 
+    /**
+     * Obtains the cache used for storing the loaded images.
+     * @return the image cache or {@code null} when no cache is used
+     */
     public ImageCache getImageCache()
     {
         return imageCache;
     }
 
+    /**
+     * Sets the cache used for storing the loaded images. By default, no cache is used. 
+     * The {@link UnlimitedImageCache} keeps all the images forever; for the long-running applications,
+     * a cache with a limited size such as {@link org.fit.cssbox.awt.BoundedImageCache} should be used.
+     * @param imageCache the image cache or {@code null} for disabling the caching
+     */
     public void setImageCache(ImageCache imageCache) {
         this.imageCache = imageCache;
     }
@@ -256,6 +312,24 @@ public class BrowserConfig
         this.clipViewport = clipViewport;
     }
 
+    public boolean getRenderVisibleAreaOnly()
+    {
+        return renderVisibleAreaOnly;
+    }
+
+    /**
+     * Configures whether the engines should render only the boxes that intersect the visible area
+     * of the viewport (see {@link Viewport#getVisibleRect()}). When set to {@code true}, the whole subtrees
+     * whose painted area does not intersect the visible area are skipped during rendering so that the
+     * rendering cost depends on the visible content only. The rest of the canvas is left empty.
+     * When set to {@code false}, the whole canvas is rendered. The default is {@code false}.
+     * @param renderVisibleAreaOnly The configuration value.
+     */
+    public void setRenderVisibleAreaOnly(boolean renderVisibleAreaOnly)
+    {
+        this.renderVisibleAreaOnly = renderVisibleAreaOnly;
+    }
+
     /**
      * Sets the class used by CSSBox for obtaining documents based on their URLs.
      * @param documentSourceClass the new document source class
@@ -20,7 +20,9 @@
 
 package org.fit.cssbox.layout;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
@@ -75,6 +77,9 @@ abstract public class ElementBox extends Box
     
     public static final CSSProperty.Transform TRANSFORM_NONE = CSSProperty.Transform.NONE;
     
+    /** An empty list of z-indices used for the boxes that do not form a stacking context */
+    private static final int[] NO_ZINDICES = new int[0];
+    
     public static final CSSProperty.Position POS_STATIC = CSSProperty.Position.STATIC;
     public static final CSSProperty.Position POS_RELATIVE = CSSProperty.Position.RELATIVE;
     public static final CSSProperty.Position POS_ABSOLUTE = CSSProperty.Position.ABSOLUTE;
@@ -172,6 +177,15 @@ abstract public class ElementBox extends Box
     /** Minimal absolute bounds. */
     protected Rectangle minAbsBounds;
     
+    /** The cached minimal width of the box content computed from the sub-boxes or -1 when not computed yet */
+    protected float minContentWidth = -1;
+    
+    /** The cached maximal width of the box content computed from the sub-boxes or -1 when not computed yet */
+    protected float maxContentWidth = -1;
+    
+    /** The values of the properties that influence the intrinsic widths as they were during the last check */
+    private float[] widthProperties;
+    
     /** the computed value of line-height */
     protected float lineHeight;
     
@@ -197,6 +211,17 @@ abstract public class ElementBox extends Box
     /** Corresponding stacking context if this box creates one. */
     protected StackingContext scontext;
     
+    /** The absolute bounds of the area that may be painted by this box and its descendants
+     * or {@code null} when the area is not known. */
+    protected Rectangle paintBounds;
+    
+    /** Is this box a descendant of a transformed box? Its contents are painted in the transformed
+     * coordinates then so that they cannot be skipped based on the paint area. */
+    protected boolean paintTransformed;
+    
+    /** The transformation matrix resolved for the current bounds of the box or {@code null} when not resolved yet. */
+    private volatile TransformMatrix transformMatrix;
+    
     //=======================================================================
     
     /**
@@ -273,6 +298,7 @@ abstract public class ElementBox extends Box
             padding = new LengthSet(src.padding);
         if (src.content != null)
             content = new Dimension(src.content);
+        widthProperties = src.widthProperties;
     }
     
     /** Create a new box from the same DOM node in the same context */
@@ -283,6 +309,7 @@ abstract public class ElementBox extends Box
     {
         initBox();
         loadSizes();
+        widthProperties = getWidthProperties();
         
         for (int i = 0; i < getSubBoxNumber(); i++)
             getSubBox(i).initSubtree();
@@ -290,6 +317,31 @@ abstract public class ElementBox extends Box
         computeEfficientMargins();
     }
     
+    @Override
+    public void resetLayout()
+    {
+        super.resetLayout();
+        //remove the boxes created by splitting and restore the complete child list
+        for (Iterator<Box> it = nested.iterator(); it.hasNext(); )
+        {
+            if (it.next().splitted)
+                it.remove();
+        }
+        startChild = 0;
+        endChild = nested.size();
+        //reload the sizes in the same way as initSubtree() does
+        loadSizes();
+        widthProperties = getWidthProperties();
+        clearIntrinsicWidths();
+        for (Box child : nested)
+        {
+            if (child.parent != null && child.parent.splitted)
+                child.parent = this; //the child has been adopted by a split copy of this box
+            child.resetLayout();
+        }
+        computeEfficientMargins();
+    }
+    
     //=======================================================================
     
     /**
@@ -319,6 +371,7 @@ abstract public class ElementBox extends Box
     {
     	style = s;
     	loadBasicStyle();
+    	transformMatrix = null;
     }
     
     /**
@@ -436,6 +489,35 @@ abstract public class ElementBox extends Box
         return whitespace;
     }
     
+    /**
+     * Returns the value of the transform property. The transformations are only applied on the block-level
+     * and replaced elements; the value is {@link #TRANSFORM_NONE} for the remaining ones.
+     * @return the transform property value
+     */
+    public CSSProperty.Transform getTransform()
+    {
+        return transform;
+    }
+    
+    /**
+     * Obtains the transformation matrix resolved by the renderer for this box.
+     * @return the resolved matrix or {@code null} when the matrix has not been resolved yet
+     */
+    public TransformMatrix getTransformMatrix()
+    {
+        return transformMatrix;
+    }
+    
+    /**
+     * Stores the transformation matrix resolved by the renderer for this box so that it may be reused
+     * while the box bounds remain the same.
+     * @param matrix the resolved matrix
+     */
+    public void setTransformMatrix(TransformMatrix matrix)
+    {
+        transformMatrix = matrix;
+    }
+    
     /**
      * Checks whether the whitespaces should be collapsed within in the element according to its style.
      * @return <code>true</code> if the whitespace sequences should be collapsed.
@@ -544,6 +626,7 @@ abstract public class ElementBox extends Box
         //collapse initiall white spaces when necessary
         if (last != null && last.collapsesSpaces() && last.endsWithWhitespace())
             box.setIgnoreInitialWhitespace(true);
+        invalidateIntrinsicWidths();
     }
     
     /**
@@ -553,7 +636,10 @@ abstract public class ElementBox extends Box
     public void removeSubBox(Box box)
     {
         if (nested.remove(box))
+        {
             endChild--;
+            invalidateIntrinsicWidths();
+        }
     }
     
     /**
@@ -563,6 +649,7 @@ abstract public class ElementBox extends Box
     {
         nested.removeAllElements();
         endChild = 0;
+        invalidateIntrinsicWidths();
     }
     
     /**
@@ -575,6 +662,7 @@ abstract public class ElementBox extends Box
         int pos = nested.indexOf(where);
         nested.insertElementAt(what, pos);
         endChild++;
+        invalidateIntrinsicWidths();
     }
 
     /**
@@ -587,6 +675,7 @@ abstract public class ElementBox extends Box
         int pos = nested.indexOf(where);
         nested.insertElementAt(what, pos+1);
         endChild++;
+        invalidateIntrinsicWidths();
     }
 
     /**
@@ -598,6 +687,7 @@ abstract public class ElementBox extends Box
     {
         nested.insertElementAt(what, index);
         endChild++;
+        invalidateIntrinsicWidths();
     }
     
     /**
@@ -760,6 +850,7 @@ abstract public class ElementBox extends Box
     public void setStartChild(int index)
     {
         startChild = index;
+        invalidateIntrinsicWidths();
     }
     
     /**
@@ -776,6 +867,7 @@ abstract public class ElementBox extends Box
     public void setEndChild(int index)
     {
         endChild = index;
+        invalidateIntrinsicWidths();
     }
     
     /**
@@ -1018,7 +1110,7 @@ abstract public class ElementBox extends Box
     {
         if (isDisplayed() && isDeclaredVisible())
         {
-            Integer[] clevels = formsStackingContext() ? getStackingContext().getZIndices() : new Integer[0]; 
+            final int[] clevels = formsStackingContext() ? getStackingContext().getZIndices() : NO_ZINDICES; 
             
             //1.the background and borders of the element forming the stacking context.
             if (this.formsStackingContext() && this.rendersBackground())
@@ -1061,15 +1153,18 @@ abstract public class ElementBox extends Box
     }
     
     /**
-     * Draws all the sub-boxes in the given stage.
+     * Draws all the sub-boxes in the given stage. The sub-boxes that may not paint anything
+     * in the current viewport paint area are skipped.
      * @param turn The current drawing stage.
      */
     protected void drawChildren(DrawStage turn)
     {
+        final Rectangle area = getChildPaintArea();
         for (int i = startChild; i < endChild; i++)
         {
             Box subbox = getSubBox(i);
-            subbox.draw(turn);
+            if (area == null || subbox.mayPaintIn(area))
+                subbox.draw(turn);
         }
     }
     
@@ -1079,16 +1174,90 @@ abstract public class ElementBox extends Box
      */
     protected void drawChildContexts(int zindex)
     {
-        Vector<ElementBox> list = getStackingContext().getElementsForZIndex(zindex);
-        if (list != null)
+        final StackingContext context = getStackingContext();
+        final int level = context.getLevel(zindex);
+        if (level >= 0)
         {
-            for (ElementBox elem : list)
+            final Rectangle area = getChildPaintArea();
+            final ElementBox[] elems = context.getElements();
+            for (int i = context.getLevelStart(level); i < context.getLevelEnd(level); i++)
             {
-                elem.drawStackingContext(!elem.hasZIndex());
+                final ElementBox elem = elems[i];
+                if (area == null || elem.mayPaintIn(area))
+                    elem.drawStackingContext(!elem.hasZIndex());
             }
         }
     }
     
+    @Override
+    public boolean mayPaintIn(Rectangle area)
+    {
+        return paintBounds == null || touches(paintBounds, area);
+    }
+    
+    /**
+     * Obtains the paint area used for skipping the child boxes during the drawing.
+     * @return the current viewport paint area or {@code null} when the child boxes should not be skipped
+     * (the whole canvas is painted or the children are painted in transformed coordinates).
+     */
+    protected Rectangle getChildPaintArea()
+    {
+        if (paintTransformed || transform != TRANSFORM_NONE)
+            return null;
+        else
+            return getViewport().getPaintArea();
+    }
+    
+    /**
+     * Obtains the absolute bounds of the area that may be painted by this box and its descendants.
+     * The bounds are computed by {@link #computePaintBounds()} after the absolute positions are known.
+     * @return the painted area bounds or {@code null} when the area is not known or unlimited
+     * (e.g. because of the transformations).
+     */
+    public Rectangle getPaintBounds()
+    {
+        return paintBounds;
+    }
+    
+    /**
+     * Recursively computes the bounds of the area that may be painted by this box and its descendants
+     * from their absolute border bounds. This must be called after the absolute positions of the whole
+     * subtree have been computed.
+     */
+    protected void computePaintBounds()
+    {
+        //the transformed boxes may paint anywhere
+        Rectangle ret = (transform == TRANSFORM_NONE) ? new Rectangle(getAbsoluteBorderBounds()) : null;
+        for (int i = 0; i < getSubBoxNumber(); i++)
+        {
+            final Box sub = getSubBox(i);
+            final Rectangle sb;
+            if (sub instanceof ElementBox)
+            {
+                ((ElementBox) sub).paintTransformed = paintTransformed || transform != TRANSFORM_NONE;
+                ((ElementBox) sub).computePaintBounds();
+                sb = ((ElementBox) sub).paintBounds;
+            }
+            else
+                sb = sub.getAbsoluteBounds();
+            if (ret != null)
+            {
+                if (sb == null)
+                    ret = null; //unlimited
+                else
+                {
+                    final float x2 = Math.max(ret.x + ret.width, sb.x + sb.width);
+                    final float y2 = Math.max(ret.y + ret.height, sb.y + sb.height);
+                    ret.x = Math.min(ret.x, sb.x);
+                    ret.y = Math.min(ret.y, sb.y);
+                    ret.width = x2 - ret.x;
+                    ret.height = y2 - ret.y;
+                }
+            }
+        }
+        paintBounds = ret;
+    }
+    
     //=======================================================================
     
     /**
@@ -1122,6 +1291,7 @@ abstract public class ElementBox extends Box
                 float oldw = block.getContentWidth();
                 float oldh = block.getContentHeight();
                 block.updateSizes();
+                block.checkWidthProperties();
                 block.setSize(block.totalWidth(), block.totalHeight());
                 if (block.getContentWidth() != oldw || block.getContentHeight() != oldh)
                 {
@@ -1133,12 +1303,60 @@ abstract public class ElementBox extends Box
                 //always update the non-block elements
                 ElementBox eb = (ElementBox) child;
                 eb.updateSizes();
+                eb.checkWidthProperties();
                 eb.setSize(eb.totalWidth(), eb.totalHeight());
                 eb.updateChildSizes();
             }
         }
     }
     
+    /**
+     * Discards the cached minimal and maximal content widths of this box and of all its ancestors.
+     * Should be called whenever the content of the box changes in a way that may influence its
+     * minimal or maximal width.
+     */
+    public void invalidateIntrinsicWidths()
+    {
+        for (ElementBox box = this; box != null; box = box.getParent())
+            box.clearIntrinsicWidths();
+    }
+    
+    /**
+     * Discards the cached minimal and maximal content widths of this box only. The subclasses
+     * that cache further values derived from their content should discard them as well.
+     */
+    protected void clearIntrinsicWidths()
+    {
+        minContentWidth = -1;
+        maxContentWidth = -1;
+    }
+    
+    /**
+     * Checks whether the properties that influence the minimal and maximal width of this box have changed
+     * since the last check. If so, the cached content widths of the ancestors are discarded. Should be called
+     * after the sizes of the box have been recomputed.
+     */
+    protected void checkWidthProperties()
+    {
+        final float[] props = getWidthProperties();
+        if (!Arrays.equals(props, widthProperties))
+        {
+            widthProperties = props;
+            if (getParent() != null)
+                getParent().invalidateIntrinsicWidths();
+        }
+    }
+    
+    /**
+     * Obtains the values of the box properties (not including the box content) that are used for computing
+     * the minimal and maximal width of the box.
+     * @return the property values
+     */
+    protected float[] getWidthProperties()
+    {
+        return new float[] { margin.left, margin.right, border.left, border.right, padding.left, padding.right };
+    }
+    
     /**
      * Computes the number of expansion points (generally spaces between words) that can be used
      * for extending the box width
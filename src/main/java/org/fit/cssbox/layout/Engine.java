@@ -47,6 +47,7 @@ public abstract class Engine
     private BrowserConfig config;
     private boolean autoSizeUpdate;
     private boolean autoMediaUpdate;
+    private ResourcePrefetcher prefetcher; //created when the image prefetch is enabled
     
     
     /** 
@@ -98,6 +99,11 @@ public abstract class Engine
     public void setConfig(BrowserConfig config)
     {
         this.config = config;
+        if (prefetcher != null)
+        {
+            prefetcher.shutdown(); //bound to the previous configuration
+            prefetcher = null;
+        }
     }
 
     /**
@@ -140,6 +146,25 @@ public abstract class Engine
         this.root = root;
     }
 
+    /**
+     * Prepares the engine for rendering another document. The current layout is discarded and
+     * the engine configuration (the browser configuration and the automatic size and media update
+     * settings) is preserved. The output media created for the previous document may be reused for
+     * the next one so that the results obtained for the previous document should not be used
+     * after calling this method.
+     * @param root the &lt;body&gt; element of the next document or {@code null} for just releasing
+     * the current document
+     * @param decoder the CSS decoder used to compute the style of the next document
+     * @param baseurl the base URL of the next document
+     */
+    public void reset(org.w3c.dom.Element root, DOMAnalyzer decoder, URL baseurl)
+    {
+        this.root = root;
+        this.decoder = decoder;
+        this.baseurl = baseurl;
+        this.viewport = null;
+    }
+    
     /**
      * Gets the DOMAnalyzer used for decoding the CSS styles.
      * @return the used DOMAnalyzer
@@ -190,7 +215,10 @@ public abstract class Engine
      * of the resulting page is greater than the specified one (e.g. there is an explicit width or height
      * specified for the resulting page), the total canvas size is updated automatically. The resulting
      * layout is may be optionally rendered using the associated renderer obtained
-     * using #{@link Engine#getRenderer()}.
+     * using #{@link Engine#getRenderer()}. When the automatic media update is enabled, the element
+     * styles affected by the new viewport size or by the newly added style sheets are updated
+     * automatically; {@link DOMAnalyzer#recomputeStyles()} must be called explicitly when the DOM
+     * tree has been modified since the last layout.
      * @param dim the total canvas size 
      * @param visibleRect the viewport (the visible area) size and position
      * @param performRendering when set to true, the page is rendered using the associated renderer
@@ -202,14 +230,22 @@ public abstract class Engine
         if (autoMediaUpdate)
         {
             decoder.getMediaSpec().setDimensions(visibleRect.width, visibleRect.height);
-            decoder.recomputeStyles();
+            decoder.updateStyles();
+        }
+        
+        VisualContext ctx = createVisualContext(config, decoder.getFontTable());
+        if (config.getPrefetchImages())
+        {
+            log.trace("Prefetching images");
+            if (prefetcher == null)
+                prefetcher = new ResourcePrefetcher(config);
+            prefetcher.prefetchImages(decoder, baseurl, ctx.getImageLoader());
         }
         
         log.trace("Creating boxes");
         BoxFactory factory = new BoxFactory(decoder, baseurl);
         factory.setConfig(config);
         factory.reset();
-        VisualContext ctx = createVisualContext(config, decoder.getFontTable());
         viewport = factory.createViewportTree(root, ctx, dim.width, dim.height);
         log.trace("We have " + factory.next_order + " boxes");
         viewport.setVisibleRect(new Rectangle(visibleRect.x, visibleRect.y, visibleRect.width, visibleRect.height));
@@ -241,6 +277,77 @@ public abstract class Engine
         }
     }
 
+    /**
+     * Updates the existing document layout for a new viewport size where the visible area size
+     * is equal to the whole canvas. See {@link #updateLayout(Dimension, Rectangle, boolean)}.
+     * @param dim the new viewport size
+     */
+    public void updateLayout(Dimension dim)
+    {
+        updateLayout(dim, new Rectangle(dim), true);
+    }
+
+    /**
+     * Updates the existing document layout for a new canvas and viewport size. Unlike
+     * {@link #createLayout(Dimension, Rectangle, boolean)}, the box tree created previously is
+     * reused and only the layout and the absolute positions are recomputed. The box tree is
+     * created again only when there is no layout yet, when the new size changes the style of some
+     * elements because of the media queries used in the document style sheets or when some boxes use the
+     * viewport-relative units (vw, vh, vmin, vmax). When the automatic media update is enabled, the box
+     * tree is created again as well when new style sheets have been added or when
+     * {@link DOMAnalyzer#recomputeStyles()} has been called after a modification of the DOM tree.
+     * Without the automatic media update, the style sheets and the DOM tree are supposed to remain
+     * unchanged since the last layout; {@link #createLayout(Dimension, Rectangle, boolean)} should be
+     * used otherwise.
+     * @param dim the total canvas size
+     * @param visibleRect the viewport (the visible area) size and position
+     * @param performRendering when set to true, the page is rendered using the associated renderer
+     */
+    public void updateLayout(Dimension dim, Rectangle visibleRect, boolean performRendering)
+    {
+        if (viewport == null || viewport.isViewportUnitsUsed())
+        {
+            createLayout(dim, visibleRect, performRendering);
+            return;
+        }
+        if (autoMediaUpdate && decoder.updateMediaDimensions(visibleRect.width, visibleRect.height))
+        {
+            log.trace("Element styles changed, re-creating boxes");
+            createLayout(dim, visibleRect, performRendering);
+            return;
+        }
+
+        initOutputMedia(dim.width, dim.height);
+        viewport.setVisibleRect(new Rectangle(visibleRect.x, visibleRect.y, visibleRect.width, visibleRect.height));
+        viewport.setSize(dim.width, dim.height);
+        viewport.resetLayout();
+
+        log.trace("Re-layout for "+dim.width+"px");
+        viewport.doLayout(dim.width, true, true);
+        log.trace("Resulting size: " + viewport.getWidth() + "x" + viewport.getHeight() + " (" + viewport + ")");
+
+        if (autoSizeUpdate)
+        {
+            log.trace("Updating viewport size");
+            viewport.updateBounds(new Dimension(dim.width, dim.height));
+            log.trace("Resulting size: " + viewport.getWidth() + "x" + viewport.getHeight() + " (" + viewport + ")");
+        }
+
+        if (viewport.getWidth() > dim.width || viewport.getHeight() > dim.height)
+        {
+            initOutputMedia(Math.max(viewport.getWidth(), dim.width), Math.max(viewport.getHeight(), dim.height));
+        }
+
+        log.trace("Positioning for "+viewport.getWidth()+"x"+viewport.getHeight()+"px");
+        viewport.absolutePositions();
+
+        if (performRendering)
+        {
+            log.trace("Drawing");
+            renderViewport(viewport);
+        }
+    }
+
     /**
      * Recomputes the layout according to a new visible viewport and redraws the layout.
      * @param visibleRect the new viewport position and size
@@ -268,7 +375,8 @@ public abstract class Engine
     {
         try {
             final BoxRenderer r = getRenderer();
-            viewport.draw(r);
+            viewport.setRenderer(r);
+            viewport.draw(r, config.getRenderVisibleAreaOnly() ? viewport.getVisibleRect() : null);
             r.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
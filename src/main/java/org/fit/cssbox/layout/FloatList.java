@@ -21,10 +21,21 @@
 package org.fit.cssbox.layout;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * A list of floating boxes
+ * A list of floating boxes. 
+ * 
+ * In addition to the list, the vertical extents of the boxes are indexed as a sequence of bands: the Y axis
+ * is split at the top and bottom edges of the boxes and for each band, the right edge of the widest box
+ * and its bottom edge are recorded. The widths and the next Y coordinates are then obtained by
+ * finding the band for the given Y coordinate. The box bounds are indexed when the boxes are added
+ * to the list. When a box that is already contained in the list is laid out again (e.g. when a table
+ * cell is laid out repeatedly with the same float lists), the index is rebuilt from the current bounds
+ * of all the boxes when the box is added again or when {@link #update(BlockBox)} is called.
  *
  * @author  radek
  */
@@ -34,6 +45,12 @@ public class FloatList
     private List<BlockBox> floats;
     private BlockBox bottomBox = null; //Bottom-most box.
     private BlockBox lastBox = null; //last box inserted. New boxes shouldn't be placed above this box.
+    /** The bands indexed by their top Y coordinate. Each band ends where the next one starts. */
+    private TreeMap<Float, Band> bands;
+    /** Maximal bottom edges of the boxes for their containing blocks (all boxes and the visible ones) */
+    private Map<ElementBox, float[]> ownerMaxY;
+    /** The boxes whose bounds have been indexed */
+    private Map<BlockBox, Boolean> indexed;
     
     /**
      * Creates a list of floating boxes for some owner block.
@@ -43,6 +60,9 @@ public class FloatList
     {
     	owner = ownerBox;
         floats = new ArrayList<>();
+        bands = new TreeMap<>();
+        ownerMaxY = new IdentityHashMap<>();
+        indexed = new IdentityHashMap<>();
     }
     
     /**
@@ -65,6 +85,20 @@ public class FloatList
             bottomBox = box;
         if (box.getBounds().y > getLastY())
             lastBox = box;
+        if (indexed.put(box, Boolean.TRUE) == null)
+            indexBox(box);
+        else
+            rebuildIndex(); //the box has been laid out again, its previous bounds are not valid anymore
+    }
+    
+    /**
+     * Updates the index after the bounds of a box contained in the list have been changed by laying out the box again.
+     * @param box the modified box
+     */
+    public void update(BlockBox box)
+    {
+        if (indexed.containsKey(box))
+            rebuildIndex();
     }
     
     /**
@@ -117,18 +151,8 @@ public class FloatList
      */
     public float getWidth(float y)
     {
-        float maxx = 0;
-        for (int i = 0; i < size(); i++)
-        {
-            Box box = getBox(i);
-            if (box.getBounds().y <= y &&
-                box.getBounds().y + box.getBounds().height > y)
-            {
-                float wx = box.getBounds().x + box.getBounds().width;
-                if (wx > maxx) maxx = wx;
-            }
-        }
-        return maxx;
+        final Band band = getBand(y);
+        return (band == null) ? 0 : band.maxx;
     }
     
     /** 
@@ -139,23 +163,9 @@ public class FloatList
      */
     public float getNextY(float y)
     {
-        float maxx = 0;
-        float nexty = -1;
-        for (int i = 0; i < size(); i++) //find the bottom of the rightmost box at this Y coordinate
-        {
-            Box box = getBox(i);
-            if (box.getBounds().y <= y &&
-                box.getBounds().y + box.getBounds().height > y)
-            {
-                float wx = box.getBounds().x + box.getBounds().width;
-                if (wx > maxx) 
-                {
-                    maxx = wx;
-                    nexty = box.getBounds().y + box.getBounds().height;
-                }
-            }
-        }
-        return nexty;
+        //the bottom of the rightmost box at this Y coordinate
+        final Band band = getBand(y);
+        return (band == null) ? -1 : band.nexty;
     }
 
     /**
@@ -167,17 +177,11 @@ public class FloatList
      */
     public float getMaxYForOwner(BlockBox owner, boolean requireVisible)
     {
-        float maxy = 0;
-        for (int i = 0; i < size(); i++)
-        {
-            Box box = getBox(i);
-            if ((!requireVisible || box.isDeclaredVisible()) && box.getContainingBlockBox() == owner)
-            {
-                float ny = box.bounds.y + box.bounds.height; //TODO: -1 here?
-                if (ny > maxy) maxy = ny;
-            }
-        }
-        return maxy;
+        final float[] maxy = ownerMaxY.get(owner);
+        if (maxy == null)
+            return 0;
+        else
+            return requireVisible ? maxy[1] : maxy[0]; //TODO: -1 here?
     }
     
     /**
@@ -204,5 +208,100 @@ public class FloatList
         return fy;
     }
     
+    //=========================================================================
+    
+    /**
+     * Finds the band that contains the given Y coordinate.
+     * @param y the Y coordinate
+     * @return the band or {@code null} when no box is placed at the given Y coordinate
+     */
+    private Band getBand(float y)
+    {
+        final Map.Entry<Float, Band> entry = bands.floorEntry(y + 0.0f);
+        return (entry == null) ? null : entry.getValue();
+    }
+    
+    /**
+     * Adds the current bounds of a box to the index.
+     * @param box the box to be indexed
+     */
+    private void indexBox(BlockBox box)
+    {
+        addBand(box.getBounds().y, box.getBounds().y + box.getBounds().height, box.getBounds().x + box.getBounds().width);
+        
+        final float ny = box.bounds.y + box.bounds.height;
+        final float[] maxy = ownerMaxY.computeIfAbsent(box.getContainingBlockBox(), k -> new float[2]);
+        if (ny > maxy[0]) maxy[0] = ny;
+        if (box.isDeclaredVisible() && ny > maxy[1]) maxy[1] = ny;
+    }
+    
+    /**
+     * Recreates the index from the current bounds of all the boxes in the list order.
+     */
+    private void rebuildIndex()
+    {
+        bands.clear();
+        ownerMaxY.clear();
+        for (BlockBox box : floats)
+            indexBox(box);
+    }
+    
+    /**
+     * Adds the vertical extent of a box to the bands.
+     * @param y1 the top edge of the box
+     * @param y2 the bottom edge of the box
+     * @param wx the right edge of the box
+     */
+    private void addBand(float y1, float y2, float wx)
+    {
+        if (y2 > y1)
+        {
+            //adding 0.0f avoids -0.0f keys that are different from 0.0f for the map
+            final Float top = y1 + 0.0f;
+            final Float bottom = y2 + 0.0f;
+            splitBand(top);
+            splitBand(bottom);
+            //the earlier boxes take precedence when they are equally wide
+            for (Band band : bands.subMap(top, true, bottom, false).values())
+            {
+                if (wx > band.maxx)
+                {
+                    band.maxx = wx;
+                    band.nexty = y2;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Ensures that a band starts at the given Y coordinate. The band that contains the coordinate
+     * is split in two if necessary.
+     * @param y the Y coordinate
+     */
+    private void splitBand(Float y)
+    {
+        if (!bands.containsKey(y))
+        {
+            final Band src = getBand(y);
+            bands.put(y, (src == null) ? new Band(0, -1) : new Band(src.maxx, src.nexty));
+        }
+    }
+    
+    /**
+     * A part of the Y axis where the same floating boxes are placed.
+     */
+    private static class Band
+    {
+        /** The right edge of the rightmost box */
+        public float maxx;
+        /** The bottom edge of the rightmost box or -1 when there is no box */
+        public float nexty;
+        
+        public Band(float maxx, float nexty)
+        {
+            this.maxx = maxx;
+            this.nexty = nexty;
+        }
+    }
     
 }
@@ -71,6 +71,12 @@ public class InlineReplacedBox extends InlineBox implements ReplacedBox
         return boxh;
     }
 
+    @Override
+    protected float[] getWidthProperties()
+    {
+        return new float[] { margin.left, margin.right, border.left, border.right, padding.left, padding.right, boxw };
+    }
+
     @Override
     public float getMaximalWidth()
     {
@@ -111,6 +111,22 @@ public class ListItemBox extends BlockBox
     	}
     }
     
+    @Override
+    protected void computePaintBounds()
+    {
+        super.computePaintBounds();
+        if (paintBounds != null && (hasVisibleBullet() || image != null))
+        {
+            //the marker is painted outside of the box on the left
+            float mw = 2 * ctx.getEm() + ctx.stringWidth(getMarkerText());
+            if (image != null && image.getImage() != null)
+                mw = Math.max(mw, ctx.getEm() + image.getImage().getWidth());
+            final float x1 = Math.min(paintBounds.x, getAbsoluteContentX() - mw);
+            paintBounds.width += paintBounds.x - x1;
+            paintBounds.x = x1;
+        }
+    }
+    
     /**
      * Checks whether the list item has a visible bullet.
      * @return <code>true</code> when the bullet type is set to other value than <code>none</code>.
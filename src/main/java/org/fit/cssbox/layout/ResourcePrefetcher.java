@@ -0,0 +1,449 @@
+/*
+ * ResourcePrefetcher.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 15:21:08 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.fit.cssbox.css.DOMAnalyzer;
+import org.fit.cssbox.css.HTMLNorm;
+import org.fit.cssbox.io.DocumentSourceNetworkProcessor;
+import org.fit.net.DataURLHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.CSSProperty;
+import cz.vutbr.web.css.MediaQuery;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NetworkProcessor;
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector.PseudoElementType;
+import cz.vutbr.web.css.TermURI;
+import cz.vutbr.web.csskit.antlr4.CSSParserFactory;
+
+/**
+ * Fetches the external resources used by a document concurrently before the layout is created.
+ * <p>
+ * The style sheets referenced by the <code>&lt;link&gt;</code> elements and the <code>@import</code> rules
+ * are fetched by {@link #prefetchStyleSheets(DOMAnalyzer)} before the style sheets are parsed by
+ * {@link DOMAnalyzer#getStyleSheets()}; this must be done by the application that creates the analyzer
+ * since the style sheets are already loaded when the {@link Engine} is created. The images used by the <code>&lt;img&gt;</code> elements and
+ * the CSS background and list marker images are loaded by {@link #prefetchImages(DOMAnalyzer, URL, ImageLoader)}
+ * after the styles are available; the loaded images are stored in the image cache configured in
+ * {@link BrowserConfig#setImageCache(ImageCache)} and the box creation obtains them from the cache later.
+ * <p>
+ * The number of concurrent fetches is limited by the number of threads. The image prefetching waits
+ * for the images until the deadline given by {@link BrowserConfig#getImageLoadTimeout()} only; the images
+ * that have not been loaded until then are obtained during the box creation as usual.
+ * <p>
+ * The fetches may be also started while the document is still being parsed using {@link #prefetchStyleSheet(URL)},
+ * {@link #prefetchStyleImports(String, URL)} and {@link #prefetchImage(URL, ImageLoader)}
+ * (see {@link org.fit.cssbox.io.StreamingDOMSource}). The style sheets fetched this way are obtained using
+ * the document source registered in the browser configuration and they are provided to the analyzer
+ * by a subsequent {@link #prefetchStyleSheets(DOMAnalyzer)} call. In this case, a separate prefetcher
+ * instance should be used for each document.
+ *
+ * @author agent
+ */
+public class ResourcePrefetcher
+{
+    private static Logger log = LoggerFactory.getLogger(ResourcePrefetcher.class);
+
+    /** The default maximal number of concurrent fetches */
+    public static final int DEFAULT_THREADS = 8;
+
+    private static final Pattern IMPORT = Pattern.compile("@import\\s+(?:url\\(\\s*)?[\"']?([^\"')\\s;]+)", Pattern.CASE_INSENSITIVE);
+
+    private BrowserConfig config;
+    private ThreadPoolExecutor executor;
+    /** The processor used for the style sheets fetched during the document parsing or {@code null} */
+    private PrefetchProcessor streamProcessor;
+
+
+    /**
+     * Creates a new prefetcher with the default number of threads.
+     * @param config the browser configuration
+     */
+    public ResourcePrefetcher(BrowserConfig config)
+    {
+        this(config, DEFAULT_THREADS);
+    }
+
+    /**
+     * Creates a new prefetcher.
+     * @param config the browser configuration
+     * @param threads the maximal number of concurrent fetches
+     */
+    public ResourcePrefetcher(BrowserConfig config, int threads)
+    {
+        this.config = config;
+        executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread t = new Thread(r, "cssbox-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true); //the idle threads are released even without shutdown()
+    }
+
+    /**
+     * Stops the fetching threads. The fetches that have not started yet are not performed.
+     * The prefetcher should not be used after this call.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts fetching the style sheets referenced from the document and installs a network processor
+     * to the analyzer that provides the fetched style sheets. This method does not wait for the fetches
+     * to finish; the style sheet parsing waits for the individual style sheets when necessary.
+     * It must be called before {@link DOMAnalyzer#getStyleSheets()}; the {@link Engine} does not call
+     * this method since the style sheets are already loaded when the engine is created.
+     * @param decoder the DOM analyzer of the document
+     */
+    public void prefetchStyleSheets(DOMAnalyzer decoder)
+    {
+        PrefetchProcessor processor;
+        synchronized (this)
+        {
+            processor = streamProcessor; //reuse the sheets fetched during the parsing if any
+        }
+        if (processor == null)
+            processor = new PrefetchProcessor(decoder.getNetworkProcessor());
+        scanStyleSheets(decoder.getRoot(), decoder.getBaseURL(), decoder.getMediaSpec(), processor);
+        decoder.setNetworkProcessor(processor);
+    }
+
+    /**
+     * Loads the images used in the document concurrently and stores them in the configured image cache.
+     * Waits until all the images are loaded or until the deadline given by {@link BrowserConfig#getImageLoadTimeout()}
+     * passes. When no image cache is configured, nothing is done since there would be no way of using
+     * the loaded images.
+     * @param decoder the DOM analyzer of the document with the style sheets loaded
+     * @param baseurl the base URL of the document
+     * @param loader the image loader used by the engine
+     * @return the number of images loaded before the deadline
+     */
+    public int prefetchImages(DOMAnalyzer decoder, URL baseurl, ImageLoader loader)
+    {
+        if (config.getImageCache() == null)
+        {
+            log.debug("No image cache configured, skipping image prefetch");
+            return 0;
+        }
+        final long deadline = System.currentTimeMillis() + config.getImageLoadTimeout();
+        final Map<String, URL> urls = new LinkedHashMap<>();
+        scanImages(decoder.getRoot(), decoder, baseurl, urls);
+
+        final List<Future<ContentImage>> loads = new ArrayList<>(urls.size());
+        for (URL url : urls.values())
+            loads.add(executor.submit(() -> loader.loadImage(url)));
+
+        int cnt = 0;
+        boolean waiting = true;
+        for (Future<ContentImage> load : loads)
+        {
+            if (waiting)
+            {
+                try {
+                    load.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    cnt++;
+                } catch (TimeoutException e) {
+                    log.debug("Image prefetch deadline passed");
+                    waiting = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    waiting = false;
+                } catch (ExecutionException e) {
+                    log.warn("Image prefetch failed: " + e.getMessage());
+                }
+            }
+            if (!waiting)
+                load.cancel(false); //drop the loads that have not started yet; the running ones are joined by the box creation
+        }
+        log.debug("Prefetched {} of {} images", cnt, loads.size());
+        return cnt;
+    }
+
+    /**
+     * Starts fetching a single style sheet and the style sheets imported by it. The style sheet is obtained
+     * using the document source registered in the browser configuration. This method may be used
+     * during the document parsing, before the DOM analyzer is available.
+     * @param url the style sheet URL
+     */
+    public void prefetchStyleSheet(URL url)
+    {
+        getStreamProcessor().prefetch(url);
+    }
+
+    /**
+     * Starts fetching the style sheets imported by an embedded style sheet. This method may be used
+     * during the document parsing, before the DOM analyzer is available.
+     * @param css the embedded style sheet source code
+     * @param base the base URL of the style sheet
+     */
+    public void prefetchStyleImports(String css, URL base)
+    {
+        getStreamProcessor().prefetchImports(css, base);
+    }
+
+    /**
+     * Starts loading a single image used by an <code>&lt;img&gt;</code> element. The loaded image
+     * is stored in the configured image cache. When no image cache is configured or the images
+     * are not going to be loaded according to the configuration, nothing is done. This method does
+     * not wait for the image to be loaded.
+     * @param url the image URL
+     * @param loader the image loader to be used
+     */
+    public void prefetchImage(URL url, ImageLoader loader)
+    {
+        if (config.getImageCache() != null && config.getUseHTML() && config.getLoadImages()
+                && !config.getReplaceImagesWithAlt())
+        {
+            executor.submit(() -> loader.loadImage(url));
+        }
+    }
+
+    /**
+     * Checks whether a <code>&lt;link&gt;</code> element refers to a style sheet that is used for the given media.
+     * The rules are the same as the ones used by jStyleParser when loading the style sheets in
+     * {@link CSSFactory#getUsedStyles(org.w3c.dom.Document, String, URL, MediaSpec)}: the {@code rel} attribute
+     * must contain {@code stylesheet}, the {@code type} attribute must be missing or {@code text/css} and
+     * the {@code media} attribute must match the media specification. A missing or empty {@code media}
+     * attribute is accepted when the media specification matches an empty media query.
+     * @param rel the value of the {@code rel} attribute or {@code null}
+     * @param type the value of the {@code type} attribute or {@code null}
+     * @param media the value of the {@code media} attribute or {@code null}
+     * @param spec the media specification used for the document
+     * @return {@code true} when the style sheet is going to be used
+     */
+    public static boolean isUsedStyleSheetLink(String rel, String type, String media, MediaSpec spec)
+    {
+        if (rel == null || !rel.toLowerCase().contains("stylesheet"))
+            return false;
+        if (type != null && !type.isEmpty() && !"text/css".equalsIgnoreCase(type))
+            return false;
+        if (media != null && !media.trim().isEmpty())
+        {
+            final List<MediaQuery> queries = CSSParserFactory.getInstance().parseMediaQuery(media.trim());
+            return queries != null && spec.matchesOneOf(queries);
+        }
+        else
+            return spec.matchesEmpty();
+    }
+
+    //=========================================================================
+
+    private synchronized PrefetchProcessor getStreamProcessor()
+    {
+        if (streamProcessor == null)
+            streamProcessor = new PrefetchProcessor(new DocumentSourceNetworkProcessor(config));
+        return streamProcessor;
+    }
+
+    private void scanStyleSheets(Element e, URL base, MediaSpec media, PrefetchProcessor processor)
+    {
+        final String name = e.getNodeName();
+        if ("link".equalsIgnoreCase(name)
+                && isUsedStyleSheetLink(HTMLNorm.getAttribute(e, "rel"), HTMLNorm.getAttribute(e, "type"),
+                        HTMLNorm.getAttribute(e, "media"), media)
+                && !HTMLNorm.getAttribute(e, "href").isEmpty())
+        {
+            try {
+                processor.prefetch(DataURLHandler.createURL(base, HTMLNorm.getAttribute(e, "href")));
+            } catch (MalformedURLException ex) {
+                log.warn("Malformed style sheet URL: " + ex.getMessage());
+            }
+        }
+        else if ("style".equalsIgnoreCase(name))
+        {
+            processor.prefetchImports(e.getTextContent(), base);
+        }
+
+        for (Node child = e.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (child.getNodeType() == Node.ELEMENT_NODE)
+                scanStyleSheets((Element) child, base, media, processor);
+        }
+    }
+
+    private void scanImages(Element e, DOMAnalyzer decoder, URL baseurl, Map<String, URL> urls)
+    {
+        final NodeData style = decoder.getElementStyleInherited(e);
+        if (style != null && style.getProperty("display") == CSSProperty.Display.NONE)
+            return; //no boxes will be created for the subtree
+
+        if (config.getUseHTML() && config.getLoadImages() && !config.getReplaceImagesWithAlt()
+                && "img".equalsIgnoreCase(e.getNodeName()) && !HTMLNorm.getAttribute(e, "src").isEmpty())
+        {
+            try {
+                addUrl(DataURLHandler.createURL(baseurl, HTMLNorm.getAttribute(e, "src")), urls);
+            } catch (MalformedURLException ex) {
+                //the box creation will report the error
+            }
+        }
+        if (config.getLoadBackgroundImages())
+        {
+            scanStyleImages(style, urls);
+            for (PseudoElementType pseudo : new PseudoElementType[] {PseudoElementType.BEFORE, PseudoElementType.AFTER})
+            {
+                if (decoder.hasPseudoDef(e, pseudo))
+                    scanStyleImages(decoder.getElementStyleInherited(e, pseudo), urls);
+            }
+        }
+
+        for (Node child = e.getFirstChild(); child != null; child = child.getNextSibling())
+        {
+            if (child.getNodeType() == Node.ELEMENT_NODE)
+                scanImages((Element) child, decoder, baseurl, urls);
+        }
+    }
+
+    private void scanStyleImages(NodeData style, Map<String, URL> urls)
+    {
+        if (style == null)
+            return;
+        final int count = style.getListSize("background-image", true);
+        for (int i = 0; i < count; i++)
+        {
+            if (style.getProperty("background-image", i) == CSSProperty.BackgroundImage.uri)
+                addUrl(style.getValue(TermURI.class, "background-image", i), urls);
+        }
+        if (style.getProperty("list-style-image") == CSSProperty.ListStyleImage.uri)
+            addUrl(style.getValue(TermURI.class, "list-style-image"), urls);
+    }
+
+    private void addUrl(TermURI uri, Map<String, URL> urls)
+    {
+        if (uri != null)
+        {
+            try {
+                addUrl(DataURLHandler.createURL(uri.getBase(), uri.getValue()), urls);
+            } catch (MalformedURLException e) {
+                //the box creation will report the error
+            }
+        }
+    }
+
+    private void addUrl(URL url, Map<String, URL> urls)
+    {
+        urls.putIfAbsent(url.toExternalForm(), url);
+    }
+
+    //=========================================================================
+
+    /**
+     * A network processor that provides the prefetched style sheets and falls back to another
+     * processor for the remaining URLs.
+     */
+    private class PrefetchProcessor implements NetworkProcessor
+    {
+        private final NetworkProcessor network;
+        private final ConcurrentHashMap<String, Future<byte[]>> fetched;
+
+        public PrefetchProcessor(NetworkProcessor network)
+        {
+            this.network = (network != null) ? network : CSSFactory.getNetworkProcessor();
+            this.fetched = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Starts fetching the given style sheet unless it has been already started.
+         */
+        public void prefetch(URL url)
+        {
+            fetched.computeIfAbsent(url.toExternalForm(), key -> executor.submit(() -> {
+                final byte[] data = readAll(network.fetch(url));
+                prefetchImports(new String(data, "ISO-8859-1"), url); //only the ASCII syntax is considered
+                return data;
+            }));
+        }
+
+        /**
+         * Starts fetching the style sheets imported by the given style sheet.
+         */
+        public void prefetchImports(String css, URL base)
+        {
+            final Matcher m = IMPORT.matcher(css);
+            while (m.find())
+            {
+                try {
+                    prefetch(DataURLHandler.createURL(base, m.group(1)));
+                } catch (MalformedURLException e) {
+                    //the parser will report the error
+                }
+            }
+        }
+
+        @Override
+        public InputStream fetch(URL url) throws IOException
+        {
+            final Future<byte[]> data = fetched.get(url.toExternalForm());
+            if (data != null)
+            {
+                try {
+                    return new ByteArrayInputStream(data.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while fetching " + url);
+                } catch (ExecutionException e) {
+                    log.debug("Prefetching " + url + " failed: " + e.getCause());
+                }
+            }
+            return network.fetch(url); //not prefetched or failed, try again
+        }
+
+        private byte[] readAll(InputStream is) throws IOException
+        {
+            try (InputStream in = is)
+            {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buf = new byte[8192];
+                int len;
+                while ((len = in.read(buf)) != -1)
+                    out.write(buf, 0, len);
+                return out.toByteArray();
+            }
+        }
+    }
+
+}
@@ -19,28 +19,37 @@
  */
 package org.fit.cssbox.layout;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Set;
-import java.util.Vector;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * A stacking context. It gathers the information about child stacking contexts and their z-indices.
+ * <p>
+ * The child contexts are registered during the computation of the absolute positions. Then, the context
+ * is frozen: the child contexts are sorted by their z-indices and stored in an array where the contexts
+ * of each z-index form a contiguous slice. The frozen context is used for drawing; it is obtained again
+ * only when new child contexts are registered.
  * 
  * @author burgetr
  */
-public class StackingContext extends HashMap<Integer, Vector<ElementBox>> 
+public class StackingContext 
 {
-    private static final long serialVersionUID = -2945581861967274084L;
-
     /** The box that creates this stacking context */
     private ElementBox elementBox;
+    
+    /** The child contexts in the order of their registration */
+    private List<ElementBox> registered;
+    
+    /** The frozen context or {@code null} when it has not been created yet */
+    private volatile Levels levels;
         
     
     public StackingContext(ElementBox element)
     {
-        super();
         this.elementBox = element;
+        this.registered = new ArrayList<>();
     }
     
     public ElementBox getElementBox()
@@ -48,29 +57,153 @@ public class StackingContext extends HashMap<Integer, Vector<ElementBox>>
         return elementBox;
     }
     
-    public Integer[] getZIndices()
+    /**
+     * Obtains the z-indices used by the child contexts.
+     * @return the sorted array of z-indices. The array must not be modified.
+     */
+    public int[] getZIndices()
+    {
+        return getLevels().zindices;
+    }
+    
+    /**
+     * Finds the position of a z-index in the array returned by {@link #getZIndices()}.
+     * @param zindex the z-index to find
+     * @return the z-index position or a negative value when no child context uses the z-index
+     */
+    public int getLevel(int zindex)
+    {
+        return Arrays.binarySearch(getLevels().zindices, zindex);
+    }
+    
+    /**
+     * Obtains the child contexts of all the z-indices. The contexts of the z-index at the given position
+     * are placed between {@link #getLevelStart(int)} and {@link #getLevelEnd(int)}.
+     * @return the array of child contexts sorted by their z-indices. The array must not be modified.
+     */
+    public ElementBox[] getElements()
     {
-        Set<Integer> zindices = keySet();
-        Integer[] clevels = zindices.toArray(new Integer[0]); 
-        Arrays.sort(clevels);
-        return clevels;
+        return getLevels().elements;
     }
     
-    public Vector<ElementBox> getElementsForZIndex(int zindex)
+    /**
+     * Obtains the index of the first child context of the given z-index in the {@link #getElements()} array.
+     * @param level the z-index position in the {@link #getZIndices()} array
+     * @return the index of the first child context
+     */
+    public int getLevelStart(int level)
     {
-        return get(zindex);
+        return getLevels().starts[level];
+    }
+    
+    /**
+     * Obtains the index following the last child context of the given z-index in the {@link #getElements()} array.
+     * @param level the z-index position in the {@link #getZIndices()} array
+     * @return the index following the last child context
+     */
+    public int getLevelEnd(int level)
+    {
+        return getLevels().starts[level + 1];
+    }
+    
+    /**
+     * Obtains the child contexts of the given z-index.
+     * @param zindex the z-index
+     * @return the list of child contexts in their registration order or {@code null} when there are no
+     * child contexts with the given z-index
+     */
+    public List<ElementBox> getElementsForZIndex(int zindex)
+    {
+        final int level = getLevel(zindex);
+        if (level >= 0)
+            return Arrays.asList(getElements()).subList(getLevelStart(level), getLevelEnd(level));
+        else
+            return null;
     }
     
     public void registerChildContext(ElementBox element)
     {
-        int zindex = element.hasZIndex() ? element.getZIndex() : 0; //put 'auto' z-indices into level 0
-        Vector<ElementBox> list = get(zindex);
-        if (list == null)
+        registered.add(element);
+        levels = null;
+    }
+    
+    /**
+     * Removes all the registered child contexts.
+     */
+    public void clear()
+    {
+        registered.clear();
+        levels = null;
+    }
+    
+    /**
+     * Creates the frozen representation of this context and all the child contexts so that they
+     * are ready for drawing.
+     */
+    public void freeze()
+    {
+        for (ElementBox elem : getLevels().elements)
+        {
+            if (elem.formsStackingContext())
+                elem.getStackingContext().freeze();
+        }
+    }
+    
+    //=========================================================================
+    
+    private Levels getLevels()
+    {
+        Levels ret = levels;
+        if (ret == null)
+        {
+            ret = new Levels(registered);
+            levels = ret;
+        }
+        return ret;
+    }
+    
+    private static int getZIndex(ElementBox element)
+    {
+        return element.hasZIndex() ? element.getZIndex() : 0; //put 'auto' z-indices into level 0
+    }
+    
+    /**
+     * The child contexts sorted by their z-indices.
+     */
+    private static class Levels
+    {
+        /** The sorted z-indices */
+        public final int[] zindices;
+        /** The start indices of the z-index slices in the element array (plus the total length) */
+        public final int[] starts;
+        /** The child contexts sorted by their z-indices; the registration order is kept for each z-index */
+        public final ElementBox[] elements;
+        
+        public Levels(List<ElementBox> registered)
         {
-            list = new Vector<ElementBox>();
-            put(zindex, list);
+            elements = registered.toArray(new ElementBox[0]);
+            Arrays.sort(elements, Comparator.comparingInt(StackingContext::getZIndex)); //stable sort
+            int cnt = 0;
+            for (int i = 0; i < elements.length; i++)
+            {
+                if (i == 0 || getZIndex(elements[i]) != getZIndex(elements[i - 1]))
+                    cnt++;
+            }
+            zindices = new int[cnt];
+            starts = new int[cnt + 1];
+            int level = -1;
+            for (int i = 0; i < elements.length; i++)
+            {
+                final int z = getZIndex(elements[i]);
+                if (level < 0 || z != zindices[level])
+                {
+                    level++;
+                    zindices[level] = z;
+                    starts[level] = i;
+                }
+            }
+            starts[cnt] = elements.length;
         }
-        list.add(element);
     }
     
 }
@@ -40,6 +40,10 @@ public class TableBodyBox extends BlockBox
     protected TableCellBox[][] cells;
     /** cell spacing */
     protected float spacing = 2;
+    /** The cached sum of the minimal column widths or -1 when not computed yet */
+    private float minColumnsWidth = -1;
+    /** The cached sum of the maximal column widths or -1 when not computed yet */
+    private float maxColumnsWidth = -1;
     
     //====================================================================================
     
@@ -112,6 +116,8 @@ public class TableBodyBox extends BlockBox
      */
     public void setSpacing(float spacing)
     {
+        if (spacing != this.spacing)
+            invalidateIntrinsicWidths();
     	this.spacing = spacing;
     }
     
@@ -137,19 +143,35 @@ public class TableBodyBox extends BlockBox
     @Override
     public float getMaximalWidth()
     {
-        float sum = spacing;
-        for (int i = 0; i < numCols; i++)
-            sum += getMaximalColumnWidth(i) + spacing;
-        return sum;
+        if (maxColumnsWidth < 0)
+        {
+            float sum = spacing;
+            for (int i = 0; i < numCols; i++)
+                sum += getMaximalColumnWidth(i) + spacing;
+            maxColumnsWidth = sum;
+        }
+        return maxColumnsWidth;
     }
 
     @Override
     public float getMinimalWidth()
     {
-        float sum = spacing;
-        for (int i = 0; i < numCols; i++)
-            sum += getMinimalColumnWidth(i) + spacing;
-        return sum;
+        if (minColumnsWidth < 0)
+        {
+            float sum = spacing;
+            for (int i = 0; i < numCols; i++)
+                sum += getMinimalColumnWidth(i) + spacing;
+            minColumnsWidth = sum;
+        }
+        return minColumnsWidth;
+    }
+    
+    @Override
+    protected void clearIntrinsicWidths()
+    {
+        super.clearIntrinsicWidths();
+        minColumnsWidth = -1;
+        maxColumnsWidth = -1;
     }
     
     /**
@@ -59,6 +59,9 @@ public class TableBox extends BlockBox
     
     /** true if the column width have been already calculated */
     private boolean columnsCalculated = false;
+    
+    /** number of the columns specified explicitly in the table (the remaining columns are anonymous) */
+    private int explicitColumnCount;
 
     //====================================================================================
     
@@ -115,6 +118,17 @@ public class TableBox extends BlockBox
         propagateCellSpacing(spacing);
     }
 	
+    @Override
+    public void resetLayout()
+    {
+        //remove the anonymous columns and recompute the column widths in the next layout
+        columns.setSize(explicitColumnCount);
+        for (TableColumn col : columns)
+            col.resetColumnWidths();
+        columnsCalculated = false;
+        super.resetLayout();
+    }
+    
     @Override
     public boolean doLayout(float widthlimit, boolean force, boolean linestart)
     {
@@ -153,6 +167,7 @@ public class TableBox extends BlockBox
             y += footer.getHeight();
         }
         content.width = maxw;
+        checkWidthProperties();
         content.height = y;
         setSize(totalWidth(), totalHeight());
         return true;
@@ -264,7 +279,7 @@ public class TableBox extends BlockBox
     }
     
     @Override
-    protected float getMaximalContentWidth()
+    protected float computeMaximalContentWidth()
     {
         float ret = 0;
         if (header != null)
@@ -286,7 +301,7 @@ public class TableBox extends BlockBox
     }
 
     @Override
-    protected float getMinimalContentWidth()
+    protected float computeMinimalContentWidth()
     {
         float ret = 0;
         if (header != null)
@@ -320,11 +335,15 @@ public class TableBox extends BlockBox
     protected void drawChildren(DrawStage turn)
     {
         //Draw only the bodies, ignore the remaining children
-        if (header != null)
+        final Rectangle area = getChildPaintArea();
+        if (header != null && (area == null || header.mayPaintIn(area)))
             header.draw(turn);
         for (TableBodyBox body : bodies)
-            body.draw(turn);
-        if (footer != null)
+        {
+            if (area == null || body.mayPaintIn(area))
+                body.draw(turn);
+        }
+        if (footer != null && (area == null || footer.mayPaintIn(area)))
             footer.draw(turn);
     }
     
@@ -743,6 +762,7 @@ public class TableBox extends BlockBox
         	anonbody.endChild = anonbody.nested.size();
         	addSubBox(anonbody);
         }
+        explicitColumnCount = columns.size();
     }
 
     private void propagateCellSpacing(float spacing)
@@ -176,6 +176,7 @@ public class TableCellBox extends BlockBox
         content.width = width - border.left - padding.left - padding.right - border.right;
         bounds.width = width;
         wset = true;
+        checkWidthProperties();
         updateChildSizes();
     }
     
@@ -235,6 +236,13 @@ public class TableCellBox extends BlockBox
             coffset = yofs;
     }
 
+    @Override
+    public void resetLayout()
+    {
+        coffset = 0;
+        super.resetLayout();
+    }
+
     @Override
     public float getAbsoluteContentY()
     {
@@ -272,6 +280,15 @@ public class TableCellBox extends BlockBox
         return ret;
     }
     
+    @Override
+    protected float[] getWidthProperties()
+    {
+        //the content width (set by the column width assignment) only influences the minimal width of the fixed-width cells
+        final boolean fixed = !wrelative && hasFixedWidth();
+        return new float[] { margin.left, margin.right, border.left, border.right, padding.left, padding.right,
+                             wrelative ? 1 : 0, fixed ? content.width : -1 };
+    }
+    
     @Override
     protected void loadSizes(boolean update)
     {
@@ -230,6 +230,23 @@ public class TableColumn extends BlockBox
         return true;
     }
 
+    /**
+     * Discards the column widths computed from the cells during the previous table layout
+     * and reloads the widths specified for the column.
+     */
+    public void resetColumnWidths()
+    {
+        mincwidth = 0;
+        maxcwidth = 0;
+        wrelative = false;
+        percent = 0;
+        abswidth = 0;
+        wset = false;
+        content = new Dimension(0, 0);
+        loadAttributes();
+        loadSizes();
+    }
+
     @Override
     protected void loadSizes(boolean update)
     {
@@ -20,6 +20,7 @@
 
 package org.fit.cssbox.layout;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
@@ -98,6 +99,30 @@ public class TextBox extends Box implements Inline
     /** Word spacing */
     private Float wordSpacing;
     
+    /** Cumulative widths of the text prefixes starting at {@link #prefixStart}, used for finding the line breaks */
+    private float[] prefixWidths;
+    
+    /** The text index where the prefix widths start or -1 when they have not been computed */
+    private int prefixStart;
+    
+    /** The number of the prefix widths computed so far */
+    private int prefixCount;
+    
+    /** The sum of the character advances of the longest prefix computed so far */
+    private float prefixAdvance;
+    
+    /** The sum of the additional word spacing of the longest prefix computed so far */
+    private float prefixSpacing;
+    
+    /** Indicates that the prefix widths cannot be computed for the current font, text or word spacing */
+    private boolean prefixUnavailable;
+    
+    /** The text start index before the layout, restored by {@link #resetLayout()} */
+    private int initialTextStart;
+    
+    /** The {@link #collapsedCompletely} value before the layout, restored by {@link #resetLayout()} */
+    private boolean initialCollapsed;
+    
     
     //===================================================================
     
@@ -113,6 +138,7 @@ public class TextBox extends Box implements Inline
         textNode = n;
         transform = TextTransform.NONE;
         wordSpacing = null;
+        prefixStart = -1;
         setWhiteSpace(ElementBox.WHITESPACE_NORMAL); //resets the text content and indices
         
         ignoreinitialws = false;
@@ -163,6 +189,20 @@ public class TextBox extends Box implements Inline
     {
     }
     
+    @Override
+    public void resetLayout()
+    {
+        super.resetLayout();
+        if (!splitted)
+        {
+            //the initial whitespace may have been skipped at a line start during the layout
+            textStart = initialTextStart;
+            textEnd = text.length();
+            collapsedCompletely = initialCollapsed;
+            lineBreakStop = false;
+        }
+    }
+    
     @Override
     public void setParent(ElementBox parent)
     {
@@ -182,6 +222,7 @@ public class TextBox extends Box implements Inline
             }
             else
                 wordSpacing = null;
+            invalidatePrefixWidths();
             //reset the whitespace processing according to the parent settings
             CSSProperty.WhiteSpace ws = getParent().getWhiteSpace();
             if (ws != ElementBox.WHITESPACE_NORMAL || transform != TextTransform.NONE)
@@ -236,6 +277,7 @@ public class TextBox extends Box implements Inline
         splitws = (value == ElementBox.WHITESPACE_NORMAL || value == ElementBox.WHITESPACE_PRE_WRAP || value== ElementBox.WHITESPACE_PRE_LINE);
         collapsews = (value == ElementBox.WHITESPACE_NORMAL || value == ElementBox.WHITESPACE_NOWRAP || value == ElementBox.WHITESPACE_PRE_LINE);
         linews = (value == ElementBox.WHITESPACE_NORMAL || value == ElementBox.WHITESPACE_NOWRAP);
+        invalidatePrefixWidths();
         //When this is the original box, apply the whitespace. For the copied boxes, the whitespace has been already applied (they contain
         //a copy of the original, already processed content). 
         if (!splitted)
@@ -256,6 +298,8 @@ public class TextBox extends Box implements Inline
         textStart = 0;
         textEnd = text.length();
         isempty = (textEnd == 0);
+        initialTextStart = textStart;
+        initialCollapsed = collapsedCompletely;
     }
     
     /**
@@ -347,6 +391,7 @@ public class TextBox extends Box implements Inline
             text = text.substring(0, last);
             textStart = 0;
             textEnd = last;
+            invalidatePrefixWidths();
         }
     }
     
@@ -392,10 +437,12 @@ public class TextBox extends Box implements Inline
     public boolean isWhitespace()
     {
 		//after wihtespace processing, all whitespaces should be represented by ' '
-		String s = getText();
-		for (int i = 0; i < s.length(); i++)
-			if (s.charAt(i) != ' ')
-				return false;
+		if (text != null)
+		{
+			for (int i = textStart; i < textEnd; i++)
+				if (text.charAt(i) != ' ')
+					return false;
+		}
 		return true;
     }
     
@@ -522,7 +569,7 @@ public class TextBox extends Box implements Inline
     @Override
     public boolean canSplitInside()
     {
-        return (getText().indexOf(' ') != -1);
+        return (indexOfText(' ', textStart) != -1);
     }
     
     @Override
@@ -574,6 +621,8 @@ public class TextBox extends Box implements Inline
                 textStart++;
             if (textStart == textEnd)
                 collapsedCompletely = true;
+            initialTextStart = textStart;
+            initialCollapsed = collapsedCompletely;
             //recompute widths (possibly different wrapping)
             computeLineLengths();
             minwidth = computeMinimalWidth();
@@ -648,41 +697,47 @@ public class TextBox extends Box implements Inline
                 }
             }
             //try to place the text
-            do
+            h = ctx.getFontHeight();
+            if (empty)
+            {
+                w = stringWidth(textStart, end);
+                if (w > wlimit) //empty or just spaces - don't place at all
+                {
+                    w = 0; h = 0;
+                    split = false;
+                }
+            }
+            else
             {
-                w = stringWidth(text.substring(textStart, end));
-                h = ctx.getFontHeight();
-                if (w > wlimit) //exceeded - try to split if allowed
+                final int fitEnd = findLineEnd(end, wlimit);
+                if (fitEnd != -1) //something fits
                 {
-                    if (empty) //empty or just spaces - don't place at all
+                    if (fitEnd != end) //split at the end of a word
                     {
-                        w = 0; h = 0;
-                        split = false;
-                        break;
+                        end = fitEnd;
+                        split = true;
                     }
-                    int wordend = text.substring(0, end).lastIndexOf(' '); //find previous word
-                    while (wordend > 0 && text.charAt(wordend-1) == ' ') wordend--; //skip trailing spaces
-                    if (wordend <= textStart || !splitws) //no previous word, cannot split or splitting not allowed
+                    w = prefixWidth(end);
+                }
+                else //no previous word, cannot split or splitting not allowed
+                {
+                    //the shortest possible result is the first word (or everything when splitting is not allowed)
+                    final int first = splitws ? findFirstWordEnd(end) : end;
+                    w = prefixWidth(first);
+                    if (!force) //everything failed
                     {
-                        if (!force) //everything failed
-                        {
-                        	//System.out.println("Here for " + this);
-                            end = textEnd; //we will try with the whole rest next time
-                            split = false; 
-                            allow = false; //split before the linebreak
-                            fail = true;
-                        }
-                        else
-                            split = true;
-                        break;
+                        end = textEnd; //we will try with the whole rest next time
+                        split = false; 
+                        allow = false; //split before the linebreak
+                        fail = true;
                     }
                     else
                     {
-                        end = wordend;
+                        end = first;
                         split = true;
                     }
                 }
-            } while (end > textStart && w > wlimit);
+            }
         }
         textEnd = end;
         bounds.setSize(w, h);
@@ -745,8 +800,7 @@ public class TextBox extends Box implements Inline
     private float computeMinimalWidth()
     {
         float ret = 0;
-        String t = getText();
-        if (t.length() > 0)
+        if (text != null && textEnd > textStart)
         {
             if (splitws)
             {
@@ -773,7 +827,7 @@ public class TextBox extends Box implements Inline
         if (linews)
         {
             //no preserved line breaks -- returns the lenth of the whole string
-            float len = stringWidth(getText());
+            float len = stringWidth(textStart, textEnd);
             firstLineLength = len;
             lastLineLength = len;
             longestLineLength = len;
@@ -788,18 +842,17 @@ public class TextBox extends Box implements Inline
     private float getLongestWord()
     {
         float ret = 0;
-        String t = getText();
         
-        int s1 = 0;
-        int s2 = t.indexOf(' ');
+        int s1 = textStart;
+        int s2 = indexOfText(' ', s1);
         do
         {
-            if (s2 == -1) s2 = t.length();
-            float w = stringWidth(t.substring(s1, s2));
+            if (s2 == -1) s2 = textEnd;
+            float w = stringWidth(s1, s2);
             if (w > ret) ret = w;
             s1 = s2 + 1;
-            s2 = t.indexOf(' ', s1);
-        } while (s1 < t.length() && s2 < t.length());
+            s2 = indexOfText(' ', s1);
+        } while (s1 < textEnd && s2 < textEnd);
         
         return ret;
     }
@@ -947,14 +1000,199 @@ public class TextBox extends Box implements Inline
             if (pos <= textStart)
                 return 0;
             else if (pos > textStart && pos < textEnd)
-                return stringWidth(text.substring(textStart, pos));
+                return stringWidth(textStart, pos);
             else
-                return stringWidth(text.substring(textStart, textEnd));
+                return stringWidth(textStart, textEnd);
         }
         else
             return 0;
     }
     
+    /**
+     * Finds the greatest text end index such that the text between the text start and this index fits
+     * to the given width. The candidates are the given end index and, when wrapping is allowed, the
+     * start indices of the whitespace sequences between the words. The text width grows with the
+     * candidate index, which allows to use a binary search instead of trying the candidates one by one.
+     * @param end the maximal end index
+     * @param wlimit the maximal allowed width
+     * @return the greatest candidate end index that fits or -1 when no candidate fits
+     */
+    private int findLineEnd(int end, float wlimit)
+    {
+        if (computePrefixWidths(end, wlimit))
+        {
+            //binary search for the longest prefix that fits
+            int lo = 0;
+            int hi = Math.min(prefixCount - 1, end - prefixStart);
+            int fit = -1;
+            while (lo <= hi)
+            {
+                final int mid = (lo + hi) >>> 1;
+                if (prefixWidths[mid] > wlimit)
+                    hi = mid - 1;
+                else
+                {
+                    fit = mid;
+                    lo = mid + 1;
+                }
+            }
+            if (fit == end - prefixStart)
+                return end; //everything fits
+            else if (!splitws)
+                return -1;
+            else
+                return findLastWordEnd(prefixStart + fit);
+        }
+        else
+        {
+            //prefix widths not available, measure the individual candidates
+            if (!(stringWidth(textStart, end) > wlimit))
+                return end;
+            else if (!splitws)
+                return -1;
+            else
+            {
+                int[] cands = new int[16];
+                int cnt = 0;
+                for (int i = textStart + 1; i < end; i++)
+                {
+                    if (text.charAt(i) == ' ' && text.charAt(i - 1) != ' ')
+                    {
+                        if (cnt == cands.length)
+                            cands = Arrays.copyOf(cands, cnt * 2);
+                        cands[cnt++] = i;
+                    }
+                }
+                if (wordSpacing != null && wordSpacing < 0)
+                {
+                    //the width does not necessarily grow with the text length, try all the candidates
+                    for (int i = cnt - 1; i >= 0; i--)
+                    {
+                        if (!(stringWidth(textStart, cands[i]) > wlimit))
+                            return cands[i];
+                    }
+                    return -1;
+                }
+                else
+                {
+                    int lo = 0;
+                    int hi = cnt - 1;
+                    int fit = -1;
+                    while (lo <= hi)
+                    {
+                        final int mid = (lo + hi) >>> 1;
+                        if (stringWidth(textStart, cands[mid]) > wlimit)
+                            hi = mid - 1;
+                        else
+                        {
+                            fit = mid;
+                            lo = mid + 1;
+                        }
+                    }
+                    return (fit == -1) ? -1 : cands[fit];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds the start of the last whitespace sequence that follows a word and that starts
+     * at or before the given index.
+     * @param index the maximal index
+     * @return the start index of the whitespace sequence or -1 when there is no such sequence after the text start
+     */
+    private int findLastWordEnd(int index)
+    {
+        int wordend = (index >= 0) ? text.lastIndexOf(' ', index) : -1;
+        while (wordend > 0 && text.charAt(wordend-1) == ' ') wordend--; //skip trailing spaces
+        return (wordend > textStart) ? wordend : -1;
+    }
+    
+    /**
+     * Finds the end of the first word after the text start.
+     * @param end the maximal end index
+     * @return the start index of the first whitespace sequence that follows a word or {@code end} when there is no such sequence
+     */
+    private int findFirstWordEnd(int end)
+    {
+        for (int i = textStart + 1; i < end; i++)
+        {
+            if (text.charAt(i) == ' ' && text.charAt(i - 1) != ' ')
+                return i;
+        }
+        return end;
+    }
+    
+    /**
+     * Computes the widths of the text prefixes starting at the text start. The widths are computed
+     * incrementally up to the given end index or until the given width limit is exceeded. The already
+     * computed widths are reused until the text start changes.
+     * @param end the maximal end index
+     * @param wlimit the width limit
+     * @return {@code true} when the prefix widths are available, {@code false} when they cannot be
+     * computed for the current font or text and the text must be measured directly.
+     */
+    private boolean computePrefixWidths(int end, float wlimit)
+    {
+        if (prefixStart != textStart)
+        {
+            prefixStart = textStart;
+            prefixCount = 1;
+            prefixAdvance = 0;
+            prefixSpacing = 0;
+            //negative word spacing would break the monotonicity of the widths
+            prefixUnavailable = (wordSpacing != null && wordSpacing < 0);
+            if (prefixWidths == null)
+                prefixWidths = new float[32];
+            prefixWidths[0] = 0;
+        }
+        if (prefixUnavailable)
+            return false;
+        
+        int i = prefixStart + prefixCount - 1;
+        while (i < end && !(prefixWidths[prefixCount - 1] > wlimit))
+        {
+            final char ch = text.charAt(i);
+            final float adv = ctx.charAdvance(ch);
+            if (!(adv >= 0)) //not available (or negative)
+            {
+                prefixUnavailable = true;
+                return false;
+            }
+            prefixAdvance += adv;
+            if (wordSpacing != null && ch == ' ')
+                prefixSpacing += wordSpacing;
+            if (prefixCount == prefixWidths.length)
+                prefixWidths = Arrays.copyOf(prefixWidths, prefixCount * 2);
+            prefixWidths[prefixCount++] = (wordSpacing != null) ? prefixAdvance + prefixSpacing : prefixAdvance;
+            i++;
+        }
+        return true;
+    }
+    
+    /**
+     * Computes the width of the text between the text start and the given index. The precomputed
+     * prefix widths are used when available.
+     * @param end the end index (not included)
+     * @return the resulting width in pixels
+     */
+    private float prefixWidth(int end)
+    {
+        if (prefixStart == textStart && end >= prefixStart && end - prefixStart < prefixCount)
+            return prefixWidths[end - prefixStart];
+        else
+            return stringWidth(textStart, end);
+    }
+    
+    /**
+     * Invalidates the precomputed prefix widths.
+     */
+    private void invalidatePrefixWidths()
+    {
+        prefixStart = -1;
+        prefixUnavailable = false;
+    }
+    
     /**
      * Computes the lengths of the first, last and longest lines.
      */
@@ -964,23 +1202,21 @@ public class TextBox extends Box implements Inline
         lastLineLength = 0;
         longestLineLength = 0;
         
-        String t = getText();
-        
-        int s1 = 0;
-        int s2 = t.indexOf('\r');
+        int s1 = textStart;
+        int s2 = indexOfText('\r', s1);
         float w = 0;
         do
         {
             if (s2 == -1)
-                s2 = t.length();
+                s2 = textEnd;
             else
                 containsLineBreak = true;
-            w = stringWidth(t.substring(s1, s2));
+            w = stringWidth(s1, s2);
             if (firstLineLength == -1) firstLineLength = w;
             if (w > longestLineLength) longestLineLength = w;
             s1 = s2 + 1;
-            s2 = t.indexOf('\r', s1);
-        } while (s1 < t.length() && s2 < t.length());
+            s2 = indexOfText('\r', s1);
+        } while (s1 < textEnd && s2 < textEnd);
         lastLineLength = w;
     }
 
@@ -992,12 +1228,36 @@ public class TextBox extends Box implements Inline
      */
     private float stringWidth(String text)
     {
-        float w = ctx.stringWidth(text);
+        return stringWidth(text, 0, text.length());
+    }
+    
+    /**
+     * Computes the final width of a substring of the box text while considering word-spacing.
+     * No new string is created for the measured substring.
+     * @param start the start index in the text string
+     * @param end the end index in the text string (not included)
+     * @return the resulting width in pixels
+     */
+    private float stringWidth(int start, int end)
+    {
+        return stringWidth(text, start, end);
+    }
+    
+    /**
+     * Computes the final width of a part of a character sequence while considering word-spacing
+     * @param text the character sequence containing the measured text
+     * @param start the start index of the measured text
+     * @param end the end index of the measured text (not included)
+     * @return the resulting width in pixels
+     */
+    private float stringWidth(CharSequence text, int start, int end)
+    {
+        float w = ctx.stringWidth(text, start, end);
         if (wordSpacing != null)
         {
             //count spaces and add
             float add = 0.0f;
-            for (int i = 0; i < text.length(); i++)
+            for (int i = start; i < end; i++)
             {
                 if (text.charAt(i) == ' ')
                     add += wordSpacing;
@@ -1007,6 +1267,19 @@ public class TextBox extends Box implements Inline
         return w;
     }
     
+    /**
+     * Finds the first occurence of a character in the displayed part of the text string
+     * (i.e. between the text start and text end).
+     * @param ch the character to find
+     * @param from the index to start from
+     * @return the index of the character occurence or -1 when not found before the text end
+     */
+    private int indexOfText(char ch, int from)
+    {
+        final int ret = text.indexOf(ch, from);
+        return (ret < textEnd) ? ret : -1;
+    }
+    
 	@Override
     public void draw(DrawStage turn)
     {
@@ -0,0 +1,66 @@
+/*
+ * TransformMatrix.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026, 23:52:08 by agent
+ */
+package org.fit.cssbox.layout;
+
+/**
+ * An affine transformation matrix resolved from the CSS <code>transform</code> property of a box.
+ * The percentages, lengths and the transformation origin depend on the box bounds; therefore,
+ * the matrix is only valid for the border bounds it has been resolved for.
+ *
+ * @author agent
+ */
+public class TransformMatrix
+{
+    private final Rectangle bounds;
+    private final double[] matrix;
+
+    
+    /**
+     * Creates a resolved matrix.
+     * @param bounds the absolute border bounds of the box used for resolving the matrix
+     * @param matrix the matrix values in the order <code>{m00, m10, m01, m11, m02, m12}</code>
+     */
+    public TransformMatrix(Rectangle bounds, double[] matrix)
+    {
+        this.bounds = new Rectangle(bounds);
+        this.matrix = matrix.clone();
+    }
+
+    /**
+     * Obtains the matrix values.
+     * @return the matrix values in the order <code>{m00, m10, m01, m11, m02, m12}</code>
+     */
+    public double[] getMatrix()
+    {
+        return matrix.clone();
+    }
+
+    /**
+     * Checks whether the matrix may be used for the given box bounds.
+     * @param bounds the current absolute border bounds of the box
+     * @return {@code true} when the matrix has been resolved for the same bounds
+     */
+    public boolean isValidFor(Rectangle bounds)
+    {
+        return bounds.x == this.bounds.x && bounds.y == this.bounds.y
+                && bounds.width == this.bounds.width && bounds.height == this.bounds.height;
+    }
+
+}
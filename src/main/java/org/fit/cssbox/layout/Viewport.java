@@ -18,6 +18,7 @@
 
 package org.fit.cssbox.layout;
 
+import java.util.List;
 import java.util.Vector;
 
 import org.fit.cssbox.render.BoxRenderer;
@@ -56,7 +57,11 @@ public class Viewport extends BlockBox
     private boolean rootOverflowVisible = true; //has the root box originally had overflow:visible?
     private float maxx; //maximal X position of all the content
     private float maxy; //maximal Y position of all the content
+    private boolean viewportUnitsUsed; //have some viewport-relative units been evaluated?
     private boolean recomputeAbs; //indicates that the absolute positions need to be recomputed
+    private final ThreadLocal<DrawState> drawState = new ThreadLocal<>(); //the drawings running in the individual threads
+    private volatile BoxIndex boxIndex; //the index of the boxes created on demand; null when not created yet or invalid
+    private final Object boxIndexLock = new Object(); //guards the creation of the box index
     
     /**
      * Creates a new Viewport with the given initial size. The actual size may be increased during the layout. 
@@ -161,6 +166,24 @@ public class Viewport extends BlockBox
         return factory;
     }
 
+    /**
+     * Checks whether some viewport-relative lengths (vw, vh, vmin, vmax) have been evaluated
+     * in the boxes of this viewport. Such boxes depend on the visible area size.
+     * @return {@code true} when some viewport-relative units have been used
+     */
+    public boolean isViewportUnitsUsed()
+    {
+        return viewportUnitsUsed;
+    }
+
+    /**
+     * Marks the viewport as containing the boxes that depend on the visible area size.
+     */
+    public void markViewportUnitsUsed()
+    {
+        viewportUnitsUsed = true;
+    }
+
     public float getMinimalWidthLimit()
     {
     	return width;
@@ -395,7 +418,11 @@ public class Viewport extends BlockBox
 	    if (scontext != null)
             scontext.clear();
 	    
+	    boxIndex = null; //the positions change
 	    absolutePositionsChildren();
+	    computePaintBounds();
+	    //all the stacking contexts have been registered, prepare them for drawing
+	    getStackingContext().freeze();
     }
 	
 	/**
@@ -425,16 +452,63 @@ public class Viewport extends BlockBox
     public void draw(BoxRenderer renderer)
     {
         this.renderer = renderer;
-        drawStackingContext(false);
+        draw(renderer, null);
+    }
+	
+    /**
+     * Draws the parts of the subtree that may be visible in the given area using the given renderer.
+     * The subtrees whose painted area computed during {@link #absolutePositions()} does not intersect
+     * the given area are skipped completely; the painting order of the remaining boxes is preserved.
+     * The renderer is only used by the current thread during this call and, unlike {@link #draw(BoxRenderer)},
+     * it does not become the current renderer of the viewport (see {@link #setRenderer(BoxRenderer)}).
+     * The laid-out tree is not modified during the drawing, so that multiple threads may draw the same
+     * viewport concurrently using different renderers (e.g. for rendering different tiles of the page).
+     * @param renderer The renderer to be used for drawing.
+     * @param area The area to be painted in absolute coordinates or {@code null} for the whole canvas.
+     */
+    public void draw(BoxRenderer renderer, Rectangle area)
+    {
+        final DrawState outer = drawState.get();
+        drawState.set(new DrawState(renderer, area));
+        try {
+            drawStackingContext(false);
+        } finally {
+            if (outer == null)
+                drawState.remove();
+            else
+                drawState.set(outer);
+        }
     }
 	
     /**
-     * Obtains the current renderer used for painting the boxes.
+     * Obtains the area being painted during the current drawing.
+     * @return the painted area in absolute coordinates or {@code null} when the whole canvas is painted.
+     */
+    public Rectangle getPaintArea()
+    {
+        final DrawState state = drawState.get();
+        return (state == null) ? null : state.area;
+    }
+	
+    /**
+     * Obtains the current renderer used for painting the boxes. During the drawing, this is the renderer
+     * used by the current thread; otherwise, it is the renderer last passed to {@link #draw(BoxRenderer)}
+     * or {@link #setRenderer(BoxRenderer)}.
      * @return current renderer.
      */
     public BoxRenderer getRenderer()
     {
-        return renderer;
+        final DrawState state = drawState.get();
+        return (state == null) ? renderer : state.renderer;
+    }
+    
+    /**
+     * Sets the current renderer returned by {@link #getRenderer()} outside of the drawing.
+     * @param renderer the renderer
+     */
+    public void setRenderer(BoxRenderer renderer)
+    {
+        this.renderer = renderer;
     }
     
 	/**
@@ -456,8 +530,80 @@ public class Viewport extends BlockBox
 	public void requireRecomputePositions()
 	{
 	    recomputeAbs = true;
+	    boxIndex = null;
 	}
 	
+    /**
+     * Obtains the index of the boxes used for the hit-testing and the element lookup. The index is created
+     * on the first use after the absolute positions have been computed and it is reused until
+     * the positions are computed again. The index may be obtained concurrently by multiple threads;
+     * it is only created once.
+     * @return the box index
+     */
+    public BoxIndex getBoxIndex()
+    {
+        BoxIndex ret = boxIndex;
+        if (ret == null)
+        {
+            synchronized (boxIndexLock)
+            {
+                ret = boxIndex;
+                if (ret == null)
+                {
+                    //obtain the painting order by drawing the boxes with a recording renderer
+                    final BoxIndex.Recorder recorder = new BoxIndex.Recorder();
+                    draw(recorder, null);
+                    ret = new BoxIndex(this, recorder);
+                    boxIndex = ret;
+                }
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Finds the topmost box at the given position in the painting order.
+     * @param x the absolute x coordinate
+     * @param y the absolute y coordinate
+     * @return the topmost box or {@code null} when there is no box at the given position
+     * @see BoxIndex#getBoxAt(float, float)
+     */
+    public Box getBoxAt(float x, float y)
+    {
+        return getBoxIndex().getBoxAt(x, y);
+    }
+    
+    /**
+     * Finds all the boxes that intersect the given rectangle.
+     * @param rect the rectangle in absolute coordinates
+     * @return the list of the boxes in the painting order
+     * @see BoxIndex#getBoxesIn(Rectangle)
+     */
+    public List<Box> getBoxesIn(Rectangle rect)
+    {
+        return getBoxIndex().getBoxesIn(rect);
+    }
+    
+    /**
+     * Finds the first element box created for the given DOM element.
+     * @param e the DOM element
+     * @return the element box or {@code null} when no box has been created for the element
+     */
+    public ElementBox getElementBox(Element e)
+    {
+        return getBoxIndex().getElementBox(e);
+    }
+    
+    /**
+     * Finds the first element box created for the element with the given ID.
+     * @param id the element ID
+     * @return the element box or {@code null} when there is no such box
+     */
+    public ElementBox getElementBoxById(String id)
+    {
+        return getBoxIndex().getElementBoxById(id);
+    }
+	
 	/**
 	 * Uses the given block as a clipping block instead of the default Viewport.
 	 * @param block the new clipping block
@@ -606,5 +752,21 @@ public class Viewport extends BlockBox
         }
     }
 
+    //===================================================================================
+    
+    /**
+     * The renderer and the painted area used by a running drawing.
+     */
+    private static class DrawState
+    {
+        public final BoxRenderer renderer;
+        public final Rectangle area;
+        
+        public DrawState(BoxRenderer renderer, Rectangle area)
+        {
+            this.renderer = renderer;
+            this.area = area;
+        }
+    }
+    
 }
-
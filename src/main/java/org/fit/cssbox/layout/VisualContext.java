@@ -23,7 +23,10 @@ package org.fit.cssbox.layout;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import org.fit.cssbox.css.CSSUnits;
 import org.fit.cssbox.css.FontSpec;
@@ -62,6 +65,7 @@ public abstract class VisualContext
     private VisualContext rootContext; //the visual context of the root element
     private BrowserConfig config; //used engine configuration
     private FontTable fontTable; //a table of CSS-defined fonts
+    private FontNameCache fontNames; //resolved font family lists shared with the derived contexts
     private Viewport viewport; //the viewport used for obtaining the vw sizes
     private float fontSize; //font size in pt
     private CSSProperty.FontWeight fontWeight;
@@ -85,6 +89,7 @@ public abstract class VisualContext
         this.config = config;
         this.fontTable = fontTable;
         rootContext = (parent == null) ? this : parent.rootContext;
+        fontNames = (parent == null || parent.fontTable != fontTable) ? new FontNameCache() : parent.fontNames;
         fontSize = CSSUnits.medium_font;
         fontWeight = CSSProperty.FontWeight.NORMAL;
         fontStyle = CSSProperty.FontStyle.NORMAL;
@@ -275,6 +280,34 @@ public abstract class VisualContext
      */
     abstract public float stringWidth(String text);
     
+    /**
+     * Computes the pixel width of a part of the given character sequence in the visual context.
+     * The default implementation measures the corresponding substring; the implementations
+     * should override this in order to avoid creating the substrings.
+     * @param text The character sequence
+     * @param start The start index of the measured part (inclusive)
+     * @param end The end index of the measured part (exclusive)
+     * @return the resulting width in pixels
+     */
+    public float stringWidth(CharSequence text, int start, int end)
+    {
+        return stringWidth(text.subSequence(start, end).toString());
+    }
+    
+    /**
+     * Obtains the advance width of a single character in the current font. The advance is only
+     * available when the width of any text is equal to the sum of the advances of its characters
+     * computed from left to right, i.e. exactly the value returned by {@link #stringWidth(CharSequence, int, int)}.
+     * This allows computing the widths of all the prefixes of a text in a single pass.
+     * @param ch The character
+     * @return the character advance in pixels or {@code Float.NaN} when the text width cannot be obtained
+     * by summing the advances (e.g. kerning is used) or the advances are not available at all.
+     */
+    public float charAdvance(char ch)
+    {
+        return Float.NaN;
+    }
+    
     //=========================================================================
     
     /** 
@@ -462,13 +495,13 @@ public abstract class VisualContext
                 case ch:
                     return getCh() * nval;
                 case vw:
-                    return CSSUnits.points(viewport.getVisibleRect().getWidth()) * nval / 100.0f;
+                    return CSSUnits.points(getViewportRect().getWidth()) * nval / 100.0f;
                 case vh:
-                    return CSSUnits.points(viewport.getVisibleRect().getWidth()) * nval / 100.0f;
+                    return CSSUnits.points(getViewportRect().getWidth()) * nval / 100.0f;
                 case vmin:
-                    return CSSUnits.points(Math.min(viewport.getVisibleRect().getWidth(), viewport.getVisibleRect().getHeight())) * nval / 100.0f;
+                    return CSSUnits.points(Math.min(getViewportRect().getWidth(), getViewportRect().getHeight())) * nval / 100.0f;
                 case vmax:
-                    return CSSUnits.points(Math.max(viewport.getVisibleRect().getWidth(), viewport.getVisibleRect().getHeight())) * nval / 100.0f;
+                    return CSSUnits.points(Math.max(getViewportRect().getWidth(), getViewportRect().getHeight())) * nval / 100.0f;
                 default:
                     return 0;
             }
@@ -533,13 +566,13 @@ public abstract class VisualContext
                 case ch:
                     return CSSUnits.pixels(getCh() * nval);
                 case vw:
-                    return viewport.getVisibleRect().getWidth() * nval / 100.0f;
+                    return getViewportRect().getWidth() * nval / 100.0f;
                 case vh:
-                    return viewport.getVisibleRect().getHeight() * nval / 100.0f;
+                    return getViewportRect().getHeight() * nval / 100.0f;
                 case vmin:
-                    return Math.min(viewport.getVisibleRect().getWidth(), viewport.getVisibleRect().getHeight()) * nval / 100.0f;
+                    return Math.min(getViewportRect().getWidth(), getViewportRect().getHeight()) * nval / 100.0f;
                 case vmax:
-                    return Math.max(viewport.getVisibleRect().getWidth(), viewport.getVisibleRect().getHeight()) * nval / 100.0f;
+                    return Math.max(getViewportRect().getWidth(), getViewportRect().getHeight()) * nval / 100.0f;
                 default:
                     return 0;
             }
@@ -632,6 +665,22 @@ public abstract class VisualContext
      * @return a font name string according to java.awt.Font
      */
     protected String findFontName(TermList list, CSSProperty.FontWeight weight, CSSProperty.FontStyle style)
+    {
+        final List<Object> key = new ArrayList<>(list.size() + 2);
+        for (Term<?> term : list)
+            key.add(term.getValue());
+        key.add(weight);
+        key.add(style);
+        return fontNames.get(key, getFontVersion(), () -> resolveFontName(list, weight, style));
+    }
+    
+    /** 
+     * Scans a list of font definitions and chooses the first one that is available
+     * without using the cached results.
+     * @param list of terms obtained from the font-family property
+     * @return a font name string according to java.awt.Font
+     */
+    protected String resolveFontName(TermList list, CSSProperty.FontWeight weight, CSSProperty.FontStyle style)
     {
         String ret = null;
         for (Term<?> term : list)
@@ -761,8 +810,29 @@ public abstract class VisualContext
     protected abstract String registerExternalFont(TermURI urlstring, String format)
             throws MalformedURLException, IOException;
     
+    /**
+     * Obtains the version of the set of available fonts. The cached results of the font name
+     * lookups are discarded when the version changes (e.g. when a new font has been registered).
+     * @return the font set version
+     */
+    protected long getFontVersion()
+    {
+        return 0;
+    }
+    
     //============================================================================================================================
     
+    /**
+     * Obtains the visible area used for evaluating the viewport-relative units. The viewport is marked
+     * as having some boxes dependent on the visible area size.
+     * @return the visible area rectangle
+     */
+    private Rectangle getViewportRect()
+    {
+        viewport.markViewportUnitsUsed();
+        return viewport.getVisibleRect();
+    }
+    
     private PxEvaluator getPxEval()
     {
         if (pxEval == null)
@@ -891,4 +961,29 @@ public abstract class VisualContext
      */
     public abstract ImageLoader getImageLoader();
     
+    //============================================================================================================================
+    
+    /**
+     * Resolved font names for the font family lists used in the styles.
+     */
+    private static class FontNameCache
+    {
+        private final Map<List<Object>, String> names = new HashMap<>();
+        private long version;
+        
+        public String get(List<Object> key, long curVersion, Supplier<String> resolver)
+        {
+            if (curVersion != version)
+            {
+                names.clear();
+                version = curVersion;
+            }
+            if (names.containsKey(key))
+                return names.get(key);
+            final String ret = resolver.get();
+            names.put(key, ret); //discarded on the next lookup when a font has been registered meanwhile
+            return ret;
+        }
+    }
+    
 }
@@ -0,0 +1,161 @@
+/*
+ * BoundedImageCacheTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.awt.image.BufferedImage;
+import java.net.URL;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the size limit, the eviction order, the failure expiration and the statistics
+ * of {@link BoundedImageCache}.
+ *
+ * @author agent
+ */
+public class BoundedImageCacheTest
+{
+    /** The size of a 10x10 RGB image in bytes */
+    private static final long IMAGE_SIZE = 10 * 10 * 4;
+
+    @Test
+    public void imageSizes() throws Exception
+    {
+        final BoundedImageCache cache = new BoundedImageCache(100000);
+        cache.put(url(1), image(1, 10, 10));
+        Assert.assertEquals(IMAGE_SIZE, cache.getSize());
+        //lazily decoded images are counted with their full size
+        cache.put(url(2), new BitmapImage(url(2), 20, 5, subsampling -> null));
+        Assert.assertEquals(IMAGE_SIZE + 20 * 5 * 4, cache.getSize());
+        //replacing an image updates the size
+        cache.put(url(1), image(1, 5, 5));
+        Assert.assertEquals(5 * 5 * 4 + 20 * 5 * 4, cache.getSize());
+        Assert.assertEquals(2, cache.getImageCount());
+        cache.clear();
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertEquals(0, cache.getImageCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEvictedFirst() throws Exception
+    {
+        final BoundedImageCache cache = new BoundedImageCache(3 * IMAGE_SIZE);
+        for (int i = 1; i <= 3; i++)
+            cache.put(url(i), image(i, 10, 10));
+        Assert.assertEquals(3, cache.getImageCount());
+        Assert.assertEquals(0, cache.getEvictionCount());
+
+        //using 1 makes 2 the least recently used one
+        Assert.assertNotNull(cache.get(url(1)));
+        cache.put(url(4), image(4, 10, 10));
+        Assert.assertNull(cache.get(url(2)));
+        Assert.assertNotNull(cache.get(url(3)));
+        Assert.assertNotNull(cache.get(url(1)));
+        Assert.assertNotNull(cache.get(url(4)));
+        Assert.assertEquals(1, cache.getEvictionCount());
+
+        //3 is the least recently used one now, a double-sized image evicts 3 and 1
+        cache.put(url(5), image(5, 20, 10));
+        Assert.assertNull(cache.get(url(3)));
+        Assert.assertNull(cache.get(url(1)));
+        Assert.assertNotNull(cache.get(url(4)));
+        Assert.assertNotNull(cache.get(url(5)));
+        Assert.assertEquals(3, cache.getEvictionCount());
+    }
+
+    @Test
+    public void sizeLimitKept() throws Exception
+    {
+        final long limit = 5 * IMAGE_SIZE + IMAGE_SIZE / 2;
+        final BoundedImageCache cache = new BoundedImageCache(limit);
+        for (int i = 0; i < 50; i++)
+        {
+            cache.put(url(i), image(i, 10 + (i % 4) * 3, 10));
+            Assert.assertTrue("Size " + cache.getSize() + " after " + i, cache.getSize() <= limit);
+        }
+        Assert.assertTrue(cache.getImageCount() >= 3);
+        Assert.assertNotNull("The last image should be kept", cache.get(url(49)));
+
+        //an image larger than the limit is not cached at all and evicts nothing
+        final long size = cache.getSize();
+        final int count = cache.getImageCount();
+        cache.put(url(100), image(100, 100, 100));
+        Assert.assertNull(cache.get(url(100)));
+        Assert.assertEquals(size, cache.getSize());
+        Assert.assertEquals(count, cache.getImageCount());
+    }
+
+    @Test
+    public void failedImagesExpire() throws Exception
+    {
+        final BoundedImageCache cache = new BoundedImageCache(100000, 100);
+        cache.putFailed(url(1));
+        Assert.assertTrue(cache.hasFailed(url(1)));
+        Assert.assertFalse(cache.hasFailed(url(2)));
+        Thread.sleep(150);
+        Assert.assertFalse("The failure should expire", cache.hasFailed(url(1)));
+
+        //a successfully loaded image removes the failure
+        final BoundedImageCache longCache = new BoundedImageCache(100000, 60000);
+        longCache.putFailed(url(3));
+        Assert.assertTrue(longCache.hasFailed(url(3)));
+        longCache.put(url(3), image(3, 10, 10));
+        Assert.assertFalse(longCache.hasFailed(url(3)));
+    }
+
+    @Test
+    public void hitAndMissCounters() throws Exception
+    {
+        final BoundedImageCache cache = new BoundedImageCache(2 * IMAGE_SIZE);
+        Assert.assertNull(cache.get(url(1)));
+        cache.put(url(1), image(1, 10, 10));
+        cache.put(url(2), image(2, 10, 10));
+        Assert.assertNotNull(cache.get(url(1)));
+        Assert.assertNotNull(cache.get(url(1)));
+        Assert.assertNotNull(cache.get(url(2)));
+        cache.put(url(3), image(3, 10, 10)); //evicts 1
+        Assert.assertNull(cache.get(url(1)));
+        Assert.assertEquals(3, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        //the failure checks are not counted
+        cache.putFailed(url(4));
+        cache.hasFailed(url(4));
+        Assert.assertEquals(3, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        //clearing does not reset the counters
+        cache.clear();
+        Assert.assertEquals(3, cache.getHitCount());
+    }
+
+    //=========================================================================
+
+    private URL url(int i) throws Exception
+    {
+        return new URL("http://localhost/img" + i + ".png");
+    }
+
+    private BitmapImage image(int i, int width, int height) throws Exception
+    {
+        return new BitmapImage(url(i), new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+    }
+
+}
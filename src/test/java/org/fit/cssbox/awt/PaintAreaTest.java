@@ -0,0 +1,147 @@
+/*
+ * PaintAreaTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.awt;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.fit.cssbox.layout.LayoutTestUtils;
+import org.fit.cssbox.layout.Rectangle;
+import org.fit.cssbox.layout.Viewport;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that drawing only the boxes that may be visible in a paint area produces the same pixels
+ * in that area as drawing the complete box tree.
+ *
+ * @author agent
+ */
+public class PaintAreaTest
+{
+    private static final String PAGE = "<!DOCTYPE html><html><head><style>"
+            + "body { margin: 10px; font-size: 14px; }"
+            + ".rot { width: 200px; height: 80px; background: #c00; transform: rotate(30deg); margin: 40px; }"
+            + ".scale { width: 100px; height: 50px; background: #0c0; transform: scale(3) translate(40px, 10px); }"
+            + ".clip { width: 160px; height: 70px; overflow: hidden; border: 2px solid blue; }"
+            + ".clip div { width: 400px; height: 200px; background: #ff0; }"
+            + ".scroll { width: 200px; height: 60px; overflow: scroll; background: #eef; }"
+            + ".abs { position: absolute; left: 350px; top: 120px; width: 250px; height: 300px; background: #aaf; z-index: 3; }"
+            + ".neg { position: relative; z-index: -1; background: #ddd; left: 30px; }"
+            + "table { border-collapse: separate; border: 1px solid black; }"
+            + "td { border: 1px solid gray; padding: 6px; background: #fed; }"
+            + ".shadow { position: relative; top: -30px; left: 60px; }"
+            + "</style></head><body>"
+            + "<div class=\"rot\">Rotated box with text</div>"
+            + "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore "
+            + "et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris.</p>"
+            + "<div class=\"scale\">Scaled</div>"
+            + "<div class=\"clip\"><div>A clipped block with a long text that overflows the clipping box "
+            + "and that should not be visible outside of it.</div></div>"
+            + "<div class=\"scroll\">Scrolling box with a text that is longer than the box height so that it overflows "
+            + "at the bottom edge of the box.</div>"
+            + "<div class=\"abs\"><p>Absolutely positioned box</p><div class=\"rot\">Nested rotation</div></div>"
+            + "<div class=\"neg\">Negative z-index box behind the flow.</div>"
+            + "<table><tr><td>Cell 1</td><td>Cell 2 with a longer text</td><td rowspan=\"2\">Tall cell</td></tr>"
+            + "<tr><td colspan=\"2\">Spanning cell <span class=\"shadow\">shifted</span></td></tr></table>"
+            + "<ul><li>First item</li><li>Second item</li></ul>"
+            + "<div style=\"height: 400px; background: linear-gradient(#fff, #888)\">Tall block</div>"
+            + "</body></html>";
+
+    private static Viewport viewport;
+    private static int width;
+    private static int height;
+
+    @BeforeClass
+    public static void createLayout() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createEngine(PAGE);
+        engine.setImageOutput(false);
+        engine.createLayout(new org.fit.cssbox.layout.Dimension(700, 500));
+        viewport = engine.getViewport();
+        width = (int) viewport.getCanvasWidth();
+        height = (int) viewport.getCanvasHeight();
+    }
+
+    @Test
+    public void tilesMatchFullDrawing()
+    {
+        for (int size : new int[] { 50, 97, 256 })
+        {
+            for (int y = 0; y < height; y += size)
+            {
+                for (int x = 0; x < width; x += size)
+                    compareArea(new Rectangle(x, y, Math.min(size, width - x), Math.min(size, height - y)));
+            }
+        }
+    }
+
+    @Test
+    public void unalignedAreasMatchFullDrawing()
+    {
+        compareArea(new Rectangle(0, 0, width, height));
+        compareArea(new Rectangle(33, 17, 1, 1));
+        compareArea(new Rectangle(120, 90, 300, 7));
+        compareArea(new Rectangle(5, 150, 40, 400));
+        compareArea(new Rectangle(340, 110, 280, 330));
+        compareArea(new Rectangle(width - 10, height - 10, 10, 10));
+    }
+
+    //=========================================================================
+
+    private void compareArea(Rectangle area)
+    {
+        final BufferedImage full = draw(area, false);
+        final BufferedImage culled = draw(area, true);
+        for (int y = 0; y < full.getHeight(); y++)
+        {
+            for (int x = 0; x < full.getWidth(); x++)
+            {
+                if (full.getRGB(x, y) != culled.getRGB(x, y))
+                    Assert.fail("Pixel " + (x + (int) area.x) + ":" + (y + (int) area.y) + " differs in the paint area " + area);
+            }
+        }
+    }
+
+    /**
+     * Draws the given area of the viewport with or without specifying the paint area.
+     */
+    private BufferedImage draw(Rectangle area, boolean cull)
+    {
+        final int x = (int) area.x;
+        final int y = (int) area.y;
+        final BufferedImage ret = new BufferedImage((int) area.width, (int) area.height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = ret.createGraphics();
+        try {
+            g.translate(-x, -y);
+            g.clipRect(x, y, (int) area.width, (int) area.height);
+            final GraphicsRenderer r = new GraphicsRenderer(g);
+            r.init(viewport);
+            r.clearCanvas();
+            viewport.draw(r, cull ? area : null);
+            r.close();
+        } finally {
+            g.dispose();
+        }
+        return ret;
+    }
+
+}
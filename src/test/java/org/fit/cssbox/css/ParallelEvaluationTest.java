@@ -0,0 +1,167 @@
+/*
+ * ParallelEvaluationTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.css;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fit.cssbox.io.DefaultDOMSource;
+import org.fit.cssbox.io.DocumentSource;
+import org.fit.cssbox.io.StreamDocumentSource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import cz.vutbr.web.css.NodeData;
+import cz.vutbr.web.css.Selector.PseudoElementType;
+
+/**
+ * Checks that the parallel style evaluation of {@link DOMAnalyzer} produces the same styles
+ * as the sequential evaluation.
+ *
+ * @author agent
+ */
+public class ParallelEvaluationTest
+{
+    private static final String PAGE;
+    static
+    {
+        final StringBuilder sb = new StringBuilder("<!DOCTYPE html><html><head><style>"
+                + "body { font: 14px/1.4 serif; color: #222; }"
+                + "section { border: 1px solid gray; padding: 0.5em; }"
+                + "section:nth-child(odd) { background: #eee; color: navy; }"
+                + "section > h2 { font-size: 1.5em; margin: 0 0 0.3em; }"
+                + "h2::before { content: \"\\00A7 \"; color: red; }"
+                + "h2 + p { font-style: italic; }"
+                + "p ~ ul { margin-left: 2em; }"
+                + "p::first-line { font-weight: bold; }"
+                + "p::first-letter { font-size: 2em; float: left; }"
+                + "li:first-child { list-style-type: square; }"
+                + "li:not(.done)::after { content: \" (todo)\"; color: gray; }"
+                + "li.done { text-decoration: line-through; color: inherit; }"
+                + "a[href^=\"http\"] { color: green; }"
+                + "a[title]::after { content: attr(title); font-size: smaller; }"
+                + "td { padding: 2px; border: 1px solid #ccc; }"
+                + "tr:nth-child(2n) td { background: #f8f8f8; }"
+                + ".note { font-size: 0.8em; border-left: 3px solid orange; }"
+                + ".note span { font-weight: bolder; letter-spacing: 1px; }"
+                + "@media screen { .note { color: maroon; } }"
+                + "@media print { .note { display: none; } }"
+                + "</style></head><body>");
+        for (int s = 0; s < 200; s++)
+        {
+            sb.append("<section id=\"s").append(s).append("\"").append(s % 4 == 0 ? " class=\"note\"" : "").append(">");
+            sb.append("<h2>Section ").append(s).append("</h2>");
+            sb.append("<p>Paragraph with <a href=\"").append(s % 2 == 0 ? "http://example.org/" : "local.html")
+              .append("\"").append(s % 3 == 0 ? " title=\"link\"" : "").append(">a link</a> and <span>a span</span>.</p>");
+            sb.append("<ul>");
+            for (int i = 0; i < 4; i++)
+                sb.append("<li").append((s + i) % 3 == 0 ? " class=\"done\"" : "").append(">Item <em>").append(i).append("</em></li>");
+            sb.append("</ul>");
+            if (s % 5 == 0)
+            {
+                sb.append("<table>");
+                for (int r = 0; r < 3; r++)
+                    sb.append("<tr><td>").append(r).append("</td><td style=\"color: purple\">Cell</td></tr>");
+                sb.append("</table>");
+            }
+            sb.append("</section>");
+        }
+        PAGE = sb.append("</body></html>").toString();
+    }
+
+    @Test
+    public void parallelStylesMatchSequential() throws Exception
+    {
+        final DOMAnalyzer sequential = createAnalyzer(false);
+        final DOMAnalyzer parallel = createAnalyzer(true);
+        final List<Element> seqElems = new ArrayList<>();
+        final List<Element> parElems = new ArrayList<>();
+        collectElements(sequential.getRoot(), seqElems);
+        collectElements(parallel.getRoot(), parElems);
+        //the parallel evaluation is used for larger documents only
+        Assert.assertTrue("The document should be large enough", seqElems.size() > 2000);
+        Assert.assertEquals(seqElems.size(), parElems.size());
+
+        int pseudo = 0;
+        for (int i = 0; i < seqElems.size(); i++)
+        {
+            final Element se = seqElems.get(i);
+            final Element pe = parElems.get(i);
+            final String msg = se.getNodeName() + " #" + i;
+            assertSameStyle(msg, sequential.getElementStyle(se), parallel.getElementStyle(pe));
+            assertSameStyle(msg, sequential.getElementStyleInherited(se), parallel.getElementStyleInherited(pe));
+            for (PseudoElementType type : PseudoElementType.values())
+            {
+                Assert.assertEquals(msg + "::" + type, sequential.hasPseudoDef(se, type), parallel.hasPseudoDef(pe, type));
+                if (sequential.hasPseudoDef(se, type))
+                {
+                    assertSameStyle(msg + "::" + type, sequential.getElementStyleInherited(se, type),
+                            parallel.getElementStyleInherited(pe, type));
+                    pseudo++;
+                }
+            }
+        }
+        Assert.assertTrue("Some pseudo-elements should be checked", pseudo > 200);
+    }
+
+    //=========================================================================
+
+    private DOMAnalyzer createAnalyzer(boolean parallel) throws Exception
+    {
+        try (DocumentSource src = new StreamDocumentSource(new ByteArrayInputStream(PAGE.getBytes(StandardCharsets.UTF_8)),
+                new URL("http://localhost/test.html"), "text/html; charset=utf-8"))
+        {
+            final Document doc = new DefaultDOMSource(src).parse();
+            final DOMAnalyzer da = new DOMAnalyzer(doc, src.getURL());
+            da.setParallelEvaluation(parallel);
+            da.attributesToStyles();
+            da.addStyleSheet(null, CSSNorm.stdStyleSheet(), DOMAnalyzer.Origin.AGENT);
+            da.addStyleSheet(null, CSSNorm.userStyleSheet(), DOMAnalyzer.Origin.AGENT);
+            da.getStyleSheets();
+            return da;
+        }
+    }
+
+    private void assertSameStyle(String msg, NodeData expected, NodeData actual)
+    {
+        if (expected == null)
+            Assert.assertNull(msg, actual);
+        else
+        {
+            Assert.assertNotNull(msg, actual);
+            Assert.assertEquals(msg, expected.toString(), actual.toString());
+        }
+    }
+
+    private void collectElements(Node node, List<Element> elems)
+    {
+        if (node.getNodeType() == Node.ELEMENT_NODE)
+            elems.add((Element) node);
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+            collectElements(child, elems);
+    }
+
+}
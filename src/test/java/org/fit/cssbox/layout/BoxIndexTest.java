@@ -0,0 +1,217 @@
+/*
+ * BoxIndexTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Compares the results of the {@link BoxIndex} queries with a brute-force search of the box tree.
+ *
+ * @author agent
+ */
+public class BoxIndexTest
+{
+    private static final String PAGE = "<!DOCTYPE html><html><head><style>"
+            + "body { margin: 10px; font-size: 14px; }"
+            + ".float { float: left; width: 120px; height: 90px; background: #ccc; margin: 5px; }"
+            + ".abs { position: absolute; left: 200px; top: 40px; width: 300px; height: 150px; background: #eee; z-index: 2; }"
+            + ".neg { position: relative; z-index: -1; background: #ddd; }"
+            + ".clip { width: 150px; height: 60px; overflow: hidden; border: 1px solid black; }"
+            + "td { border: 1px solid gray; padding: 4px; }"
+            + "</style></head><body>"
+            + "<h1 id=\"title\">Box index test</h1>"
+            + "<div class=\"float\" id=\"f1\">Floating box</div>"
+            + "<p>Lorem ipsum dolor sit amet, <span id=\"s1\">consectetur <b>adipiscing</b> elit</span>, sed do eiusmod "
+            + "tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation "
+            + "ullamco laboris nisi ut aliquip ex ea commodo consequat.</p>"
+            + "<div class=\"abs\" id=\"a1\"><p>Absolutely positioned box with some text that overlaps the flow.</p></div>"
+            + "<div class=\"neg\">Negative z-index box with text.</div>"
+            + "<div class=\"clip\">A clipping block with a long text that does not fit into the box and that is clipped "
+            + "at the bottom edge of the box.</div>"
+            + "<table><tr><td>Cell 1</td><td id=\"c2\">Cell 2 with a longer text</td></tr>"
+            + "<tr><td colspan=\"2\">Spanning cell</td></tr></table>"
+            + "<ul><li>First item</li><li>Second item</li></ul>"
+            + "</body></html>";
+
+    private static Viewport viewport;
+    /** The boxes in the painting order obtained by a complete drawing of the tree */
+    private static List<Box> painted;
+
+    @BeforeClass
+    public static void createLayout() throws Exception
+    {
+        viewport = LayoutTestUtils.createLayout(PAGE, 800, 600).getViewport();
+        final BoxIndex.Recorder recorder = new BoxIndex.Recorder();
+        viewport.draw(recorder, null);
+        painted = recorder.getBoxes();
+    }
+
+    @Test
+    public void boxAtMatchesLinearSearch()
+    {
+        int found = 0;
+        for (float y = -5; y < viewport.getCanvasHeight() + 5; y += 7)
+        {
+            for (float x = -5; x < viewport.getCanvasWidth() + 5; x += 7)
+            {
+                Box expected = null;
+                for (int i = painted.size() - 1; i >= 0 && expected == null; i--)
+                {
+                    if (getHitBounds(painted.get(i)).contains(x, y))
+                        expected = painted.get(i);
+                }
+                final Box box = viewport.getBoxAt(x, y);
+                Assert.assertSame("Box at " + x + ":" + y, expected, box);
+                if (box != null && !(box instanceof Viewport))
+                    found++;
+            }
+        }
+        Assert.assertTrue("Some boxes should be found", found > 0);
+    }
+
+    @Test
+    public void boxesInMatchLinearSearch()
+    {
+        final float[][] rects = {
+                { 0, 0, 50, 50 }, { 100, 30, 250, 80 }, { 190, 35, 20, 20 }, { 0, 200, 800, 10 },
+                { 300, 300, 1, 1 }, { -20, -20, 10, 10 }, { 0, 0, 2000, 2000 }, { 15, 250, 400, 300 } };
+        for (float[] r : rects)
+        {
+            final Rectangle rect = new Rectangle(r[0], r[1], r[2], r[3]);
+            final List<Box> expected = new ArrayList<>();
+            final Map<Box, Boolean> used = new IdentityHashMap<>();
+            for (Box box : painted)
+            {
+                if (getHitBounds(box).intersects(rect) && used.put(box, Boolean.TRUE) == null)
+                    expected.add(box);
+            }
+            Assert.assertEquals("Boxes in " + rect, expected, viewport.getBoxesIn(rect));
+        }
+    }
+
+    @Test
+    public void allDisplayedBoxesArePainted()
+    {
+        final Map<Box, Boolean> paintedSet = new IdentityHashMap<>();
+        for (Box box : painted)
+            paintedSet.put(box, Boolean.TRUE);
+        final List<Box> missing = new ArrayList<>();
+        findMissing(viewport, paintedSet, missing);
+        Assert.assertEquals(Collections.emptyList(), missing);
+    }
+
+    @Test
+    public void elementLookupMatchesTreeWalk()
+    {
+        for (String id : new String[] { "title", "f1", "s1", "a1", "c2" })
+        {
+            final ElementBox expected = findById(viewport, id);
+            Assert.assertNotNull("Box for " + id, expected);
+            Assert.assertSame(expected, viewport.getElementBoxById(id));
+            Assert.assertSame(expected, viewport.getElementBox(expected.getElement()));
+        }
+        Assert.assertNull(viewport.getElementBoxById("none"));
+    }
+
+    @Test
+    public void concurrentCreationReturnsSameIndex() throws Exception
+    {
+        final Viewport vp = LayoutTestUtils.createLayout(PAGE, 640, 480).getViewport();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Callable<BoxIndex>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                tasks.add(vp::getBoxIndex);
+            BoxIndex first = null;
+            for (Future<BoxIndex> result : executor.invokeAll(tasks))
+            {
+                if (first == null)
+                    first = result.get();
+                Assert.assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    //=========================================================================
+
+    /**
+     * Computes the hit-testing bounds of a box the same way as the index does.
+     */
+    private static Rectangle getHitBounds(Box box)
+    {
+        if (box instanceof Viewport)
+            return new Rectangle(0, 0, viewport.getCanvasWidth(), viewport.getCanvasHeight());
+        final Rectangle ret = (box instanceof ElementBox) ?
+                ((ElementBox) box).getAbsoluteBorderBounds() : box.getAbsoluteBounds();
+        final ElementBox clip = box.getClipBlock();
+        if (clip != null && !(clip instanceof Viewport))
+            return clip.getClippedContentBounds().intersection(ret);
+        else
+            return ret;
+    }
+
+    private static void findMissing(Box box, Map<Box, Boolean> paintedSet, List<Box> missing)
+    {
+        if (box.isDisplayed() && box.isDeclaredVisible()
+                && (box instanceof TextBox && !((TextBox) box).isEmpty() || box instanceof BlockBox)
+                && getHitBounds(box).width > 0 && getHitBounds(box).height > 0 //not completely clipped out
+                && !paintedSet.containsKey(box))
+            missing.add(box);
+        if (box instanceof ElementBox && box.isDisplayed())
+        {
+            final ElementBox elem = (ElementBox) box;
+            for (int i = elem.getStartChild(); i < elem.getEndChild(); i++)
+                findMissing(elem.getSubBox(i), paintedSet, missing);
+        }
+    }
+
+    private static ElementBox findById(ElementBox box, String id)
+    {
+        final Element e = box.getElement();
+        if (e != null && id.equals(e.getAttribute("id")))
+            return box;
+        for (int i = 0; i < box.getSubBoxNumber(); i++)
+        {
+            if (box.getSubBox(i) instanceof ElementBox)
+            {
+                final ElementBox ret = findById((ElementBox) box.getSubBox(i), id);
+                if (ret != null)
+                    return ret;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * FloatListTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the results of the {@link FloatList} queries with a linear scan of all the floating boxes.
+ *
+ * @author agent
+ */
+public class FloatListTest
+{
+    private static final String PAGE;
+    static
+    {
+        final StringBuilder sb = new StringBuilder("<!DOCTYPE html><html><head><style>"
+                + "body { font-size: 12px; }"
+                + ".l { float: left; border: 1px solid black; }"
+                + ".r { float: right; border: 1px solid black; }"
+                + ".h { visibility: hidden; }"
+                + "</style></head><body>");
+        for (int b = 0; b < 3; b++)
+        {
+            sb.append("<div>");
+            for (int i = 0; i < 30; i++)
+            {
+                sb.append("<div class=\"").append(i % 3 == 0 ? "r" : "l").append(i % 7 == 0 ? " h" : "")
+                  .append("\" style=\"width: ").append(10 + (i * 37) % 90).append("px; height: ")
+                  .append(5 + (i * 53) % 70).append("px\">").append(i).append("</div>");
+                if (i % 5 == 0)
+                    sb.append("<p>Some text flowing around the floating boxes.</p>");
+            }
+            sb.append("<div style=\"float: left\"><div class=\"l\" style=\"width: 20px; height: 30px\">n</div>"
+                    + "<div class=\"r\" style=\"width: 40px; height: 10px\">n</div></div>");
+            sb.append("</div>");
+        }
+        PAGE = sb.append("</body></html>").toString();
+    }
+
+    @Test
+    public void layoutFloatsMatchLinearScan() throws Exception
+    {
+        final Viewport viewport = LayoutTestUtils.createLayout(PAGE, 500, 600).getViewport();
+        final List<BlockBox> owners = new ArrayList<>();
+        collectOwners(viewport, owners);
+        int checked = 0;
+        for (BlockBox owner : owners)
+        {
+            checkList(owner.fleft, owners);
+            checkList(owner.fright, owners);
+            checked += owner.fleft.size() + owner.fright.size();
+        }
+        Assert.assertTrue("Some floats should be checked", checked > 90);
+    }
+
+    @Test
+    public void relaidCellFloatsMatchLinearScan() throws Exception
+    {
+        //the table is laid out again below the floats; the cell keeps its float lists
+        final String page = "<!DOCTYPE html><html><head><style>body { font-size: 14px; }</style></head><body>"
+                + "<div style=\"float: left; width: 100px; height: 40px\">f1</div>"
+                + "<div style=\"float: left; width: 500px; height: 80px\">f2</div>"
+                + "<table style=\"margin-right: 350px\"><tr><td>Lorem ipsum dolor sit amet, consectetur adipiscing "
+                + "elit, sed do eiusmod tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, "
+                + "quis nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat."
+                + "<div style=\"float: left; width: 60px; height: 30px\">in</div> Excepteur sint occaecat "
+                + "cupidatat non proident, sunt in culpa qui officia deserunt mollit anim id est laborum."
+                + "<div style=\"float: right; width: 30px; height: 50px\">r</div> More text to wrap around.</td></tr></table>"
+                + "</body></html>";
+        for (float width : new float[] { 400, 500, 600 })
+        {
+            final Viewport viewport = LayoutTestUtils.createLayout(page, width, 600).getViewport();
+            final List<BlockBox> owners = new ArrayList<>();
+            collectOwners(viewport, owners);
+            int cells = 0;
+            for (BlockBox owner : owners)
+            {
+                if (owner instanceof TableCellBox)
+                {
+                    for (FloatList list : new FloatList[] { owner.fleft, owner.fright })
+                    {
+                        checkList(list, owners);
+                        //the previous positions of the boxes may be anywhere in the cell
+                        for (float y = -1; y <= owner.getHeight() + 1; y += 0.5f)
+                        {
+                            Assert.assertEquals("Width at " + y, getWidth(list, y), list.getWidth(y), 0.0f);
+                            Assert.assertEquals("Next Y at " + y, getNextY(list, y), list.getNextY(y), 0.0f);
+                        }
+                    }
+                    cells++;
+                }
+            }
+            Assert.assertEquals(1, cells);
+        }
+    }
+
+    @Test
+    public void overlappingFloatsMatchLinearScan() throws Exception
+    {
+        final Viewport viewport = LayoutTestUtils.createLayout(PAGE, 500, 600).getViewport();
+        final List<BlockBox> floats = new ArrayList<>();
+        collectFloats(viewport, floats);
+        final List<BlockBox> owners = new ArrayList<>();
+        collectOwners(viewport, owners);
+
+        final Random random = new Random(42);
+        for (int run = 0; run < 20; run++)
+        {
+            final FloatList list = new FloatList(viewport);
+            for (BlockBox box : floats)
+            {
+                //many overlapping boxes with shared edges, empty boxes and boxes left of zero
+                box.bounds.x = random.nextInt(40) * 5 - 60;
+                box.bounds.y = random.nextInt(60) * 2.5f - 10;
+                box.bounds.width = random.nextInt(30) * 4;
+                box.bounds.height = (random.nextInt(10) == 0) ? 0 : random.nextInt(50) * 2.5f;
+                list.add(box);
+                if (list.size() % 10 == 0)
+                    checkList(list, owners);
+            }
+            checkList(list, owners);
+        }
+    }
+
+    //=========================================================================
+
+    private void checkList(FloatList list, List<BlockBox> owners)
+    {
+        final TreeSet<Float> ys = new TreeSet<>();
+        ys.add(-100f);
+        ys.add(0f);
+        for (int i = 0; i < list.size(); i++)
+        {
+            final Rectangle b = list.getBox(i).getBounds();
+            for (float y : new float[] { b.y, b.y + b.height })
+            {
+                ys.add(y);
+                ys.add(y - 0.5f);
+                ys.add(y + 0.5f);
+                ys.add(Math.nextDown(y));
+                ys.add(Math.nextUp(y));
+            }
+        }
+        for (float y : ys)
+        {
+            Assert.assertEquals("Width at " + y, getWidth(list, y), list.getWidth(y), 0.0f);
+            Assert.assertEquals("Next Y at " + y, getNextY(list, y), list.getNextY(y), 0.0f);
+        }
+        for (BlockBox owner : owners)
+        {
+            Assert.assertEquals(getMaxYForOwner(list, owner, false), list.getMaxYForOwner(owner, false), 0.0f);
+            Assert.assertEquals(getMaxYForOwner(list, owner, true), list.getMaxYForOwner(owner, true), 0.0f);
+        }
+    }
+
+    //the original linear implementations
+
+    private float getWidth(FloatList list, float y)
+    {
+        float maxx = 0;
+        for (int i = 0; i < list.size(); i++)
+        {
+            Box box = list.getBox(i);
+            if (box.getBounds().y <= y &&
+                box.getBounds().y + box.getBounds().height > y)
+            {
+                float wx = box.getBounds().x + box.getBounds().width;
+                if (wx > maxx) maxx = wx;
+            }
+        }
+        return maxx;
+    }
+
+    private float getNextY(FloatList list, float y)
+    {
+        float maxx = 0;
+        float nexty = -1;
+        for (int i = 0; i < list.size(); i++)
+        {
+            Box box = list.getBox(i);
+            if (box.getBounds().y <= y &&
+                box.getBounds().y + box.getBounds().height > y)
+            {
+                float wx = box.getBounds().x + box.getBounds().width;
+                if (wx > maxx)
+                {
+                    maxx = wx;
+                    nexty = box.getBounds().y + box.getBounds().height;
+                }
+            }
+        }
+        return nexty;
+    }
+
+    private float getMaxYForOwner(FloatList list, BlockBox owner, boolean requireVisible)
+    {
+        float maxy = 0;
+        for (int i = 0; i < list.size(); i++)
+        {
+            Box box = list.getBox(i);
+            if ((!requireVisible || box.isDeclaredVisible()) && box.getContainingBlockBox() == owner)
+            {
+                float ny = box.bounds.y + box.bounds.height;
+                if (ny > maxy) maxy = ny;
+            }
+        }
+        return maxy;
+    }
+
+    private void collectOwners(Box box, List<BlockBox> owners)
+    {
+        if (box instanceof BlockBox && ((BlockBox) box).fleft != null
+                && ((BlockBox) box).fleft.getOwner() == box)
+            owners.add((BlockBox) box);
+        if (box instanceof ElementBox)
+        {
+            final ElementBox elem = (ElementBox) box;
+            for (int i = 0; i < elem.getSubBoxNumber(); i++)
+                collectOwners(elem.getSubBox(i), owners);
+        }
+    }
+
+    private void collectFloats(Box box, List<BlockBox> floats)
+    {
+        if (box instanceof BlockBox && ((BlockBox) box).isFloating())
+            floats.add((BlockBox) box);
+        if (box instanceof ElementBox)
+        {
+            final ElementBox elem = (ElementBox) box;
+            for (int i = 0; i < elem.getSubBoxNumber(); i++)
+                collectFloats(elem.getSubBox(i), floats);
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * IntrinsicWidthTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fit.cssbox.awt.GraphicsEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the cached minimal and maximal widths of the boxes are equal to the widths computed
+ * with all the caches discarded.
+ *
+ * @author agent
+ */
+public class IntrinsicWidthTest
+{
+    private static final String PAGE = "<!DOCTYPE html><html><head><style>"
+            + "body { font-size: 14px; }"
+            + ".float { float: left; border: 1px solid black; padding: 3px; margin: 2px; }"
+            + ".ib { display: inline-block; padding: 0 5px; border: 2px solid gray; }"
+            + "td { border: 1px solid gray; padding: 4px; }"
+            + ".fixed { width: 120px; }"
+            + "</style></head><body>"
+            + "<div class=\"float\"><table><tr><td>Shrink</td><td>to fit table with <b>some</b> text</td></tr>"
+            + "<tr><td colspan=\"2\">A spanning cell with a longer text in it</td></tr></table></div>"
+            + "<div class=\"float\" style=\"width: 40%\"><p>Floating block with a relative width and "
+            + "<span class=\"ib\">an inline block</span> inside of it.</p></div>"
+            + "<table style=\"border-spacing: 6px\"><thead><tr><th>Header 1</th><th>Header 2</th><th>Header 3</th></tr></thead>"
+            + "<tbody><tr><td class=\"fixed\">Fixed width cell</td><td>Cell with a nested table: "
+            + "<table><tr><td>Nested 1</td><td>Nested cell 2 with text</td></tr></table></td>"
+            + "<td rowspan=\"2\">Tall cell with a long text that may be wrapped</td></tr>"
+            + "<tr><td>Short</td><td style=\"width: 30%\">Relative width cell</td></tr></tbody>"
+            + "<tfoot><tr><td colspan=\"3\">Footer</td></tr></tfoot></table>"
+            + "<ul><li>Item <img src=\"data:,\" width=\"50\" height=\"20\"> with an image</li></ul>"
+            + "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt ut labore.</p>"
+            + "</body></html>";
+
+    @Test
+    public void cachedWidthsMatchAfterLayout() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 900, 600);
+        checkWidths(engine.getViewport());
+    }
+
+    @Test
+    public void cachedWidthsMatchAfterRelayout() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 900, 600);
+        for (float width : new float[] { 300, 1200, 150, 640 })
+        {
+            engine.updateLayout(new Dimension(width, 600));
+            checkWidths(engine.getViewport());
+        }
+    }
+
+    @Test
+    public void cachedWidthsMatchAfterInvalidation() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 900, 600);
+        final Viewport viewport = engine.getViewport();
+        final List<ElementBox> boxes = new ArrayList<>();
+        collect(viewport, boxes);
+        final List<float[]> before = getWidths(boxes);
+
+        //invalidate the deepest table cell; all its ancestors must be recomputed
+        ElementBox cell = null;
+        for (ElementBox box : boxes)
+        {
+            if (box instanceof TableCellBox)
+                cell = box;
+        }
+        Assert.assertNotNull(cell);
+        cell.invalidateIntrinsicWidths();
+        for (ElementBox box = cell; box != null; box = box.getParent())
+        {
+            Assert.assertTrue(box.minContentWidth < 0 && box.maxContentWidth < 0);
+            if (box instanceof TableBodyBox)
+                Assert.assertTrue("Column sums should match the columns", matchesColumnSums((TableBodyBox) box));
+        }
+        assertWidthsEqual(before, getWidths(boxes));
+        checkWidths(viewport);
+    }
+
+    //=========================================================================
+
+    /**
+     * Compares the widths obtained from the current caches with the widths computed
+     * after discarding all the caches.
+     */
+    private void checkWidths(Viewport viewport)
+    {
+        final List<ElementBox> boxes = new ArrayList<>();
+        collect(viewport, boxes);
+        final List<float[]> cached = getWidths(boxes);
+        for (ElementBox box : boxes)
+            box.clearIntrinsicWidths();
+        assertWidthsEqual(getWidths(boxes), cached);
+    }
+
+    private void collect(ElementBox box, List<ElementBox> boxes)
+    {
+        boxes.add(box);
+        for (int i = 0; i < box.getSubBoxNumber(); i++)
+        {
+            if (box.getSubBox(i) instanceof ElementBox)
+                collect((ElementBox) box.getSubBox(i), boxes);
+        }
+    }
+
+    private List<float[]> getWidths(List<ElementBox> boxes)
+    {
+        final List<float[]> ret = new ArrayList<>(boxes.size());
+        for (ElementBox box : boxes)
+            ret.add(new float[] { box.getMinimalWidth(), box.getMaximalWidth() });
+        return ret;
+    }
+
+    private void assertWidthsEqual(List<float[]> expected, List<float[]> actual)
+    {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            Assert.assertArrayEquals("Box " + i, expected.get(i), actual.get(i), 0.0f);
+    }
+
+    private boolean matchesColumnSums(TableBodyBox body)
+    {
+        //the column sums are private; compare the computed sum with a fresh computation instead
+        float min = body.spacing;
+        float max = body.spacing;
+        for (int i = 0; i < body.getColumnCount(); i++)
+        {
+            min += body.getMinimalColumnWidth(i) + body.spacing;
+            max += body.getMaximalColumnWidth(i) + body.spacing;
+        }
+        return body.getMinimalWidth() == min && body.getMaximalWidth() == max;
+    }
+
+}
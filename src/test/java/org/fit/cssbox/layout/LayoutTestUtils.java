@@ -0,0 +1,125 @@
+/*
+ * LayoutTestUtils.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.fit.cssbox.awt.GraphicsEngine;
+import org.fit.cssbox.css.CSSNorm;
+import org.fit.cssbox.css.DOMAnalyzer;
+import org.fit.cssbox.io.DefaultDOMSource;
+import org.fit.cssbox.io.DocumentSource;
+import org.fit.cssbox.io.StreamDocumentSource;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Common code for the layout tests: creating the layout of an HTML source code and
+ * describing the resulting box tree.
+ *
+ * @author agent
+ */
+public class LayoutTestUtils
+{
+    /** The base URL of the tested documents */
+    public static final String BASE_URL = "http://localhost/test.html";
+
+    /**
+     * Parses the document and creates its style analyzer with the standard style sheets.
+     * @param html the HTML source code
+     * @return the analyzer
+     */
+    public static DOMAnalyzer createAnalyzer(String html) throws IOException, SAXException
+    {
+        try (DocumentSource src = new StreamDocumentSource(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)),
+                new URL(BASE_URL), "text/html; charset=utf-8"))
+        {
+            final Document doc = new DefaultDOMSource(src).parse();
+            final DOMAnalyzer da = new DOMAnalyzer(doc, src.getURL());
+            da.attributesToStyles();
+            da.addStyleSheet(null, CSSNorm.stdStyleSheet(), DOMAnalyzer.Origin.AGENT);
+            da.addStyleSheet(null, CSSNorm.userStyleSheet(), DOMAnalyzer.Origin.AGENT);
+            da.addStyleSheet(null, CSSNorm.formsStyleSheet(), DOMAnalyzer.Origin.AGENT);
+            da.getStyleSheets();
+            return da;
+        }
+    }
+
+    /**
+     * Creates an engine for the document without creating the layout.
+     * @param html the HTML source code
+     * @return the engine
+     */
+    public static GraphicsEngine createEngine(String html) throws IOException, SAXException
+    {
+        final DOMAnalyzer da = createAnalyzer(html);
+        final GraphicsEngine engine = new GraphicsEngine(da.getRoot(), da, new URL(BASE_URL));
+        engine.setAutoMediaUpdate(false);
+        return engine;
+    }
+
+    /**
+     * Creates the layout of the document.
+     * @param html the HTML source code
+     * @param width the viewport width
+     * @param height the viewport height
+     * @return the engine with the layout created and rendered
+     */
+    public static GraphicsEngine createLayout(String html, float width, float height) throws IOException, SAXException
+    {
+        final GraphicsEngine engine = createEngine(html);
+        engine.createLayout(new Dimension(width, height));
+        return engine;
+    }
+
+    /**
+     * Describes the box tree: the box types, their bounds and the text contents.
+     * Two layouts are equal when their descriptions are equal.
+     * @param root the root of the described subtree
+     * @return the description
+     */
+    public static String describe(Box root)
+    {
+        final StringBuilder sb = new StringBuilder();
+        describe(root, sb, 0);
+        return sb.toString();
+    }
+
+    private static void describe(Box box, StringBuilder sb, int level)
+    {
+        for (int i = 0; i < level; i++)
+            sb.append(' ');
+        sb.append(box.getClass().getSimpleName()).append(' ')
+          .append(box.getBounds()).append(' ').append(box.getAbsoluteBounds());
+        if (box instanceof TextBox)
+            sb.append(" '").append(((TextBox) box).getText()).append('\'');
+        sb.append('\n');
+        if (box instanceof ElementBox)
+        {
+            final ElementBox elem = (ElementBox) box;
+            for (int i = elem.getStartChild(); i < elem.getEndChild(); i++)
+                describe(elem.getSubBox(i), sb, level + 1);
+        }
+    }
+
+}
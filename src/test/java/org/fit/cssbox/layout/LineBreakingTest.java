@@ -0,0 +1,230 @@
+/*
+ * LineBreakingTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.cssbox.awt.GraphicsEngine;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Node;
+
+/**
+ * Compares the line breaks found by {@link TextBox#doLayout(float, boolean, boolean)} with the original
+ * algorithm that steps back one word at a time and measures the whole line for every step.
+ *
+ * @author agent
+ */
+public class LineBreakingTest
+{
+    private static final String TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua. Supercalifragilisticexpialidocious words, i, a, "
+            + "WWWWWW mmmm iiii ... ut enim ad minim veniam.";
+
+    private static final String PAGE = "<!DOCTYPE html><html><head><style>"
+            + "body { font-size: 14px; }"
+            + ".ws { word-spacing: 6px; }"
+            + ".neg { word-spacing: -3px; }"
+            + ".pre { white-space: pre-wrap; }"
+            + ".nowrap { white-space: nowrap; }"
+            + ".mono { font-family: monospace; font-size: 11px; }"
+            + ".big { font-size: 23px; font-family: serif; }"
+            + "</style></head><body>"
+            + "<p>" + TEXT + "</p>"
+            + "<p class=\"ws\">" + TEXT + "</p>"
+            + "<p class=\"neg\">" + TEXT + "</p>"
+            + "<p class=\"pre\">" + TEXT.replace(", ", ",   ") + "</p>"
+            + "<p class=\"nowrap\">" + TEXT + "</p>"
+            + "<p class=\"mono\">" + TEXT + "</p>"
+            + "<p class=\"big\">" + TEXT + "</p>"
+            + "</body></html>";
+
+    private static List<TextBox> boxes;
+
+    @BeforeClass
+    public static void createLayout() throws Exception
+    {
+        boxes = new ArrayList<>();
+        //kerning requires measuring the text directly, without kerning the prefix widths are used
+        for (boolean kerning : new boolean[] { true, false })
+        {
+            final GraphicsEngine engine = LayoutTestUtils.createEngine(PAGE);
+            engine.setUseKerning(kerning);
+            engine.createLayout(new Dimension(800, 600));
+            collect(engine.getViewport(), new IdentityHashMap<>());
+        }
+        Assert.assertEquals(14, boxes.size());
+    }
+
+    @Test
+    public void forcedLinesMatchOriginalBreaking()
+    {
+        for (TextBox box : boxes)
+        {
+            for (float width = 1; width < 900; width += 17.3f)
+                checkLines(box, width);
+        }
+    }
+
+    @Test
+    public void failedPlacementMatchesOriginalBreaking()
+    {
+        for (TextBox box : boxes)
+        {
+            final String text = getFullText(box);
+            for (float width = 0; width < 200; width += 2.5f)
+            {
+                final TextBox copy = createCopy(box);
+                final boolean placed = copy.doLayout(width, false, true);
+                final Line expected = breakLine(copy, text, 0, width, false);
+                Assert.assertEquals(box + " at " + width, expected != null, placed);
+                if (expected != null)
+                    assertLine(expected, copy, width);
+            }
+        }
+    }
+
+    //=========================================================================
+
+    /**
+     * Lays out the whole text in lines of the given width and compares every line with the original algorithm.
+     */
+    private void checkLines(TextBox box, float width)
+    {
+        final String text = getFullText(box);
+        TextBox current = createCopy(box);
+        int lines = 0;
+        while (current != null)
+        {
+            final int start = current.getTextStart();
+            current.doLayout(width, true, true);
+            final Line expected = breakLine(current, text, start, width, true);
+            assertLine(expected, current, width);
+            current = (TextBox) current.getRest();
+            Assert.assertTrue("Too many lines", ++lines <= text.length());
+        }
+    }
+
+    private void assertLine(Line expected, TextBox box, float width)
+    {
+        final String msg = box + " at " + width;
+        Assert.assertEquals(msg, expected.start, box.getTextStart());
+        Assert.assertEquals(msg, expected.end, box.getTextEnd());
+        Assert.assertEquals(msg, expected.width, box.getWidth(), 0.001f);
+    }
+
+    /**
+     * The original line breaking algorithm.
+     * @return the resulting line or {@code null} when nothing could be placed and the placement was not forced
+     */
+    private Line breakLine(TextBox box, String text, int start, float wlimit, boolean force)
+    {
+        int end = text.length();
+        if (box.collapsesSpaces())
+        {
+            while (start < end && Character.isWhitespace(text.charAt(start)))
+                start++;
+        }
+        float w;
+        do
+        {
+            w = measure(box, text, start, end);
+            if (w > wlimit)
+            {
+                int wordend = text.lastIndexOf(' ', end - 1); //find previous word
+                while (wordend > 0 && text.charAt(wordend - 1) == ' ') wordend--; //skip trailing spaces
+                if (wordend <= start || !box.allowsWrapping()) //no previous word, cannot split or splitting not allowed
+                {
+                    if (!force)
+                        return null;
+                    break;
+                }
+                else
+                    end = wordend;
+            }
+        } while (end > start && w > wlimit);
+        return new Line(start, end, w);
+    }
+
+    /**
+     * Measures the text directly including the word spacing.
+     */
+    private float measure(TextBox box, String text, int start, int end)
+    {
+        float w = box.getVisualContext().stringWidth(text, start, end);
+        if (box.getWordSpacing() != null)
+        {
+            for (int i = start; i < end; i++)
+            {
+                if (text.charAt(i) == ' ')
+                    w += box.getWordSpacing();
+            }
+        }
+        return w;
+    }
+
+    private TextBox createCopy(TextBox box)
+    {
+        final TextBox ret = box.copyTextBox();
+        ret.setTextStart(0);
+        return ret;
+    }
+
+    private String getFullText(TextBox box)
+    {
+        final TextBox copy = createCopy(box);
+        copy.doLayout(Float.MAX_VALUE, true, false);
+        return copy.getText();
+    }
+
+    private static void collect(Box box, Map<Node, Boolean> used)
+    {
+        if (box instanceof TextBox)
+        {
+            if (!((TextBox) box).isEmpty() && used.put(box.getNode(), Boolean.TRUE) == null)
+                boxes.add((TextBox) box);
+        }
+        else if (box instanceof ElementBox)
+        {
+            final ElementBox elem = (ElementBox) box;
+            for (int i = 0; i < elem.getSubBoxNumber(); i++)
+                collect(elem.getSubBox(i), used);
+        }
+    }
+
+    private static class Line
+    {
+        public final int start;
+        public final int end;
+        public final float width;
+
+        public Line(int start, int end, float width)
+        {
+            this.start = start;
+            this.end = end;
+            this.width = width;
+        }
+    }
+
+}
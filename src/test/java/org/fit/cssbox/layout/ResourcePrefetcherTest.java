@@ -0,0 +1,103 @@
+/*
+ * ResourcePrefetcherTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NetworkProcessor;
+import cz.vutbr.web.css.StyleSheet;
+
+/**
+ * Checks that {@link ResourcePrefetcher#isUsedStyleSheetLink(String, String, String, MediaSpec)} recognizes
+ * the same style sheet links as jStyleParser when loading the style sheets.
+ *
+ * @author agent
+ */
+public class ResourcePrefetcherTest
+{
+    private static final String[] RELS = { null, "stylesheet", "STYLESHEET", "alternate stylesheet", "icon", "" };
+    private static final String[] TYPES = { null, "", "text/css", "TEXT/CSS", " text/css", "text/less" };
+    private static final String[] MEDIA = { null, "", "  ", "screen", "print", " all ",
+            "screen and (min-width: 500px)", "screen and (min-width: 2000px)", "print, screen", "(((" };
+
+    /** Provides a non-empty style sheet for any URL */
+    private static final NetworkProcessor NETWORK = url -> new ByteArrayInputStream(
+            "p { color: red; }".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    public void linksMatchStyleSheetLoading() throws Exception
+    {
+        final MediaSpec screen = new MediaSpec("screen");
+        screen.setDimensions(800, 600);
+        final MediaSpec print = new MediaSpec("print");
+        final URL base = new URL(LayoutTestUtils.BASE_URL);
+        int used = 0;
+        for (MediaSpec spec : new MediaSpec[] { screen, print })
+        {
+            for (String rel : RELS)
+                for (String type : TYPES)
+                    for (String media : MEDIA)
+                    {
+                        final Document doc = createDocument(rel, type, media);
+                        final StyleSheet sheet = CSSFactory.getUsedStyles(doc, null, base, spec, NETWORK);
+                        final boolean expected = !sheet.isEmpty();
+                        Assert.assertEquals("rel=" + rel + " type=" + type + " media=" + media + " for " + spec,
+                                expected, ResourcePrefetcher.isUsedStyleSheetLink(rel, type, media, spec));
+                        if (expected)
+                            used++;
+                    }
+        }
+        Assert.assertTrue("Some links should be used", used > 20);
+    }
+
+    //=========================================================================
+
+    private Document createDocument(String rel, String type, String media) throws Exception
+    {
+        final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        final Element html = doc.createElement("html");
+        final Element head = doc.createElement("head");
+        final Element link = doc.createElement("link");
+        link.setAttribute("href", "style.css");
+        if (rel != null)
+            link.setAttribute("rel", rel);
+        if (type != null)
+            link.setAttribute("type", type);
+        if (media != null)
+            link.setAttribute("media", media);
+        doc.appendChild(html);
+        html.appendChild(head);
+        head.appendChild(link);
+        html.appendChild(doc.createElement("body"));
+        return doc;
+    }
+
+}
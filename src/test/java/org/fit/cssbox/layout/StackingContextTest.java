@@ -0,0 +1,215 @@
+/*
+ * StackingContextTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.fit.cssbox.awt.GraphicsEngine;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Compares the painting order of the frozen {@link StackingContext} with the original implementation
+ * that kept a list of child contexts for each z-index in the registration order.
+ *
+ * @author agent
+ */
+public class StackingContextTest
+{
+    /** The overlapping boxes: id, z-index (null for auto), left position and color */
+    private static final Object[][] BOXES = {
+            { "p5", 5, 200, 0x000080 },
+            { "n1", -1, 0, 0xff0000 },
+            { "a1", null, 30, 0x00ff00 },
+            { "z0", 0, 60, 0x0000ff },
+            { "a2", null, 90, 0xffff00 },
+            { "p1", 1, 120, 0x00ffff },
+            { "n2", -2, 15, 0x800000 },
+            { "p1b", 1, 150, 0xff00ff },
+            { "z0b", 0, 75, 0x008000 },
+            { "p5b", 5, 170, 0x808000 },
+    };
+    private static final int WIDTH = 100;
+
+    private static final String PAGE;
+    static
+    {
+        final StringBuilder sb = new StringBuilder("<!DOCTYPE html><html><head><style>"
+                + "body { margin: 0; background: white; }"
+                + "div { position: absolute; top: 0; width: " + WIDTH + "px; height: 50px; }"
+                + "</style></head><body>");
+        for (Object[] box : BOXES)
+        {
+            sb.append("<div id=\"").append(box[0]).append("\" style=\"left: ").append(box[2]).append("px; ")
+              .append("background: #").append(String.format("%06x", box[3]));
+            if (box[1] != null)
+                sb.append("; z-index: ").append(box[1]);
+            sb.append("\"></div>");
+        }
+        PAGE = sb.append("</body></html>").toString();
+    }
+
+    @Test
+    public void paintingOrderMatchesOriginal() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 400, 100);
+        final BufferedImage img = engine.getImage();
+        for (int x = 0; x < 400; x++)
+        {
+            //the topmost box according to the original order: the last one painted
+            Integer expected = 0xffffff;
+            for (ElementBox box : getOriginalOrder(getBoxes(engine.getViewport())))
+            {
+                final Object[] def = getDef(box);
+                if (x >= (Integer) def[2] && x < (Integer) def[2] + WIDTH)
+                    expected = (Integer) def[3];
+            }
+            Assert.assertEquals("Color at " + x, (int) expected, img.getRGB(x, 25) & 0xffffff);
+        }
+    }
+
+    @Test
+    public void frozenOrderMatchesOriginal() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 400, 100);
+        final List<ElementBox> boxes = getBoxes(engine.getViewport());
+        final StackingContext context = engine.getViewport().getStackingContext();
+        Assert.assertEquals(getOriginalOrder(boxes), Arrays.asList(context.getElements()));
+        checkContext(context, boxes);
+
+        //a cleared context is rebuilt lazily for the new registrations
+        final List<ElementBox> reversed = new ArrayList<>(boxes);
+        Collections.reverse(reversed);
+        context.clear();
+        Assert.assertEquals(0, context.getZIndices().length);
+        Assert.assertNull(context.getElementsForZIndex(0));
+        for (ElementBox box : reversed)
+            context.registerChildContext(box);
+        checkContext(context, reversed);
+
+        //registering after the context has been used
+        final List<ElementBox> partial = new ArrayList<>(boxes.subList(0, 4));
+        context.clear();
+        for (ElementBox box : partial)
+            context.registerChildContext(box);
+        checkContext(context, partial);
+        context.registerChildContext(boxes.get(7));
+        partial.add(boxes.get(7));
+        checkContext(context, partial);
+
+        //the layout registers the contexts again
+        engine.getViewport().absolutePositions();
+        Assert.assertSame(context, engine.getViewport().getStackingContext());
+        checkContext(context, boxes);
+    }
+
+    //=========================================================================
+
+    /**
+     * Checks the frozen context against the original implementation for the given registration order.
+     */
+    private void checkContext(StackingContext context, List<ElementBox> registered)
+    {
+        final Map<Integer, List<ElementBox>> original = getOriginalLevels(registered);
+        final int[] zindices = context.getZIndices();
+        Assert.assertEquals(original.size(), zindices.length);
+        int i = 0;
+        for (Map.Entry<Integer, List<ElementBox>> entry : original.entrySet())
+        {
+            Assert.assertEquals((int) entry.getKey(), zindices[i]);
+            Assert.assertEquals(i, context.getLevel(zindices[i]));
+            Assert.assertEquals(entry.getValue(), context.getElementsForZIndex(entry.getKey()));
+            Assert.assertEquals(entry.getValue(), Arrays.asList(context.getElements())
+                    .subList(context.getLevelStart(i), context.getLevelEnd(i)));
+            i++;
+        }
+        Assert.assertEquals(getOriginalOrder(registered), Arrays.asList(context.getElements()));
+        Assert.assertTrue(context.getLevel(42) < 0);
+        Assert.assertNull(context.getElementsForZIndex(42));
+    }
+
+    /**
+     * The original representation: the lists of contexts in the registration order for each z-index,
+     * the z-indices are sorted.
+     */
+    private Map<Integer, List<ElementBox>> getOriginalLevels(List<ElementBox> registered)
+    {
+        final Map<Integer, List<ElementBox>> ret = new TreeMap<>();
+        for (ElementBox box : registered)
+        {
+            final int zindex = box.hasZIndex() ? box.getZIndex() : 0; //put 'auto' z-indices into level 0
+            ret.computeIfAbsent(zindex, z -> new ArrayList<>()).add(box);
+        }
+        return ret;
+    }
+
+    private List<ElementBox> getOriginalOrder(List<ElementBox> registered)
+    {
+        final List<ElementBox> ret = new ArrayList<>();
+        for (List<ElementBox> level : getOriginalLevels(registered).values())
+            ret.addAll(level);
+        return ret;
+    }
+
+    /**
+     * Finds the boxes of the tested elements in the document order.
+     */
+    private List<ElementBox> getBoxes(Viewport viewport)
+    {
+        final List<ElementBox> ret = new ArrayList<>();
+        collect(viewport, ret);
+        Assert.assertEquals(BOXES.length, ret.size());
+        return ret;
+    }
+
+    private void collect(Box box, List<ElementBox> boxes)
+    {
+        if (box instanceof ElementBox)
+        {
+            final ElementBox elem = (ElementBox) box;
+            if (getDef(elem) != null)
+                boxes.add(elem);
+            for (int i = 0; i < elem.getSubBoxNumber(); i++)
+                collect(elem.getSubBox(i), boxes);
+        }
+    }
+
+    private Object[] getDef(ElementBox box)
+    {
+        if (box.getNode() instanceof Element)
+        {
+            final String id = ((Element) box.getNode()).getAttribute("id");
+            for (Object[] def : BOXES)
+            {
+                if (def[0].equals(id))
+                    return def;
+            }
+        }
+        return null;
+    }
+
+}
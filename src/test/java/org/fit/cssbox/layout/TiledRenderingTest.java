@@ -0,0 +1,93 @@
+/*
+ * TiledRenderingTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.awt.image.BufferedImage;
+
+import org.fit.cssbox.awt.GraphicsEngine;
+import org.fit.cssbox.render.BoxRenderer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the page rendered in tiles by {@link GraphicsEngine#renderTiled(int, int, int)} with
+ * the page rendered at once.
+ *
+ * @author agent
+ */
+public class TiledRenderingTest
+{
+    private static final String PAGE = "<!DOCTYPE html><html><head><style>"
+            + "body { font-size: 14px; background: #ffe; }"
+            + "h1 { border-bottom: 3px dashed #a00; }"
+            + ".float { float: left; width: 120px; height: 90px; margin: 5px; border: 2px solid #333; "
+            + "background: linear-gradient(to right, #f80, #08f); }"
+            + ".rel { position: relative; left: 13px; top: 7px; background: #dfd; border-radius: 8px; }"
+            + ".abs { position: absolute; left: 333px; top: 111px; width: 150px; height: 80px; "
+            + "background: rgba(0, 0, 255, 0.4); z-index: 2; }"
+            + ".rot { width: 140px; height: 60px; background: #c0c; transform: rotate(-15deg); }"
+            + "td { border: 1px solid #777; padding: 3px; }"
+            + "</style></head><body>"
+            + "<h1>Tiled rendering</h1>"
+            + "<div class=\"float\">Float</div>"
+            + "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt "
+            + "ut labore et dolore magna aliqua. <u>Ut enim ad minim veniam</u>, quis nostrud exercitation "
+            + "ullamco laboris nisi ut aliquip ex ea commodo consequat.</p>"
+            + "<p class=\"rel\">A relatively positioned paragraph with <b>bold</b> and <i>italic</i> text.</p>"
+            + "<div class=\"abs\">Absolute</div>"
+            + "<div class=\"rot\">Rotated box</div>"
+            + "<table><tr><td>Cell 1</td><td>Cell 2</td></tr><tr><td colspan=\"2\">Spanning cell</td></tr></table>"
+            + "<ul><li>First item</li><li>Second item</li></ul>"
+            + "</body></html>";
+
+    @Test
+    public void tilesMatchFullRendering() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 640, 480);
+        final BufferedImage full = engine.getImage();
+        for (int[] params : new int[][] { { 97, 61, 4 }, { 128, 128, 1 }, { 640, 50, 3 }, { 1000, 1000, 2 } })
+        {
+            final BufferedImage tiled = engine.renderTiled(params[0], params[1], params[2]);
+            final String msg = "Tiles " + params[0] + "x" + params[1] + " with " + params[2] + " threads";
+            Assert.assertEquals(msg, full.getWidth(), tiled.getWidth());
+            Assert.assertEquals(msg, full.getHeight(), tiled.getHeight());
+            for (int y = 0; y < full.getHeight(); y++)
+                for (int x = 0; x < full.getWidth(); x++)
+                    Assert.assertEquals(msg + " at " + x + "," + y, full.getRGB(x, y), tiled.getRGB(x, y));
+        }
+    }
+
+    @Test
+    public void rendererKeptAfterRendering() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 640, 480);
+        final BoxRenderer renderer = engine.getViewport().getRenderer();
+        Assert.assertNotNull("The engine renderer should remain set", renderer);
+        engine.renderTiled(100, 100, 2);
+        Assert.assertSame("Tiled rendering should not change the renderer", renderer, engine.getViewport().getRenderer());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noLayout() throws Exception
+    {
+        LayoutTestUtils.createEngine(PAGE).renderTiled(100, 100, 2);
+    }
+
+}
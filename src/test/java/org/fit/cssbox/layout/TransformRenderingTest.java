@@ -0,0 +1,176 @@
+/*
+ * TransformRenderingTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+
+import org.fit.cssbox.awt.GraphicsEngine;
+import org.fit.cssbox.awt.GraphicsRenderer;
+import org.fit.cssbox.awt.Transform;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Checks painting the boxes with CSS transformations: restoring the transformation after nested
+ * transformed boxes and reusing the resolved transformation matrices.
+ *
+ * @author agent
+ */
+public class TransformRenderingTest
+{
+    private static final String PAGE = "<!DOCTYPE html><html><head><style>"
+            + "body { font-size: 14px; margin: 0; }"
+            + "#outer { margin: 20px auto; width: 300px; height: 200px; background: #ccc; transform: rotate(10deg); }"
+            + "#inner { margin: 20px; width: 150px; height: 100px; background: #88f; transform: scale(1.5) translate(10px, 5px); }"
+            + "#leaf { width: 50px; height: 30px; background: #080; transform: skewX(20deg); }"
+            + "#after { position: absolute; left: 10px; top: 400px; width: 40px; height: 40px; background: #f00; }"
+            + "</style></head><body>"
+            + "<div id=\"outer\">Outer<div id=\"inner\">Inner<div id=\"leaf\">Leaf</div></div></div>"
+            + "<div id=\"after\"></div>"
+            + "</body></html>";
+
+    @Test
+    public void nestedTransformsAreRestored() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 600, 500);
+        final BufferedImage img = new BufferedImage(600, 500, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = img.createGraphics();
+        final AffineTransform initial = g.getTransform();
+        final CheckingRenderer r = new CheckingRenderer(g);
+        r.init(engine.getViewport());
+        r.clearCanvas();
+        engine.getViewport().draw(r, null);
+        r.close();
+
+        Assert.assertEquals("All the transformed boxes should be painted", 3, r.transformed);
+        Assert.assertTrue("No transformations should remain saved", r.getSavedTransforms().isEmpty());
+        Assert.assertEquals(initial, g.getTransform());
+        //the box painted after the transformed boxes is not transformed
+        Assert.assertEquals(0xff0000, img.getRGB(12, 402) & 0xffffff);
+        Assert.assertEquals(0xff0000, img.getRGB(48, 438) & 0xffffff);
+        Assert.assertEquals(0xffffff, img.getRGB(52, 442) & 0xffffff);
+        g.dispose();
+    }
+
+    @Test
+    public void transformMatrixRebuiltOnBoundsChange() throws Exception
+    {
+        final GraphicsEngine engine = LayoutTestUtils.createLayout(PAGE, 600, 500);
+        final ElementBox outer = findBox(engine.getViewport(), "outer");
+        final ElementBox inner = findBox(engine.getViewport(), "inner");
+        final TransformMatrix outerMatrix = outer.getTransformMatrix();
+        final TransformMatrix innerMatrix = inner.getTransformMatrix();
+        Assert.assertNotNull("The matrix should be resolved during the rendering", outerMatrix);
+        Assert.assertTrue(outerMatrix.isValidFor(outer.getAbsoluteBorderBounds()));
+
+        //the bounds remain the same, the matrices are reused
+        engine.redrawBoxes();
+        Assert.assertSame(outerMatrix, outer.getTransformMatrix());
+        Assert.assertSame(innerMatrix, inner.getTransformMatrix());
+
+        //the centered boxes move with a wider viewport
+        engine.updateLayout(new Dimension(900, 500));
+        Assert.assertSame(outer, findBox(engine.getViewport(), "outer"));
+        Assert.assertNotSame(outerMatrix, outer.getTransformMatrix());
+        Assert.assertNotSame(innerMatrix, inner.getTransformMatrix());
+        Assert.assertTrue(outer.getTransformMatrix().isValidFor(outer.getAbsoluteBorderBounds()));
+        Assert.assertTrue(inner.getTransformMatrix().isValidFor(inner.getAbsoluteBorderBounds()));
+        Assert.assertFalse(Arrays.equals(outerMatrix.getMatrix(), outer.getTransformMatrix().getMatrix()));
+
+        final GraphicsEngine fresh = LayoutTestUtils.createLayout(PAGE, 900, 500);
+        assertSameImage(fresh.getImage(), engine.getImage());
+    }
+
+    //=========================================================================
+
+    private void assertSameImage(BufferedImage expected, BufferedImage actual)
+    {
+        Assert.assertEquals(expected.getWidth(), actual.getWidth());
+        Assert.assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++)
+            for (int x = 0; x < expected.getWidth(); x++)
+                Assert.assertEquals("Pixel at " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+    }
+
+    private ElementBox findBox(Box box, String id)
+    {
+        if (box instanceof ElementBox)
+        {
+            final ElementBox elem = (ElementBox) box;
+            if (elem.getNode() instanceof Element && id.equals(((Element) elem.getNode()).getAttribute("id")))
+                return elem;
+            for (int i = 0; i < elem.getSubBoxNumber(); i++)
+            {
+                final ElementBox ret = findBox(elem.getSubBox(i), id);
+                if (ret != null)
+                    return ret;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A renderer that checks that the transformation is restored after painting the contents
+     * of every transformed box.
+     */
+    private static class CheckingRenderer extends GraphicsRenderer
+    {
+        private final Deque<AffineTransform> expected = new ArrayDeque<>();
+        public int transformed;
+
+        public CheckingRenderer(Graphics2D g)
+        {
+            super(g);
+        }
+
+        public Map<ElementBox, AffineTransform> getSavedTransforms()
+        {
+            return savedTransforms;
+        }
+
+        @Override
+        public void startElementContents(ElementBox elem)
+        {
+            expected.push(g.getTransform());
+            super.startElementContents(elem);
+            if (Transform.isTransformed(elem))
+            {
+                transformed++;
+                Assert.assertNotEquals("The transformation should be applied", expected.peek(), g.getTransform());
+                Assert.assertEquals(expected.peek(), savedTransforms.get(elem));
+            }
+        }
+
+        @Override
+        public void finishElementContents(ElementBox elem)
+        {
+            super.finishElementContents(elem);
+            Assert.assertEquals("Transformation after " + elem, expected.pop(), g.getTransform());
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * UpdateLayoutTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.layout;
+
+import java.net.URL;
+import java.util.function.Consumer;
+
+import org.fit.cssbox.awt.GraphicsEngine;
+import org.fit.cssbox.css.DOMAnalyzer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Checks that the layout updated by {@link Engine#updateLayout(Dimension)} is equal to a layout
+ * created from scratch for the same viewport size.
+ *
+ * @author agent
+ */
+public class UpdateLayoutTest
+{
+    private static final String PAGE = "<!DOCTYPE html><html><head><style>"
+            + "body { font-size: 14px; }"
+            + ".float { float: left; width: 30%; border: 1px solid black; padding: 3px; }"
+            + ".right { float: right; width: 120px; height: 50px; background: #eee; }"
+            + ".abs { position: absolute; right: 10px; top: 20px; width: 25%; }"
+            + ".rel { position: relative; left: 5%; }"
+            + ".ib { display: inline-block; width: 40%; border: 2px solid gray; }"
+            + "td { border: 1px solid gray; padding: 4px; }"
+            + "@media (max-width: 500px) { .float { float: none; width: auto; font-size: 18px; } .wide { display: none; } }"
+            + "</style></head><body>"
+            + "<div class=\"float\">Floating block with a relative width and some text in it.</div>"
+            + "<div class=\"right\">Right float</div>"
+            + "<p id=\"p1\">Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor incididunt "
+            + "ut labore et dolore magna aliqua. <span class=\"ib\">An inline block with a text</span> "
+            + "Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris.</p>"
+            + "<div class=\"abs\">Absolutely positioned box</div>"
+            + "<p class=\"rel wide\">Relatively positioned paragraph hidden on narrow screens.</p>"
+            + "<table style=\"width: 80%\"><tr><td>Cell 1</td><td>Cell 2 with a longer text that may wrap</td></tr>"
+            + "<tr><td colspan=\"2\">Spanning cell</td></tr></table>"
+            + "<ul><li>First item</li><li>Second item with <b>bold</b> text</li></ul>"
+            + "</body></html>";
+
+    @Test
+    public void resizeMatchesFreshLayout() throws Exception
+    {
+        final GraphicsEngine engine = createEngine(LayoutTestUtils.createAnalyzer(PAGE));
+        engine.createLayout(new Dimension(900, 600));
+        final Viewport viewport = engine.getViewport();
+        for (float width : new float[] { 700, 1200, 640, 800, 900 })
+        {
+            engine.updateLayout(new Dimension(width, 600));
+            Assert.assertSame("The box tree should be reused", viewport, engine.getViewport());
+            assertSameLayout(engine, PAGE, null, width);
+        }
+    }
+
+    @Test
+    public void mediaQueryChangeMatchesFreshLayout() throws Exception
+    {
+        final GraphicsEngine engine = createEngine(LayoutTestUtils.createAnalyzer(PAGE));
+        engine.createLayout(new Dimension(900, 600));
+        for (float width : new float[] { 400, 450, 1000, 300, 800 })
+        {
+            engine.updateLayout(new Dimension(width, 600));
+            assertSameLayout(engine, PAGE, null, width);
+        }
+    }
+
+    @Test
+    public void domChangeMatchesFreshLayout() throws Exception
+    {
+        final Consumer<DOMAnalyzer> change = da -> {
+            final Document doc = da.getRoot().getOwnerDocument();
+            final Element p = doc.getElementById("p1");
+            p.setAttribute("class", "float");
+            final Element added = doc.createElement("div");
+            added.setAttribute("class", "right");
+            added.appendChild(doc.createTextNode("A new floating box"));
+            da.getBody().insertBefore(added, da.getBody().getFirstChild());
+            da.recomputeStyles();
+        };
+        final DOMAnalyzer da = LayoutTestUtils.createAnalyzer(PAGE);
+        final GraphicsEngine engine = createEngine(da);
+        engine.createLayout(new Dimension(900, 600));
+        change.accept(da);
+        engine.updateLayout(new Dimension(900, 600));
+        assertSameLayout(engine, PAGE, change, 900);
+        engine.updateLayout(new Dimension(750, 600));
+        assertSameLayout(engine, PAGE, change, 750);
+    }
+
+    @Test
+    public void styleSheetChangeMatchesFreshLayout() throws Exception
+    {
+        final Consumer<DOMAnalyzer> change = da -> {
+            da.addStyleSheet(null, "p { margin-left: 50px; } .right { width: 200px; }", DOMAnalyzer.Origin.AUTHOR);
+        };
+        final DOMAnalyzer da = LayoutTestUtils.createAnalyzer(PAGE);
+        final GraphicsEngine engine = createEngine(da);
+        engine.createLayout(new Dimension(900, 600));
+        change.accept(da);
+        engine.updateLayout(new Dimension(900, 600));
+        assertSameLayout(engine, PAGE, change, 900);
+    }
+
+    @Test
+    public void viewportUnitsMatchFreshLayout() throws Exception
+    {
+        final String page = PAGE.replace("</style>", ".right { width: 20vw; height: 10vh; }</style>");
+        final GraphicsEngine engine = createEngine(LayoutTestUtils.createAnalyzer(page));
+        engine.createLayout(new Dimension(900, 600));
+        for (float width : new float[] { 700, 1100 })
+        {
+            engine.updateLayout(new Dimension(width, 500));
+            final GraphicsEngine fresh = createEngine(LayoutTestUtils.createAnalyzer(page));
+            fresh.createLayout(new Dimension(width, 500));
+            Assert.assertEquals(LayoutTestUtils.describe(fresh.getViewport()), LayoutTestUtils.describe(engine.getViewport()));
+        }
+    }
+
+    //=========================================================================
+
+    private GraphicsEngine createEngine(DOMAnalyzer da) throws Exception
+    {
+        return new GraphicsEngine(da.getRoot(), da, new URL(LayoutTestUtils.BASE_URL));
+    }
+
+    /**
+     * Compares the layout of an engine with a fresh layout of the same document.
+     * @param engine the engine whose layout has been updated
+     * @param html the document source
+     * @param change the modification applied to the document or {@code null}
+     * @param width the viewport width
+     */
+    private void assertSameLayout(GraphicsEngine engine, String html, Consumer<DOMAnalyzer> change, float width)
+            throws Exception
+    {
+        final DOMAnalyzer da = LayoutTestUtils.createAnalyzer(html);
+        if (change != null)
+            change.accept(da);
+        final GraphicsEngine fresh = createEngine(da);
+        fresh.createLayout(new Dimension(width, 600));
+        Assert.assertEquals("Layout for " + width, LayoutTestUtils.describe(fresh.getViewport()),
+                LayoutTestUtils.describe(engine.getViewport()));
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * CachingDocumentSourceTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fit.cssbox.io.CachingDocumentSource;
+import org.fit.cssbox.io.DocumentCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the HTTP caching of {@link CachingDocumentSource} against a local stub server.
+ *
+ * @author agent
+ */
+public class CachingDocumentSourceTest
+{
+    private static final String BODY = "<html><body>Cached</body></html>";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 05 Oct 2026 10:00:00 GMT";
+
+    private HttpServer server;
+    private URL url;
+    private File dir;
+    private DocumentCache originalCache;
+
+    /** The number of requests received by the server */
+    private final AtomicInteger requests = new AtomicInteger();
+    /** The headers of the last request received */
+    private volatile Headers lastRequest;
+    /** The Cache-Control value sent with the 200 responses */
+    private volatile String cacheControl;
+    /** The Cache-Control value sent with the 304 responses */
+    private volatile String notModifiedCacheControl;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/doc", this::handle);
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/doc");
+        dir = Files.createTempDirectory("cssbox-cache").toFile();
+        originalCache = CachingDocumentSource.getCache();
+        CachingDocumentSource.setCache(new DocumentCache());
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+        CachingDocumentSource.setCache(originalCache);
+        final File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void freshDocumentIsNotRequestedAgain() throws IOException
+    {
+        cacheControl = "max-age=3600";
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals("No request expected for a fresh document", 1, requests.get());
+    }
+
+    @Test
+    public void staleDocumentIsRevalidated() throws IOException
+    {
+        cacheControl = "no-cache";
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertNull(lastRequest.getFirst("If-None-Match"));
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(ETAG, lastRequest.getFirst("If-None-Match"));
+        Assert.assertEquals(LAST_MODIFIED, lastRequest.getFirst("If-Modified-Since"));
+    }
+
+    @Test
+    public void noStoreResponseIsNotCached() throws IOException
+    {
+        cacheControl = "no-store";
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals(2, requests.get());
+        Assert.assertNull(lastRequest.getFirst("If-None-Match"));
+        Assert.assertNull(CachingDocumentSource.getCache().get(url.toExternalForm()));
+    }
+
+    @Test
+    public void noStoreRevalidationRemovesEntry() throws IOException
+    {
+        cacheControl = "no-cache";
+        notModifiedCacheControl = "no-store";
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertNotNull(CachingDocumentSource.getCache().get(url.toExternalForm()));
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals(ETAG, lastRequest.getFirst("If-None-Match"));
+        Assert.assertNull(CachingDocumentSource.getCache().get(url.toExternalForm()));
+    }
+
+    @Test
+    public void cacheDirectoryIsShared() throws IOException
+    {
+        cacheControl = "max-age=3600";
+        CachingDocumentSource.setCache(new DocumentCache(DocumentCache.DEFAULT_MAX_MEMORY, dir));
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals(1, requests.get());
+
+        CachingDocumentSource.setCache(new DocumentCache(DocumentCache.DEFAULT_MAX_MEMORY, dir));
+        Assert.assertEquals(BODY, fetch());
+        Assert.assertEquals("The document should be read from the directory", 1, requests.get());
+    }
+
+    @Test
+    public void longValuesAreStored()
+    {
+        final char[] chars = new char[70000];
+        Arrays.fill(chars, 'x');
+        final String etag = "\"" + new String(chars) + "\"";
+        final String key = url.toExternalForm();
+        new DocumentCache(DocumentCache.DEFAULT_MAX_MEMORY, dir).put(
+                new DocumentCache.Entry(key, key, "text/html", etag, null, Long.MAX_VALUE, BODY.getBytes(StandardCharsets.UTF_8)));
+
+        final DocumentCache.Entry entry = new DocumentCache(DocumentCache.DEFAULT_MAX_MEMORY, dir).get(key);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(etag, entry.getETag());
+        Assert.assertNull(entry.getLastModified());
+        Assert.assertEquals(BODY, new String(entry.getData(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void corruptedFileIsDiscarded() throws IOException
+    {
+        final String key = url.toExternalForm();
+        new DocumentCache(DocumentCache.DEFAULT_MAX_MEMORY, dir).put(
+                new DocumentCache.Entry(key, key, "text/html", ETAG, null, Long.MAX_VALUE, BODY.getBytes(StandardCharsets.UTF_8)));
+        final File[] files = dir.listFiles();
+        Assert.assertEquals(1, files.length);
+        //keep the format identifier, replace the URL length with a huge value
+        final byte[] magic = Arrays.copyOf(Files.readAllBytes(files[0].toPath()), 4);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(files[0])))
+        {
+            out.write(magic);
+            out.writeInt(Integer.MAX_VALUE - 8);
+        }
+
+        Assert.assertNull(new DocumentCache(DocumentCache.DEFAULT_MAX_MEMORY, dir).get(key));
+        Assert.assertFalse(files[0].exists());
+    }
+
+    //=========================================================================
+
+    private String fetch() throws IOException
+    {
+        final CachingDocumentSource src = new CachingDocumentSource(url);
+        try (InputStream in = src.getInputStream())
+        {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        finally
+        {
+            src.close();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        requests.incrementAndGet();
+        lastRequest = exchange.getRequestHeaders();
+        exchange.getRequestBody().readAllBytes();
+        final Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", ETAG);
+        headers.set("Last-Modified", LAST_MODIFIED);
+        if (ETAG.equals(lastRequest.getFirst("If-None-Match")))
+        {
+            if (notModifiedCacheControl != null)
+                headers.set("Cache-Control", notModifiedCacheControl);
+            exchange.sendResponseHeaders(304, -1);
+        }
+        else
+        {
+            final byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            headers.set("Content-Type", "text/html; charset=utf-8");
+            if (cacheControl != null)
+                headers.set("Cache-Control", cacheControl);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * GraphicsImageLoaderTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.fit.cssbox.awt.GraphicsImageLoader;
+import org.fit.cssbox.awt.GraphicsVisualContext;
+import org.fit.cssbox.layout.BrowserConfig;
+import org.fit.cssbox.layout.ContentImage;
+import org.fit.cssbox.layout.UnlimitedImageCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the merging of concurrent image loads in {@link GraphicsImageLoader} against a local stub server
+ * that serves the image slower than the image loading timeout.
+ *
+ * @author agent
+ */
+public class GraphicsImageLoaderTest
+{
+    private static final int THREADS = 6;
+    private static final int DELAY = 1200;
+
+    private HttpServer server;
+    private byte[] png;
+    private int port;
+
+    /** The number of requests received by the server */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), "png", out);
+        png = out.toByteArray();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        port = server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void slowImageLoadedOnceWithCache() throws Exception
+    {
+        final BrowserConfig config = new BrowserConfig();
+        config.setImageCache(new UnlimitedImageCache());
+        loadConcurrently(config, new URL("http://127.0.0.1:" + port + "/cached.png"));
+    }
+
+    @Test
+    public void slowImageLoadedOnceWithoutCache() throws Exception
+    {
+        final BrowserConfig config = new BrowserConfig();
+        config.setImageCache(null);
+        loadConcurrently(config, new URL("http://127.0.0.1:" + port + "/uncached.png"));
+    }
+
+    //=========================================================================
+
+    /**
+     * Loads the same image from several threads at once using separate loaders and checks
+     * that all the threads obtain the image while the server is requested only once.
+     */
+    private void loadConcurrently(BrowserConfig config, URL url) throws Exception
+    {
+        Assert.assertTrue("The image must be slower than the timeout", DELAY > config.getImageLoadTimeout());
+        final AtomicInteger failures = new AtomicInteger();
+        config.setContentObserver(failed -> failures.incrementAndGet());
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            final List<Future<ContentImage>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++)
+            {
+                results.add(executor.submit(() -> {
+                    final Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+                    final GraphicsImageLoader loader = new GraphicsImageLoader(
+                            new GraphicsVisualContext(g, null, config, null));
+                    start.await();
+                    return loader.loadImage(url);
+                }));
+            }
+            start.countDown();
+            for (Future<ContentImage> result : results)
+            {
+                final ContentImage img = result.get(30, TimeUnit.SECONDS);
+                Assert.assertNotNull("All the threads should get the image", img);
+                Assert.assertEquals(20, img.getWidth(), 0.0f);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("No load should fail", 0, failures.get());
+        Assert.assertEquals("The image should be requested once", 1, requests.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        requests.incrementAndGet();
+        try
+        {
+            Thread.sleep(DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.sendResponseHeaders(200, png.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(png);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * StreamingDOMSourceTest.java
+ * Copyright (c) 2005-2026 Radek Burget
+ *
+ * CSSBox is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * CSSBox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with CSSBox. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Created on 18. 10. 2026 by agent
+ */
+package org.fit.cssbox.test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.fit.cssbox.io.StreamDocumentSource;
+import org.fit.cssbox.io.StreamingDOMSource;
+import org.fit.cssbox.layout.BrowserConfig;
+import org.fit.cssbox.layout.ResourcePrefetcher;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import cz.vutbr.web.css.CSSFactory;
+import cz.vutbr.web.css.MediaSpec;
+import cz.vutbr.web.css.NetworkProcessor;
+
+/**
+ * Checks that {@link StreamingDOMSource} prefetches exactly the linked style sheets that are loaded
+ * by jStyleParser for the parsed document.
+ *
+ * @author agent
+ */
+public class StreamingDOMSourceTest
+{
+    private static final String BASE = "http://cssbox.test/doc/";
+
+    private static final String[] LINKS = {
+            "rel=\"stylesheet\"",
+            "rel=\"StyleSheet\" type=\"text/css\"",
+            "rel=\"alternate stylesheet\"",
+            "rel=\"icon\"",
+            "rel=\"stylesheet\" type=\" text/css\"",
+            "rel=\"stylesheet\" type=\"text/less\"",
+            "rel=\"stylesheet\" type=\"\"",
+            "rel=\"stylesheet\" media=\"\"",
+            "rel=\"stylesheet\" media=\" \"",
+            "rel=\"stylesheet\" media=\"screen\"",
+            "rel=\"stylesheet\" media=\"print\"",
+            "rel=\"stylesheet\" media=\"print, screen\"",
+            "rel=\"stylesheet\" media=\"screen and (min-width: 2000px)\"",
+            "rel=\"stylesheet\" media=\"(((\"",
+            "type=\"text/css\""
+    };
+
+    @Test
+    public void prefetchedStyleSheetsMatchLoading() throws Exception
+    {
+        final StringBuilder sb = new StringBuilder("<!DOCTYPE html><html><head>");
+        for (int i = 0; i < LINKS.length; i++)
+            sb.append("<link ").append(LINKS[i]).append(" href=\"s").append(i).append(".css\">");
+        sb.append("</head><body><p>Text</p></body></html>");
+
+        for (String type : new String[] { "screen", "print" })
+        {
+            final MediaSpec media = new MediaSpec(type);
+            final Set<String> prefetched = new TreeSet<>();
+            final ResourcePrefetcher prefetcher = new ResourcePrefetcher(new BrowserConfig()) {
+                @Override
+                public void prefetchStyleSheet(URL url)
+                {
+                    prefetched.add(url.toString());
+                }
+            };
+            final Document doc;
+            try (StreamDocumentSource src = new StreamDocumentSource(
+                    new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)), new URL(BASE), "text/html"))
+            {
+                final StreamingDOMSource parser = new StreamingDOMSource(src, prefetcher, null);
+                parser.setMediaSpec(media);
+                doc = parser.parse();
+            } finally {
+                prefetcher.shutdown();
+            }
+
+            final Set<String> loaded = new TreeSet<>();
+            final NetworkProcessor network = url -> {
+                loaded.add(url.toString());
+                return new ByteArrayInputStream(new byte[0]);
+            };
+            CSSFactory.getUsedStyles(doc, null, new URL(BASE), media, network);
+
+            Assert.assertFalse("Some style sheets should be loaded", loaded.isEmpty());
+            Assert.assertEquals("Style sheets for " + type, loaded, prefetched);
+        }
+    }
+
+}